@@ -1,31 +1,111 @@
 package fr.uvsq.cprog;
 
-import java.beans.XMLDecoder;
-import java.beans.XMLEncoder;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 
 /**
  * Cette classe permet d'annoter des fichiers.
- * En stockant ces informations dans fichier nommé "notes.xml"
+ * En stockant ces informations dans un fichier de notes par répertoire
+ * (par défaut "notes.bin", voir NoteStore).
  * Ce fichier contient des objets sérialisés représentant les différents
  * fichiers du repertoire.
+ * Les anciens fichiers "notes.xml" sont lus en flux (voir XmlNoteReader) tant qu'ils ne sont
+ * que consultés, et convertis au nouveau format lors de leur première modification.
+ * Les modifications sont ajoutées à un journal (voir NoteJournal), intégré au fichier
+ * de notes en arrière-plan lorsqu'il devient trop gros.
+ * Les écritures prennent le verrou du répertoire (voir NoteLock), partagé avec les
+ * autres processus ; les lectures ne le prennent pas et sont recommencées si les
+ * fichiers de notes changent pendant leur lecture.
  */
 public class Annotation {
 
   /**
-   * Cette méthode permet d'écrire dans un fichier sérialisé XML des des notes (text)
+   * Format de stockage utilisé pour lire et écrire les notes.
+   */
+  private static NoteStore noteStore = new BinaryNoteStore();
+
+  /**
+   * Format historique, utilisé pour relire les fichiers "notes.xml".
+   */
+  private static final NoteStore LEGACY_STORE = new XmlNoteStore();
+
+  /**
+   * Format binaire, utilisé pour relire les fichiers de notes binaires.
+   */
+  private static final NoteStore BINARY_STORE = new BinaryNoteStore();
+
+  /**
+   * Nombre d'essais d'une lecture ou d'une fusion avant d'attendre le verrou.
+   */
+  private static final int MAX_RETRIES = 5;
+
+  /**
+   * Taille (en octets) du journal au-delà de laquelle il est intégré au fichier de notes.
+   */
+  private static long compactionThreshold = 64 * 1024;
+
+  /**
+   * Cache des notes déjà lues, partagé par l'affichage et les commandes.
+   */
+  private static final NoteCache CACHE = new NoteCache(16 * 1024 * 1024);
+
+  /**
+   * Répertoires dont la compaction est déjà prévue.
+   */
+  private static final Set<Path> PENDING_COMPACTIONS = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Thread d'arrière-plan réalisant les compactions.
+   */
+  private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "compaction-notes");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Retourne le format de stockage des notes utilisé.
+
+   * @return le NoteStore courant
+   */
+  public static NoteStore getNoteStore() {
+    return noteStore;
+  }
+
+  /**
+   * Change le format de stockage des notes.
+
+   * @param store le nouveau format de stockage
+   */
+  public static void setNoteStore(NoteStore store) {
+    if (store == null) {
+      throw new IllegalArgumentException("Le format de stockage ne peut pas etre null.");
+    }
+    noteStore = store;
+  }
+
+  /**
+   * Cette méthode permet d'écrire dans le fichier de notes des notes (text)
    * à propos d'un fichier.
+   * Si le répertoire a déjà des notes, l'annotation est ajoutée au journal
+   * du répertoire sans réécrire le fichier de notes.
+   * Si le fichier a déjà une note, le texte y est ajouté comme un nouveau segment daté.
 
    * @param filePath le chemin du fichier que l'on veut annoter
    * @param text ce que l'on veut ecrire à propos du fichier
@@ -38,95 +118,343 @@ public class Annotation {
       throw new IllegalArgumentException("Le chemin passé en argument n'existe pas.");
     }
 
-    String noteName = "notes.xml";
     String filename = path.getFileName().toString();
-    String parentPath = path.getParent().toString();
-    String notePath = parentPath + File.separator + noteName;
+    Path parentPath = path.toAbsolutePath().normalize().getParent();
+    long date = System.currentTimeMillis();
 
-    File noteFile = new File(notePath);
-    final Fichier fichier = new Fichier(filename, text);
-
-    // Si la note n'existe pas
-    if (!noteFile.exists()) {
-      List<Fichier> objectsList = new ArrayList<>();
-      objectsList.add(fichier);
-      // Ecriture de la note
-      writeNote(noteFile, objectsList);
+    NoteCache.Stamp stamp;
+    NoteLock lock = NoteLock.acquire(parentPath);
+    try {
+      File noteFile = noteFileOf(parentPath);
+      File journal = NoteJournal.journalOf(noteFile);
+      NoteTable cached = CACHE.get(parentPath, NoteCache.Stamp.of(noteFile, journal));
+
+      // Si la note n'existe pas
+      if (!noteFile.exists() && !journal.exists()) {
+        List<Fichier> objectsList = new ArrayList<>();
+        objectsList.add(new Fichier(filename, date, text));
+        // Ecriture de la note
+        writeNote(noteFile, objectsList);
+
+      } else {
+        // Si la note existe déjà : ajout (ou concaténation) via le journal
+        NoteJournal.append(journal, versionOf(noteFile), NoteJournal.ANNOTE, filename, date,
+            text);
+        scheduleCompaction(parentPath, journal);
+      }
+      stamp = NoteCache.Stamp.of(noteFile, journal);
+      updateCache(parentPath, stamp, cached, table -> table.annote(filename, date, text));
+    } finally {
+      lock.close();
+    }
+    // Index de recherche mis à jour en arrière-plan, verrou libéré
+    NoteSearchIndex.getInstance().noteAdded(parentPath, filename, text, stamp);
+  }
 
-    } else {
-      // Si la note existe déjà
-      // On lit son contenu et le stocke
-      List<Fichier> objectsList = readNoteObjects(noteFile);
-
-      // Vérifie si un objet Fichier avec le même filename existe déjà.
-      boolean fichierExists = false;
-      for (Fichier existingFichier : objectsList) {
-        // Si le fichier que l'on veut annoter à déjà une note:
-        if (existingFichier.getNom().equals(fichier.getNom())) {
-          fichierExists = true;
-          // Concaténation du nouveau texte avec celui déjà existant
-          String existingText = existingFichier.getTexteAssocie();
-          existingFichier.setTexteAssocie(existingText + " " + text);
-          break;
+  /**
+   * Cette méthode permet d'écrire une liste d'objets dans un fichier de notes,
+   * au format de stockage courant.
+   * Le journal du répertoire est supprimé car son contenu est remplacé par objectsList.
+   * Le numéro de version des notes est incrémenté.
+   * S'il ne reste aucune note, le fichier de notes est supprimé, ainsi que le fichier
+   * de verrou du répertoire (voir NoteLock).
+
+   * @param noteFile un fichier de notes
+   * @param objectsList  une liste d'object à ecrire dans noteFile
+   */
+  public static void writeNote(File noteFile, List<Fichier> objectsList) {
+    Path parentPath = noteFile.getAbsoluteFile().getParentFile().toPath().normalize();
+
+    NoteCache.Stamp stamp = null;
+    try (NoteLock lock = NoteLock.acquire(parentPath)) {
+      boolean current = noteFile.getName().equals(noteStore.getFileName());
+      if (current && objectsList.isEmpty()) {
+        if (noteFile.exists() && !noteFile.delete()) {
+          throw new RuntimeException("Erreur, le fichier de notes n'a pas pu etre supprimé.");
         }
+      } else {
+        noteStore.writeNotes(noteFile, objectsList, versionOf(noteFile) + 1);
       }
+      CACHE.remove(parentPath);
 
-      // Si le fichier a annoté n'avait pas déjà une note:
-      if (!fichierExists) {
-        // Ajout du nouvel objet Fichier à la liste d'objets déjà existant
-        objectsList.add(fichier);
+      if (current) {
+        File journal = NoteJournal.journalOf(noteFile);
+        if (journal.exists() && !journal.delete()) {
+          throw new RuntimeException("Erreur, le journal des notes n'a pas pu etre supprimé.");
+        }
+        lock.deleteFileOnRelease(objectsList.isEmpty());
+        stamp = NoteCache.Stamp.of(noteFile, journal);
       }
-
-      // Ecriture de la note
-      writeNote(noteFile, objectsList);
+    }
+    if (stamp != null) {
+      NoteSearchIndex.getInstance().directoryReplaced(parentPath, objectsList, stamp);
     }
   }
 
   /**
-   * Cette méthode permet d'écrire dans un fichier sérialisé au format XML.
-
-   * @param noteFile un fichier XML
-   * @param objectsList  une liste d'object à ecrire dans noteFile
+   * Remplace les notes d'un répertoire par le résultat d'une fusion,
+   * sans écraser les modifications faites en même temps par un autre thread
+   * ou un autre processus.
+   * La fusion est calculée sans verrou ; si les notes ont changé avant son écriture,
+   * elle est recalculée à partir des nouvelles notes.
+   * La fusion ne doit pas modifier les objets Fichier qu'elle reçoit.
+
+   * @param dirPath chemin du répertoire dont on veut modifier les notes
+   * @param merge fonction calculant les nouvelles notes à partir des notes actuelles
    */
-  public static void writeNote(File noteFile, List<Fichier> objectsList) {
-    XMLEncoder encoder = null;
-  
+  public static void updateNotes(String dirPath, UnaryOperator<List<Fichier>> merge) {
+    Path parentPath = Paths.get(dirPath).toAbsolutePath().normalize();
+    File noteFile = parentPath.resolve(noteStore.getFileName()).toFile();
+
+    for (int essai = 0; essai < MAX_RETRIES; essai++) {
+      NoteCache.Stamp stamp = stampOf(parentPath);
+      long version = versionOf(noteFile);
+      List<Fichier> objectsList = merge.apply(readDirectory(parentPath));
+
+      NoteLock lock = NoteLock.acquire(parentPath);
+      try {
+        // Les notes n'ont pas changé depuis leur lecture : la fusion peut être écrite
+        if (stamp.equals(stampOf(parentPath)) && version == versionOf(noteFile)) {
+          writeNote(noteFileOf(parentPath), objectsList);
+          return;
+        }
+      } finally {
+        lock.close();
+      }
+    }
+
+    // Trop d'écritures concurrentes : la fusion est faite sous le verrou
+    NoteLock lock = NoteLock.acquire(parentPath);
     try {
-      encoder = new XMLEncoder(new BufferedOutputStream(new FileOutputStream(noteFile)));
-      encoder.writeObject(objectsList);
-      encoder.flush();
-    } catch (final java.io.IOException ex) {
-      throw new RuntimeException("Erreur, le fichier notes.xml n'a pas pu etre annoté.", ex);
+      writeNote(noteFileOf(parentPath), merge.apply(readDirectory(parentPath)));
     } finally {
-      if (encoder != null) {
-        encoder.close();
+      lock.close();
+    }
+  }
+
+  /**
+   * Copie les notes de fichiers d'un répertoire vers un autre répertoire
+   * (après la copie ou le déplacement de ces fichiers), éventuellement sous un autre nom.
+   * Les notes d'origine sont lues une seule fois et les notes de destination
+   * écrites une seule fois, quel que soit le nombre de fichiers.
+
+   * @param originDir le répertoire d'origine des fichiers
+   * @param destinationDir le répertoire où les fichiers ont été collés
+   * @param names le nom de chaque fichier dans destinationDir, selon son nom d'origine
+   */
+  public static void copyNotes(String originDir, String destinationDir,
+      Map<String, String> names) {
+    Path originPath = Paths.get(originDir).toAbsolutePath().normalize();
+    List<Fichier> copies = new ArrayList<>();
+    Set<String> copiedNames = new HashSet<>();
+
+    for (Fichier fichier : readDirectory(originPath)) {
+      String nom = names.get(fichier.getNom());
+      if (nom != null) {
+        copies.add(fichier.copyAs(nom));
+        copiedNames.add(nom);
       }
     }
+    // Aucun fichier copié n'est annoté : les notes de destination ne changent pas
+    if (copies.isEmpty()) {
+      return;
+    }
+
+    updateNotes(destinationDir, objectsList -> {
+      List<Fichier> merged = new ArrayList<>(objectsList.size() + copies.size());
+      for (Fichier fichier : objectsList) {
+        if (!copiedNames.contains(fichier.getNom())) {
+          merged.add(fichier);
+        }
+      }
+      merged.addAll(copies);
+      return merged;
+    });
   }
 
   /**
-   * Cette méthode permet de lire le contenu d'un fichier sérialisé et de retourner une liste
+   * Cette méthode permet de lire le contenu d'un fichier de notes et de retourner une liste
    * du contenu du fichier.
+   * Le format (binaire ou XML) est reconnu à partir de l'en-tête du fichier.
+   * Les modifications en attente dans le journal du répertoire sont rejouées.
 
-   * @param fichier Un fichier XML
-   * @return retourne la liste des objects contneu dans le fichier.xml
+   * @param fichier Un fichier de notes
+   * @return retourne la liste des objects contenu dans le fichier
    */
   public static List<Fichier> readNoteObjects(File fichier) {
     // Vérifie si le fichier existe
     if (fichier.exists()) {
-      try (XMLDecoder decoder = new XMLDecoder(
-          new BufferedInputStream(new FileInputStream(fichier)))) {
-        // Lecture de la liste d'objets depuis le fichier
-        return (List<Fichier>) decoder.readObject();
-      } catch (IOException ex) {
-        throw new RuntimeException("Erreur, le fichier notes.xml n'a pas pu etre lu.", ex);
-      }
+      return loadNotes(fichier).toList();
     } else {
       // Si le fichier n'existe pas
       throw new IllegalArgumentException("Le fichier n'existe pas.");
     }
   }
 
+  /**
+   * Lit le fichier de notes (s'il existe) puis rejoue le journal du répertoire.
+
+   * @param noteFile un fichier de notes
+   * @return la table des notes du répertoire, vide s'il n'y a pas de notes.
+   */
+  private static NoteTable loadNotes(File noteFile) {
+    NoteTable table;
+    long version = 0;
+    if (!noteFile.exists()) {
+      table = new NoteTable();
+    } else {
+      NoteStore store = storeOf(noteFile);
+      version = store.readVersion(noteFile);
+      table = NoteTable.of(store.readNotes(noteFile));
+    }
+
+    // Le journal ne concerne que le fichier de notes au format courant
+    if (noteFile.getName().equals(noteStore.getFileName())) {
+      NoteJournal.replay(NoteJournal.journalOf(noteFile), table, version);
+    }
+    return table;
+  }
+
+  /**
+   * Retourne le format (binaire ou XML) d'un fichier de notes existant,
+   * reconnu à partir de son en-tête.
+   */
+  private static NoteStore storeOf(File noteFile) {
+    return BinaryNoteStore.isBinary(noteFile) ? BINARY_STORE : LEGACY_STORE;
+  }
+
+  /**
+   * Retourne le numéro de version d'un fichier de notes, 0 s'il n'existe pas.
+
+   * @param noteFile un fichier de notes
+   * @return le numéro de version des notes de noteFile
+   */
+  private static long versionOf(File noteFile) {
+    return noteFile.exists() ? storeOf(noteFile).readVersion(noteFile) : 0;
+  }
+
+  /**
+   * Retourne la table des notes d'un répertoire, depuis le cache si les fichiers
+   * de notes n'ont pas changé depuis leur dernière lecture.
+   * Si un autre processus modifie les fichiers de notes pendant la lecture,
+   * celle-ci est recommencée.
+   * Doit être appelée avec le verrou (au moins local) du répertoire.
+
+   * @param parentPath le répertoire
+   * @param noteFile le fichier de notes du répertoire
+   * @return la table des notes du répertoire
+   */
+  private static NoteTable notesOf(Path parentPath, File noteFile) {
+    File journal = NoteJournal.journalOf(noteFile);
+    NoteCache.Stamp stamp = NoteCache.Stamp.of(noteFile, journal);
+    NoteTable table = CACHE.get(parentPath, stamp);
+
+    for (int essai = 0; table == null; essai++) {
+      table = loadNotes(noteFile);
+      NoteCache.Stamp after = NoteCache.Stamp.of(noteFile, journal);
+      if (after.equals(stamp)) {
+        CACHE.put(parentPath, stamp, table);
+      } else if (essai < MAX_RETRIES) {
+        // Fichiers modifiés pendant la lecture : on recommence
+        stamp = after;
+        table = null;
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Applique une modification à la table en cache d'un répertoire après son écriture
+   * sur le disque, ou retire le répertoire du cache si sa table n'y était pas à jour.
+
+   * @param parentPath le répertoire
+   * @param stamp l'état des fichiers de notes du répertoire après l'écriture
+   * @param cached la table en cache avant la modification (ou null)
+   * @param change la modification à appliquer
+   */
+  private static void updateCache(Path parentPath, NoteCache.Stamp stamp, NoteTable cached,
+      Consumer<NoteTable> change) {
+    if (cached == null) {
+      CACHE.remove(parentPath);
+      return;
+    }
+    change.accept(cached);
+    CACHE.put(parentPath, stamp, cached);
+  }
+
+  /**
+   * Retourne l'état actuel des fichiers de notes d'un répertoire
+   * (ancien fichier notes.xml si le répertoire n'a pas encore été migré).
+
+   * @param parentPath le répertoire
+   * @return l'état des fichiers de notes du répertoire
+   */
+  static NoteCache.Stamp stampOf(Path parentPath) {
+    File noteFile = parentPath.resolve(noteStore.getFileName()).toFile();
+    File legacyFile = legacyFileOf(parentPath, noteFile);
+    return NoteCache.Stamp.of(legacyFile != null ? legacyFile : noteFile,
+        NoteJournal.journalOf(noteFile));
+  }
+
+  /**
+   * Retourne toutes les notes d'un répertoire, sans migrer un ancien fichier notes.xml.
+
+   * @param parentPath le répertoire
+   * @return la liste des notes du répertoire
+   */
+  static List<Fichier> readDirectory(Path parentPath) {
+    NoteLock lock = NoteLock.local(parentPath);
+    try {
+      File noteFile = parentPath.resolve(noteStore.getFileName()).toFile();
+      File legacyFile = legacyFileOf(parentPath, noteFile);
+      if (legacyFile != null) {
+        return LEGACY_STORE.readNotes(legacyFile);
+      }
+      return notesOf(parentPath, noteFile).toList();
+    } finally {
+      lock.close();
+    }
+  }
+
+  /**
+   * Retourne le fichier de notes d'un répertoire, avant une modification des notes.
+   * Si le répertoire ne contient qu'un ancien fichier "notes.xml",
+   * celui-ci est converti au format de stockage courant puis supprimé.
+
+   * @param parentPath le répertoire contenant les fichiers annotés
+   * @return le fichier de notes du répertoire (il peut ne pas exister)
+   */
+  static File noteFileOf(Path parentPath) {
+    File noteFile = parentPath.resolve(noteStore.getFileName()).toFile();
+    File legacyFile = legacyFileOf(parentPath, noteFile);
+
+    if (legacyFile != null) {
+      // Migration : lecture de l'ancien fichier et réécriture au nouveau format
+      List<Fichier> objectsList = readNoteObjects(legacyFile);
+      writeNote(noteFile, objectsList);
+      if (!legacyFile.delete()) {
+        throw new RuntimeException("Erreur, l'ancien fichier notes.xml n'a pas pu etre supprimé.");
+      }
+    }
+    return noteFile;
+  }
+
+  /**
+   * Retourne l'ancien fichier "notes.xml" d'un répertoire s'il est le seul fichier de notes
+   * du répertoire (c'est-à-dire si le répertoire n'a pas encore été migré).
+
+   * @param parentPath le répertoire
+   * @param noteFile le fichier de notes au format courant
+   * @return le fichier notes.xml à migrer, ou null s'il n'y a rien à migrer
+   */
+  private static File legacyFileOf(Path parentPath, File noteFile) {
+    File legacyFile = parentPath.resolve(LEGACY_STORE.getFileName()).toFile();
+    if (!noteFile.exists() && !noteFile.equals(legacyFile) && legacyFile.exists()
+        && !NoteJournal.journalOf(noteFile).exists()) {
+      return legacyFile;
+    }
+    return null;
+  }
 
   /**
    * Cette méthode permet de retourner le texte de la note associé
@@ -136,6 +464,18 @@ public class Annotation {
    * @return contenu de la note représentant filePath
    */
   public static String afficheNote(String filePath) {
+    return afficheNote(filePath, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Cette méthode permet de retourner le texte des count dernières annotations
+   * (segments) de la note associée à un fichier défini par son chemin filePath.
+
+   * @param filePath chemin représentant un fichier.
+   * @param count nombre de segments à retourner (les plus récents)
+   * @return texte des derniers segments de la note représentant filePath
+   */
+  public static String afficheNote(String filePath, int count) {
     // Convertion du chemin en objet Path
     Path path = FileSystems.getDefault().getPath(filePath);
 
@@ -144,33 +484,81 @@ public class Annotation {
       throw new IllegalArgumentException(errorMsg);
     }
 
-    String noteName = "notes.xml";
     String filename = path.getFileName().toString();
-    String parentPath = path.getParent().toString();
-    String notePath = parentPath + File.separator + noteName;
-
-    File noteFile = new File(notePath);
-
-    if (noteFile.exists()) {
-      List<Fichier> objectsList = readNoteObjects(noteFile);
+    Path parentPath = path.toAbsolutePath().normalize().getParent();
+    Fichier fichier;
 
-      // Parcours de la liste d'objets pour trouver le texte associé au fichier
-      for (Fichier fichier : objectsList) {
-        if (filename.equals(fichier.getNom())) {
-          return fichier.getTexteAssocie();
-        }
+    NoteLock lock = NoteLock.local(parentPath);
+    try {
+      File noteFile = parentPath.resolve(noteStore.getFileName()).toFile();
+      File legacyFile = legacyFileOf(parentPath, noteFile);
+
+      if (legacyFile != null) {
+        // Répertoire pas encore migré : lecture en flux de notes.xml, sans le convertir
+        fichier = XmlNoteReader.find(legacyFile, filename);
+      } else {
+        fichier = notesOf(parentPath, noteFile).get(filename);
       }
+    } finally {
+      lock.close();
+    }
+
+    if (fichier != null) {
+      return fichier.texteRecent(count);
     }
 
-    // Retourne un message standard si le fichier notes.xml n'existe pas
+    // Retourne un message standard si le fichier de notes n'existe pas
     // Ou si le fichier n'a pas d'annotation.
     return "Cet élément n'a pas d'annotation.";
   }
 
 
+  /**
+   * Retourne en une fois les notes de plusieurs éléments d'un même répertoire
+   * (par exemple ceux affichés à l'écran) : la table des notes n'est consultée
+   * qu'une fois, sous un seul verrou.
+
+   * @param parentPath le répertoire des éléments
+   * @param noms les noms des éléments
+   * @return le texte de la note de chaque élément annoté (les autres sont absents)
+   */
+  public static Map<String, String> afficheNotes(Path parentPath, Collection<String> noms) {
+    Path dir = parentPath.toAbsolutePath().normalize();
+    Map<String, String> notes = new HashMap<>();
+
+    NoteLock lock = NoteLock.local(dir);
+    try {
+      File noteFile = dir.resolve(noteStore.getFileName()).toFile();
+      File legacyFile = legacyFileOf(dir, noteFile);
+
+      if (legacyFile != null) {
+        // Répertoire pas encore migré : une seule lecture de notes.xml pour tous les noms
+        Set<String> recherches = new HashSet<>(noms);
+        for (Fichier fichier : LEGACY_STORE.readNotes(legacyFile)) {
+          if (recherches.contains(fichier.getNom())) {
+            notes.put(fichier.getNom(), fichier.getTexteAssocie());
+          }
+        }
+      } else {
+        NoteTable table = notesOf(dir, noteFile);
+        for (String nom : noms) {
+          Fichier fichier = table.get(nom);
+          if (fichier != null) {
+            notes.put(nom, fichier.getTexteAssocie());
+          }
+        }
+      }
+    } finally {
+      lock.close();
+    }
+    return notes;
+  }
+
   /**
    * Supprime une note associé à une fichier représenté par son chemin
    * filePath, si le fichier n'a pas de note associé alors rien n'est fait.
+   * La suppression est ajoutée au journal du répertoire ; après la dernière note du
+   * répertoire, ses fichiers de notes et son fichier de verrou sont supprimés.
 
    * @param filePath chemin représentant un fichier (String)
    */
@@ -182,28 +570,88 @@ public class Annotation {
       throw new IllegalArgumentException("Le chemin passé en argument n'existe pas.");
     }
 
-    String noteName = "notes.xml";
     String filename = path.getFileName().toString();
-    String parentPath = path.getParent().toString();
-    String notePath = parentPath + File.separator + noteName;
+    Path parentPath = path.toAbsolutePath().normalize().getParent();
 
-    File noteFile = new File(notePath);
-
-    // Vérifie si le fichier notes.xml existe
-    if (noteFile.exists()) {
-      // Lecture de la liste d'objets depuis le fichier notes.xml
-      List<Fichier> objectsList = readNoteObjects(noteFile);
+    // Répertoire sans notes : rien à supprimer, et inutile d'y créer le fichier de verrou
+    if (!stampOf(parentPath).hasFiles()) {
+      return;
+    }
 
-      // Recherche l'objet avec le nom du fichier spécifié et le supprime de la liste
-      for (Fichier fichier : objectsList) {
-        if (filename.equals(fichier.getNom())) {
-          objectsList.remove(fichier);
-          break;
+    NoteCache.Stamp stamp = null;
+    NoteLock lock = NoteLock.acquire(parentPath);
+    try {
+      File noteFile = noteFileOf(parentPath);
+      File journal = NoteJournal.journalOf(noteFile);
+
+      // Vérifie si le répertoire a des notes
+      if (noteFile.exists() || journal.exists()) {
+        final NoteTable cached = CACHE.get(parentPath, NoteCache.Stamp.of(noteFile, journal));
+        NoteJournal.append(journal, versionOf(noteFile), NoteJournal.DELETE, filename, 0,
+            null);
+        scheduleCompaction(parentPath, journal);
+        stamp = NoteCache.Stamp.of(noteFile, journal);
+        updateCache(parentPath, stamp, cached, table -> table.remove(filename));
+
+        // Dernière note supprimée : plus de fichiers de notes ni de verrou dans le répertoire
+        if (notesOf(parentPath, noteFile).size() == 0) {
+          writeNote(noteFile, new ArrayList<>());
+          stamp = NoteCache.Stamp.of(noteFile, journal);
         }
       }
+    } finally {
+      lock.close();
+    }
+    if (stamp != null) {
+      NoteSearchIndex.getInstance().noteRemoved(parentPath, filename, stamp);
+    }
+  }
 
-      // Réécriture de la liste mise à jour dans le fichier notes.xml
-      writeNote(noteFile, objectsList);
+  /**
+   * Intègre le journal d'un répertoire à son fichier de notes puis supprime le journal.
+
+   * @param dirPath chemin du répertoire dont on veut compacter les notes
+   */
+  public static void compact(String dirPath) {
+    Path parentPath = Paths.get(dirPath).toAbsolutePath().normalize();
+
+    NoteLock lock = NoteLock.acquire(parentPath);
+    try {
+      File noteFile = noteFileOf(parentPath);
+      File journal = NoteJournal.journalOf(noteFile);
+      if (journal.exists()) {
+        NoteTable table = notesOf(parentPath, noteFile);
+        writeNote(noteFile, table.toList());
+        CACHE.put(parentPath, NoteCache.Stamp.of(noteFile, journal), table);
+      }
+    } finally {
+      lock.close();
+    }
+  }
+
+  /**
+   * Modifie la taille du journal au-delà de laquelle il est compacté.
+
+   * @param bytes taille en octets
+   */
+  public static void setCompactionThreshold(long bytes) {
+    compactionThreshold = bytes;
+  }
+
+  /**
+   * Lance la compaction en arrière-plan si le journal dépasse le seuil.
+   */
+  private static void scheduleCompaction(Path parentPath, File journal) {
+    if (journal.length() > compactionThreshold && PENDING_COMPACTIONS.add(parentPath)) {
+      COMPACTOR.execute(() -> {
+        try {
+          compact(parentPath.toString());
+        } catch (RuntimeException ex) {
+          // Le journal est conservé tel quel, la compaction sera retentée plus tard.
+        } finally {
+          PENDING_COMPACTIONS.remove(parentPath);
+        }
+      });
     }
   }
 }
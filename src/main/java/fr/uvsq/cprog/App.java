@@ -19,15 +19,22 @@ public class App {
     AnsiConsole.systemInstall();
     Repertoire repertoire = new Repertoire("");
     Cli cli = new Cli();
+    cli.surFiltre(repertoire::filtreEnSaisie);
 
     while (true) {
       try {
         //Affichage contenu répertoire
-        repertoire.actualiser();
-        repertoire.afficheCourant(20, cli.ner);
-        cli.getNewCommand();
+        repertoire.rafraichir();
+        repertoire.afficheCourant(cli.hauteurTerminal(), cli.largeurTerminal(), cli.ner);
+        repertoire.debutSaisie();
+        try {
+          cli.getNewCommand();
+        } finally {
+          repertoire.finSaisie();
+        }
         Commandes.execCommande(repertoire, cli);
       } catch (Exception e) {
+        repertoire.effacerAffichage();
         System.out.print(ansi().eraseScreen());
         System.out.println(ansi().render(e.getMessage()).reset());
         cli.afficheEtAttend("Appuyez sur entrée pour continuer:");
@@ -0,0 +1,146 @@
+package fr.uvsq.cprog;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Écriture atomique d'un fichier : le contenu est écrit dans un fichier temporaire
+ * du même répertoire, qui remplace ensuite le fichier d'origine par un Files.move atomique.
+ * Si l'écriture est interrompue (arrêt du programme, disque plein...),
+ * le fichier d'origine reste intact.
+ *
+ * <p>Lorsque la synchronisation est activée (par défaut), le fichier temporaire
+ * puis le répertoire sont écrits sur le disque (fsync) : le nouveau contenu survit
+ * alors aussi à une coupure de courant, au prix d'une écriture plus lente.
+ * La propriété système "explorer.fsync" (true ou false) permet de choisir ce mode
+ * au démarrage.
+ */
+public class AtomicFile {
+
+  /**
+   * Propriété système activant ou non la synchronisation des écritures.
+   */
+  public static final String PROPERTY = "explorer.fsync";
+
+  /**
+   * Vrai si les écritures sont synchronisées sur le disque.
+   */
+  private static volatile boolean sync =
+      Boolean.parseBoolean(System.getProperty(PROPERTY, "true"));
+
+  /**
+   * Contenu à écrire dans un fichier.
+   */
+  @FunctionalInterface
+  public interface Content {
+
+    /**
+     * Écrit le contenu dans un flux. Le flux peut être fermé par cette méthode.
+
+     * @param out le flux du fichier temporaire
+     * @throws IOException si l'écriture échoue
+     */
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  /**
+   * Indique si les écritures sont synchronisées sur le disque.
+
+   * @return Vrai si les écritures sont synchronisées, Faux sinon.
+   */
+  public static boolean isSync() {
+    return sync;
+  }
+
+  /**
+   * Active ou désactive la synchronisation des écritures sur le disque.
+
+   * @param enabled Vrai pour synchroniser les écritures
+   */
+  public static void setSync(boolean enabled) {
+    sync = enabled;
+  }
+
+  /**
+   * Remplace atomiquement le contenu d'un fichier.
+
+   * @param target le fichier à écrire
+   * @param content le nouveau contenu
+   * @throws IOException si l'écriture échoue (target n'est alors pas modifié)
+   */
+  public static void write(File target, Content content) throws IOException {
+    Path path = target.toPath().toAbsolutePath();
+    Path tmp = tempFileOf(path);
+    boolean synced = sync;
+
+    try {
+      try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+        OutputStream buffer = new BufferedOutputStream(new FilterOutputStream(file) {
+          @Override
+          public void write(byte[] bytes, int off, int len) throws IOException {
+            out.write(bytes, off, len);
+          }
+
+          @Override
+          public void close() throws IOException {
+            // Le fichier est fermé après la synchronisation.
+            flush();
+          }
+        });
+        content.writeTo(buffer);
+        buffer.close();
+        if (synced) {
+          file.getFD().sync();
+        }
+      }
+      move(tmp, path);
+    } catch (IOException | RuntimeException ex) {
+      Files.deleteIfExists(tmp);
+      throw ex;
+    }
+
+    if (synced) {
+      syncDirectory(path.getParent());
+    }
+  }
+
+  /**
+   * Retourne le fichier temporaire utilisé pour écrire un fichier.
+   * Son nom dépend du processus et du thread : deux écritures simultanées
+   * du même fichier n'utilisent pas le même fichier temporaire.
+   */
+  static Path tempFileOf(Path path) {
+    return path.resolveSibling("." + path.getFileName() + "."
+        + ProcessHandle.current().pid() + "-" + Thread.currentThread().getId() + ".tmp");
+  }
+
+  private static void move(Path tmp, Path path) throws IOException {
+    try {
+      Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException ex) {
+      // Système de fichiers sans renommage atomique
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Écrit sur le disque l'entrée du répertoire (le renommage).
+   */
+  private static void syncDirectory(Path dir) {
+    try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException ex) {
+      // Certains systèmes (Windows) ne permettent pas d'ouvrir un répertoire.
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package fr.uvsq.cprog;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Format de stockage par défaut des notes : un fichier binaire nommé "notes.bin".
+ * Le fichier commence par un en-tête (nombre magique, version du format
+ * et numéro de version des notes) suivi du nombre d'objets Fichier puis,
+ * pour chaque objet, de son nom et de ses segments de texte (nombre de segments puis,
+ * pour chacun, sa date et son texte).
+ * Chaque chaîne est précédée de sa longueur en octets (UTF-8).
+ * Le fichier est réécrit de façon atomique (voir AtomicFile).
+ * Le numéro de version des notes est incrémenté à chaque réécriture du fichier :
+ * il permet de savoir si le journal du répertoire s'applique à ce fichier
+ * et de détecter une écriture concurrente (voir Annotation.updateNotes).
+ * Les fichiers des versions 1 (sans numéro de version) et 2 (texte en un seul bloc)
+ * du format restent lisibles.
+ */
+public class BinaryNoteStore implements NoteStore {
+
+  /**
+   * Nom du fichier de notes au format binaire.
+   */
+  public static final String FILE_NAME = "notes.bin";
+
+  /**
+   * Nombre magique en tête du fichier ("NOTE" en ASCII).
+   */
+  static final int MAGIC = 0x4E4F5445;
+
+  /**
+   * Version du format écrit par cette classe.
+   */
+  static final byte FORMAT_VERSION = 3;
+
+  /**
+   * Deuxième version du format, avec le texte de chaque note en un seul bloc.
+   */
+  static final byte FORMAT_VERSION_2 = 2;
+
+  /**
+   * Première version du format, sans numéro de version des notes.
+   */
+  static final byte FORMAT_VERSION_1 = 1;
+
+  @Override
+  public String getFileName() {
+    return FILE_NAME;
+  }
+
+  @Override
+  public List<Fichier> readNotes(File noteFile) {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(noteFile)))) {
+      byte format = readFormat(in);
+      if (format != FORMAT_VERSION_1) {
+        in.readLong();
+      }
+      int count = in.readInt();
+      List<Fichier> objectsList = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        String nom = readString(in);
+        if (format == FORMAT_VERSION) {
+          Fichier fichier = new Fichier(nom, null);
+          int segments = in.readInt();
+          for (int j = 0; j < segments; j++) {
+            long date = in.readLong();
+            fichier.addSegment(date, readString(in));
+          }
+          objectsList.add(fichier);
+        } else {
+          objectsList.add(new Fichier(nom, readString(in)));
+        }
+      }
+      return objectsList;
+    } catch (EOFException ex) {
+      throw new RuntimeException("Erreur, le fichier " + noteFile.getName() + " est tronqué.", ex);
+    } catch (IOException ex) {
+      throw new RuntimeException("Erreur, le fichier " + noteFile.getName()
+          + " n'a pas pu etre lu.", ex);
+    }
+  }
+
+  @Override
+  public long readVersion(File noteFile) {
+    try (DataInputStream in = new DataInputStream(new FileInputStream(noteFile))) {
+      return readFormat(in) == FORMAT_VERSION_1 ? 0 : in.readLong();
+    } catch (EOFException ex) {
+      throw new RuntimeException("Erreur, le fichier " + noteFile.getName() + " est tronqué.", ex);
+    } catch (IOException ex) {
+      throw new RuntimeException("Erreur, le fichier " + noteFile.getName()
+          + " n'a pas pu etre lu.", ex);
+    }
+  }
+
+  /**
+   * Écrit les notes avec le numéro de version suivant celui du fichier existant.
+   */
+  @Override
+  public void writeNotes(File noteFile, List<Fichier> objectsList) {
+    long version = noteFile.exists() && isBinary(noteFile) ? readVersion(noteFile) : 0;
+    writeNotes(noteFile, objectsList, version + 1);
+  }
+
+  @Override
+  public void writeNotes(File noteFile, List<Fichier> objectsList, long version) {
+    try {
+      AtomicFile.write(noteFile, stream -> {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeLong(version);
+        out.writeInt(objectsList.size());
+        for (Fichier fichier : objectsList) {
+          writeString(out, fichier.getNom());
+          out.writeInt(fichier.getSegments().size());
+          for (Fichier.Segment segment : fichier.getSegments()) {
+            out.writeLong(segment.getDate());
+            writeString(out, segment.getTexte());
+          }
+        }
+        out.flush();
+      });
+    } catch (IOException ex) {
+      throw new RuntimeException("Erreur, le fichier " + noteFile.getName()
+          + " n'a pas pu etre annoté.", ex);
+    }
+  }
+
+  /**
+   * Lit le début de l'en-tête du fichier (nombre magique et version du format).
+   * Sauf pour la version 1, il est suivi du numéro de version des notes.
+
+   * @param in le flux positionné au début du fichier
+   * @return la version du format
+   */
+  private static byte readFormat(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IllegalArgumentException("Le fichier n'est pas un fichier de notes binaire.");
+    }
+    byte format = in.readByte();
+    if (format != FORMAT_VERSION_1 && format != FORMAT_VERSION_2 && format != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Version du fichier de notes inconnue : " + format);
+    }
+    return format;
+  }
+
+  /**
+   * Indique si un fichier commence par l'en-tête du format binaire.
+
+   * @param noteFile un fichier de notes
+   * @return Vrai si noteFile est au format binaire, Faux sinon.
+   */
+  public static boolean isBinary(File noteFile) {
+    try (DataInputStream in = new DataInputStream(new FileInputStream(noteFile))) {
+      return in.readInt() == MAGIC;
+    } catch (IOException ex) {
+      // Fichier trop court ou illisible : ce n'est pas un fichier binaire valide
+      return false;
+    }
+  }
+
+  /**
+   * Écrit une chaîne précédée de sa longueur en octets.
+   */
+  static void writeString(DataOutputStream out, String chaine) throws IOException {
+    byte[] bytes = (chaine == null ? "" : chaine).getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Lit une chaîne précédée de sa longueur en octets.
+   */
+  static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Longueur de chaîne invalide : " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
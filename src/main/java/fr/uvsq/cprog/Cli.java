@@ -1,10 +1,16 @@
 package fr.uvsq.cprog;
 
+import java.util.function.Consumer;
+import org.jline.keymap.KeyMap;
+import org.jline.reader.Buffer;
 import org.jline.reader.LineReader;
 import org.jline.reader.LineReaderBuilder;
+import org.jline.reader.Reference;
 import org.jline.reader.UserInterruptException;
+import org.jline.reader.Widget;
 import org.jline.reader.impl.DefaultParser;
 import org.jline.reader.impl.completer.StringsCompleter;
+import org.jline.utils.InfoCmp.Capability;
 
 
 /**
@@ -20,10 +26,16 @@ public class Cli {
   public final LineReader lineReader = LineReaderBuilder.builder()
           .appName("InteractiveCLI")
           .completer(new StringsCompleter(new String[] {
-              "copy", "cut", "del", "past", "..", "mkdir", "visu", "find", "help"}))
+              "copy", "cut", "del", "past", "..", "mkdir", "visu", "du", "find", "search", "tri",
+              "help"}))
           .parser(new DefaultParser())
           .build();
 
+  /**
+   * Hauteur d'écran utilisée si celle du terminal est inconnue.
+   */
+  private static final int HAUTEUR_DEFAUT = 20;
+
   /**
    * Entrée utilisateur brute lue par LineReader.
    */
@@ -52,10 +64,81 @@ public class Cli {
    */
   public boolean cut;
 
+  /**
+   * Vrai si la saisie en cours est celle d'un filtre (elle commence par "/").
+   */
+  private boolean saisieFiltre;
+
+  /**
+   * Constructeur : les touches Page précédente et Page suivante du terminal
+   * exécutent directement les commandes "<" et ">".
+   */
+  public Cli() {
+    lieTouche("page-precedente", "<", Capability.key_ppage);
+    lieTouche("page-suivante", ">", Capability.key_npage);
+  }
+
+  /**
+   * Associe une touche du terminal à une commande, validée dès l'appui sur la touche.
+   */
+  private void lieTouche(String widget, String commandeTouche, Capability touche) {
+    lineReader.getWidgets().put(widget, () -> {
+      Buffer buffer = lineReader.getBuffer();
+      buffer.clear();
+      buffer.write(commandeTouche);
+      lineReader.callWidget(LineReader.ACCEPT_LINE);
+      return true;
+    });
+    if (lineReader.getTerminal().getStringCapability(touche) != null) {
+      lineReader.getKeyMaps().get(LineReader.MAIN)
+          .bind(new Reference(widget), KeyMap.key(lineReader.getTerminal(), touche));
+    }
+  }
+
+  /**
+   * Appelle un écouteur à chaque caractère tapé ou effacé pendant la saisie d'un filtre
+   * ("/" suivi du motif), avec le motif saisi jusque là ("" si le "/" est effacé).
+   * L'écouteur peut redessiner l'écran (le curseur étant laissé à la fin de l'invite) :
+   * la saisie est ensuite réécrite après l'invite.
+
+   * @param ecouteur l'écouteur, appelé pendant la saisie
+   */
+  public void surFiltre(Consumer<String> ecouteur) {
+    for (String nomWidget : new String[] {LineReader.SELF_INSERT, LineReader.BACKWARD_DELETE_CHAR,
+        LineReader.DELETE_CHAR}) {
+      Widget widget = lineReader.getWidgets().get(nomWidget);
+      lineReader.getWidgets().put(nomWidget, () -> {
+        boolean resultat = widget.apply();
+        String saisie = lineReader.getBuffer().toString();
+        if (saisie.startsWith("/") || saisieFiltre) {
+          saisieFiltre = saisie.startsWith("/");
+          ecouteur.accept(saisieFiltre ? saisie.substring(1) : "");
+          reecritSaisie();
+        }
+        return resultat;
+      });
+    }
+  }
+
+  /**
+   * Réécrit la saisie en cours après l'invite et replace le curseur.
+   */
+  private void reecritSaisie() {
+    Buffer buffer = lineReader.getBuffer();
+    StringBuilder sortie = new StringBuilder(buffer.toString());
+    int recul = buffer.length() - buffer.cursor();
+    if (recul > 0) {
+      sortie.append("\u001B[").append(recul).append('D');
+    }
+    lineReader.getTerminal().writer().print(sortie);
+    lineReader.getTerminal().flush();
+  }
+
   /**
    * Lit l'entrée utilisateur.
    */
   public void userInput() {
+    saisieFiltre = false;
     try {
       this.lineRead = lineReader.readLine();
     } catch (UserInterruptException e) {
@@ -73,6 +156,13 @@ public class Cli {
    */
   public void traitementEntree() {
 
+    //Filtre : tout ce qui suit le "/" est le motif
+    if (this.lineRead.startsWith("/")) {
+      this.commande = Commandes.TypeCommande.FILTRE;
+      this.nom = this.lineRead.substring(1);
+      return;
+    }
+
     //On coupe l'entrée en maximum 2 pour avoir un tableau :
     // - ["NER", "Commande + (Argument)"] ou
     // - ["Commande", "Argument"] ou
@@ -104,6 +194,7 @@ public class Cli {
             case "." -> this.commande = Commandes.TypeCommande.DIR;
             case "del" -> this.commande = Commandes.TypeCommande.DEL;
             case "visu" -> this.commande = Commandes.TypeCommande.VISU;
+            case "du" -> this.commande = Commandes.TypeCommande.DU;
             case "+" -> {
               this.commande = Commandes.TypeCommande.ANNOTE;
               this.nom = lineArray[2]; }
@@ -133,15 +224,24 @@ public class Cli {
             }
           }
           case ".." -> this.commande = Commandes.TypeCommande.PD;
+          case ">" -> this.commande = Commandes.TypeCommande.PAGE_SUIVANTE;
+          case "<" -> this.commande = Commandes.TypeCommande.PAGE_PRECEDENTE;
           case "." -> this.commande = Commandes.TypeCommande.DIR;
           case "mkdir" -> {
             this.commande = Commandes.TypeCommande.MKDIR;
             this.nom = lineArray[1]; }
           case "del" -> this.commande = Commandes.TypeCommande.DEL;
           case "visu" -> this.commande = Commandes.TypeCommande.VISU;
+          case "du" -> this.commande = Commandes.TypeCommande.DU;
           case "find" -> {
             this.commande = Commandes.TypeCommande.FIND;
             this.nom = lineArray[1]; }
+          case "search" -> {
+            this.commande = Commandes.TypeCommande.SEARCH;
+            this.nom = lineArray[1]; }
+          case "tri" -> {
+            this.commande = Commandes.TypeCommande.TRI;
+            this.nom = lineArray[1]; }
           case "+" -> {
             this.commande = Commandes.TypeCommande.ANNOTE;
             this.nom = lineArray[1]; }
@@ -166,6 +266,40 @@ public class Cli {
     traitementEntree();
   }
 
+  /**
+   * Retourne la hauteur du terminal (lue à chaque appel : le terminal peut être redimensionné).
+
+   * @return le nombre de lignes du terminal, ou 20 s'il est inconnu
+   */
+  public int hauteurTerminal() {
+    int hauteur = lineReader.getTerminal().getHeight();
+    return hauteur > 0 ? hauteur : HAUTEUR_DEFAUT;
+  }
+
+  /**
+   * Retourne la largeur du terminal.
+
+   * @return le nombre de colonnes du terminal, ou Integer.MAX_VALUE s'il est inconnu
+   */
+  public int largeurTerminal() {
+    int largeur = lineReader.getTerminal().getWidth();
+    return largeur > 0 ? largeur : Integer.MAX_VALUE;
+  }
+
+  /**
+   * Lit une ligne entrée par l'utilisateur, sans la traiter comme une commande.
+
+   * @return la ligne lue
+   */
+  public String lireLigne() {
+    try {
+      return lineReader.readLine();
+    } catch (UserInterruptException e) {
+      System.exit(0);
+      return "";
+    }
+  }
+
   /**
    * Méthode qui affiche un message puis attend que l'utilisateur appuie sur entrée.
 
@@ -205,7 +339,13 @@ public class Cli {
             + "\t@|bold mkdir <nom>|@\t\tPour créer un répertoire.\n"
             + "\t@|bold [<NER>] visu|@\t\t"
             + "Permet de visualiser la taille ou le contenu d'un fichier.\n"
+            + "\t@|bold [<NER>] du|@\t\tAffiche la taille d'un répertoire et de son contenu.\n"
             + "\t@|bold find <nom fichier>|@\tRecherche d'un fichier dans les sous-répertoires.\n"
+            + "\t@|bold search <mots>|@\t\tRecherche des mots dans les notes"
+            + " des sous-répertoires.\n"
+            + "\t@|bold > ou <|@\t\t\tPage suivante ou précédente du répertoire.\n"
+            + "\t@|bold tri <mode>|@\t\tTrie par nom, taille, date ou extension.\n"
+            + "\t@|bold /<motif>|@\t\tN'affiche que les éléments dont le nom contient le motif.\n"
             + "\t@|bold help|@\t\t\tAffiche cet aide.\n"
             + "\t@|bold [<NER>] + <Note>|@\tAjoute ou concatène une note.\n"
             + "\t@|bold [<NER>] -|@\t\tSupprime la note.\n\n"
@@ -11,7 +11,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.apache.commons.io.FileUtils;
 
 /**
@@ -31,15 +34,38 @@ public class Commandes {
     MKDIR,
     VISU,
     FIND,
+    SEARCH,
+    TRI,
+    FILTRE, // /motif
+    DU,
+    PAGE_SUIVANTE, // >
+    PAGE_PRECEDENTE, // <
     ANNOTE,
     SUPPRNOTE,
     NER,
     DEL
   }
 
+  /**
+   * Commandes qui utilisent l'écran pour autre chose que le répertoire courant :
+   * il est entièrement redessiné après leur exécution.
+   */
+  private static final Set<TypeCommande> COMMANDES_AFFICHANT = EnumSet.of(
+      TypeCommande.VISU, TypeCommande.FIND, TypeCommande.SEARCH, TypeCommande.DU);
+
+  /**
+   * Taille maximale (en octets) d'un fichier texte UTF-16 affiché en entier par visu
+   * (au-delà, il est affiché en hexadécimal).
+   */
+  private static final long TAILLE_MAX_UTF16 = 1 << 20;
+
   /**
   * Cette méthode prend en entrée le chemin d'un fichier et retourne son contenu,
-  * s'il s'agit d'un fichier texte ou renvoie la taille du fichier si ce n'est pas le cas.
+  * s'il s'agit d'un fichier texte (d'après son contenu, voir TypeFichier) ou renvoie
+  * la taille du fichier si ce n'est pas le cas
+  * (la taille de toute son arborescence pour un répertoire).
+  * Le contenu entier est lu en mémoire : la commande visu affiche les fichiers texte
+  * page par page, sans les lire en entier (voir TextPager).
 
   * @param filePath chemin d'un fichier
   * @return retourne le contenu d'un fichier texte ou la taille d'un fichier non texte.
@@ -48,29 +74,33 @@ public class Commandes {
     File file = new File(filePath);
 
     if (file.exists()) {
-      // Si le fichier est un fichier .txt
-      if (isTxtFile(file)) {
+      // Si le fichier est un fichier texte
+      TypeFichier type = typeFichier(file);
+      if (type != null && type.estTexte()) {
         // On retourne le contenu du fichier
         try
-          (// Ouverture du fichier pour lecture.
-            FileReader fileReader = new FileReader(file);
+          (// Ouverture du fichier pour lecture, dans l'encodage détecté.
+            FileReader fileReader = new FileReader(file, type.getEncodage());
               
             // Création du buffer pour pour pouvoir utiliser la fonction .readLine().
             BufferedReader bufferedReader = new BufferedReader(fileReader)
           ) {
           String line;
-          String fileContent = "";
+          StringBuilder fileContent = new StringBuilder();
 
           while ((line = bufferedReader.readLine()) != null) {
-            fileContent += line + "\n";
+            fileContent.append(line).append('\n');
           }
 
-          return fileContent;
+          return fileContent.toString();
 
         } catch (IOException ex) {
           // Gestion d'erreur si le fichier n'a pas réussi a etre lu.
           throw new RuntimeException("Erreur lors de la lecture du fichier texte.", ex);
         }
+      } else if (file.isDirectory()) {
+        // Pour un répertoire, la taille de son arborescence
+        return du(filePath);
       } else {
         // Sinon si ce n'est pas un fichier texte, on retourne
         // la taille du fichier.
@@ -83,16 +113,49 @@ public class Commandes {
     }
   }
 
-    
   /**
-  * Cette méthode vérifie si un fichier est un fichier de type texte.
+   * Cette méthode calcule la taille d'un répertoire et de tous ses sous-répertoires
+   * (voir TailleRepertoire : les répertoires qui n'ont pas changé ne sont pas relus).
+
+   * @param dirPath chemin d'un répertoire
+   * @return la taille de l'arborescence et le nombre de fichiers et de répertoires
+   */
+  public static String du(String dirPath) {
+    if (!new File(dirPath).isDirectory()) {
+      throw new IllegalArgumentException("Argument illégal, le répertoire n'existe pas.");
+    }
+    TailleRepertoire.Total total = TailleRepertoire.calcule(Paths.get(dirPath));
+    return "La taille du répertoire est de " + total.getOctets() + " octet(s) ("
+        + total.getFichiers() + " fichier(s), " + total.getRepertoires() + " répertoire(s)).";
+  }
+
+  /**
+  * Cette méthode vérifie si un fichier est un fichier de type texte, d'après son contenu
+  * et non son extension (voir TypeFichier : seul le début du fichier est lu).
 
   * @param file un fichier
-  * @return True s'il file est un fichier .txt Faux sinon.
+  * @return True si file est un fichier texte, Faux sinon (ou s'il ne peut pas être lu).
   */
   public static boolean isTxtFile(File file) {
-    String fileName = file.getName();
-    return (fileName.endsWith(".txt") || fileName.endsWith(".text"));
+    TypeFichier type = typeFichier(file);
+    return type != null && type.estTexte();
+  }
+
+  /**
+   * Retourne le type d'un fichier ordinaire.
+
+   * @param file un fichier
+   * @return le type du fichier, ou null si ce n'est pas un fichier ordinaire lisible
+   */
+  private static TypeFichier typeFichier(File file) {
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      return TypeFichier.detecte(file.toPath());
+    } catch (IOException e) {
+      return null;
+    }
   }
 
   /**
@@ -227,11 +290,13 @@ public class Commandes {
   /**
    * Cette méthode permet de coller un fichier dans un repertoire donné
    * depuis un chemin de localisation du fichier d'origine.
+   * La note du fichier d'origine est copiée avec lui.
 
    * @param originPath chemin où se trouve le fichier à coller.
    * @param destinationPath chemin où doit etre collé le fichier.
+   * @return le chemin du fichier collé.
    */
-  public static void pastFile(String originPath, String destinationPath) {
+  public static String pastFile(String originPath, String destinationPath) {
     // Construction du chemin absolu de chemin d'origine du fichier.
     Path originPathPath = Paths.get(originPath);
     String originFileName = originPathPath.getFileName().toString();
@@ -261,16 +326,24 @@ public class Commandes {
       // Si le fichier n'a pas reussi à etre coller.
       throw new RuntimeException("Erreur, le fichier n'a pas pu être collé.");
     }
+
+    // Copie de la note (sous le nouveau nom si le fichier a été renommé)
+    Annotation.copyNotes(originPathPath.toAbsolutePath().getParent().toString(), destinationPath,
+        Map.of(originPathPath.getFileName().toString(), originFileName));
+    return alreadyExistPath;
   }
 
   /**
    * Cette méthode permet de coller un repertoire et tout son contenu.
    * Renomme le repertoire à copier si cela est necessaire.
+   * Les notes sont copiées avec le repertoire : celles de son contenu avec
+   * les fichiers de notes, et la sienne dans les notes du repertoire de destination.
 
    * @param originPath chemin absolu de l'endroit où se trouve le repertoire à copier coller
    * @param destinationPath chemin où l'on doit coller le repetoire
+   * @return le chemin du repertoire collé.
    */
-  public static void pastDir(String originPath, String destinationPath) {
+  public static String pastDir(String originPath, String destinationPath) {
     File originDir = new File(originPath);
     File destinationDir = new File(destinationPath);
 
@@ -294,11 +367,19 @@ public class Commandes {
     // Essaie de copier le repertoire et son contenu.
     try {
       // Utilisation bibliothèque Commons IO.
-      FileUtils.copyDirectory(originDir, destinationDir);
+      // Les fichiers de verrou des notes sont propres à chaque repertoire.
+      FileUtils.copyDirectory(originDir, destinationDir,
+          fichier -> !fichier.getName().equals(NoteLock.FILE_NAME));
     } catch (IOException ex) {
       String errorMsg = "Erreur, le repertoire et son contenu n'ont pas pu être collé.";
       throw new RuntimeException(errorMsg, ex);
     }
+
+    // Copie de la note du repertoire (sous le nouveau nom s'il a été renommé)
+    Annotation.copyNotes(originDir.getAbsoluteFile().getParent(), destinationPath,
+        Map.of(originDir.getName(), dirName));
+    NoteSearchIndex.getInstance().treeChanged(destinationDir.toPath());
+    return alreadyExistPath;
   }
 
 
@@ -307,8 +388,9 @@ public class Commandes {
 
    * @param originPath  le chemin qui représente le fichier/repertoire à coller.
    * @param destinationPath le chemin qui représente le repertoire où l'on veut coller.
+   * @return le chemin du fichier/repertoire collé.
    */
-  public static void past(String originPath, String destinationPath) {
+  public static String past(String originPath, String destinationPath) {
 
     //On vérifie si les chemins passés en commentaire sont des chemins
     // pointes vers des chemins qui existent sur notre machine.
@@ -329,10 +411,10 @@ public class Commandes {
     } else {
       if (Files.isDirectory(Paths.get(originPath))) {
         // S'il faut coller un repertoire.
-        pastDir(originPath, destinationPath);
+        return pastDir(originPath, destinationPath);
       } else {
         // S'il faut coller un fichier.
-        pastFile(originPath, destinationPath);
+        return pastFile(originPath, destinationPath);
       }
     }
   }
@@ -362,6 +444,8 @@ public class Commandes {
         File toDeleFile = new File(filePath);
         // On essaie de supprimer récursivement le repertoire.
         FileUtils.deleteDirectory(toDeleFile);
+        // Les notes de son contenu ont été supprimées avec lui
+        NoteSearchIndex.getInstance().treeChanged(toDeletePath);
       } catch (IOException ex) {
         // Si impossible on renvoie une erreur.
         String errorMsg = "Le repertoire n'a pas pu etre supprimé.";
@@ -391,20 +475,21 @@ public class Commandes {
 
    * @param originPath  le chemin qui représente le fichier/repertoire à coller.
    * @param destinationPath le chemin qui représente le repertoire où l'on veut coller.
+   * @return le chemin du fichier/repertoire collé, ou null s'il n'a pas été déplacé.
    */
-  public static void cut(String originPath, String destinationPath) {
+  public static String cut(String originPath, String destinationPath) {
     // Si on veut copier coller cut dans le meme repertoire
     // Cela ne sert à rien
     Path path1 = Paths.get(originPath).toAbsolutePath().getParent();
     Path path2 = Paths.get(destinationPath).toAbsolutePath();
     if (path1.equals(path2)) {
-      return;
+      return null;
     }
 
     // Sinon si on veut copier coller cut dans des repertoires différents:
 
     // Appel méthode past() pour coller
-    past(originPath, destinationPath);
+    String colle = past(originPath, destinationPath);
 
     // Note: la méthode past() se charge déjà de générer une erreur si les 
     // chemins sont invalides. Donc pas besoin de le refaire.
@@ -412,6 +497,7 @@ public class Commandes {
     // Suppression fichier ou repertoire (+ son contenu) d'origine
     // + suppression de la note associé au fichier (repertoire) d'origine.
     delete(originPath);
+    return colle;
   }
 
   /**
@@ -467,40 +553,285 @@ public class Commandes {
   public static void execCommande(Repertoire repertoire, Cli cli) {
     switch (cli.commande) {
       case COPY -> repertoire.pressePapier = copyFile(repertoire.nerToPath(cli.ner));
-      case PAST -> past(repertoire.pressePapier, repertoire.repertoireCourant);
-      case CUT -> cut(repertoire.pressePapier, repertoire.repertoireCourant);
+      // Les éléments créés ou supprimés sont signalés au répertoire, qui n'est pas relu
+      case PAST -> repertoire.signaler(past(repertoire.pressePapier, repertoire.repertoireCourant));
+      case CUT -> {
+        String origine = repertoire.pressePapier;
+        repertoire.signaler(cut(origine, repertoire.repertoireCourant));
+        repertoire.signaler(origine);
+      }
       case PD -> repertoire.repertoireCourant = parentDir(repertoire.repertoireCourant);
       case DIR -> repertoire.repertoireCourant = childDir(repertoire.nerToPath(cli.ner));
-      case MKDIR -> makeDir(repertoire.repertoireCourant, cli.nom);
-      case DEL -> delete(repertoire.nerToPath(cli.ner));
-      case VISU -> {
-        System.out.println(ansi().eraseScreen());
-        System.out.println(ansi().render(visu(repertoire.nerToPath(cli.ner))).reset());
-        cli.afficheEtAttend("Appuyez sur entrée pour continuer:");
+      case MKDIR -> {
+        makeDir(repertoire.repertoireCourant, cli.nom);
+        repertoire.signaler(repertoire.repertoireCourant + File.separator + cli.nom);
       }
-      case FIND -> {
-        List<List<String>> resultat = find(repertoire.repertoireCourant, cli.nom);
-        //Si liste vide
-        if (resultat.isEmpty()) {
-          System.out.println(ansi().render("@|red Aucun résultat n'a été trouvé.|@").reset());
+      case DEL -> {
+        String chemin = repertoire.nerToPath(cli.ner);
+        delete(chemin);
+        repertoire.signaler(chemin);
+      }
+      case VISU -> {
+        String chemin = repertoire.nerToPath(cli.ner);
+        TypeFichier type = typeFichier(new File(chemin));
+        if (type != null && type.getNature() == TypeFichier.Nature.TEXTE) {
+          pagine(cli, Paths.get(chemin));
+        } else if (type != null && (!type.estTexte()
+            || new File(chemin).length() > TAILLE_MAX_UTF16)) {
+          // Fichier binaire (ou grand texte UTF-16, que le pager ne sait pas lire)
+          hexa(cli, Paths.get(chemin), type);
+        } else {
+          // Petit texte UTF-16 affiché en entier, ou taille d'un répertoire
+          System.out.println(ansi().eraseScreen());
+          System.out.println(visu(chemin));
           cli.afficheEtAttend("Appuyez sur entrée pour continuer:");
-          return;
         }
+      }
+      case FIND -> afficheResultats(repertoire, cli,
+              find(repertoire.repertoireCourant, cli.nom));
+      case SEARCH -> afficheResultats(repertoire, cli,
+              NoteSearchIndex.getInstance().search(repertoire.repertoireCourant, cli.nom));
+      case TRI -> repertoire.setModeTri(ModeTri.depuis(cli.nom));
+      case FILTRE -> repertoire.filtrer(cli.nom);
+      case DU -> {
         System.out.println(ansi().eraseScreen());
-        //Pour chaque couple de la liste, on affiche le nom de fichier et le chemin relatif
-        resultat.forEach(
-                couple -> System.out.println(ansi().render(
-                        "@|bold,yellow " + couple.get(0) + "|@" + "\t" //Nom fichier(gras,jaune)
-                                + "@|magenta " + Paths.get(repertoire.repertoireCourant)
-                                        .relativize(Paths.get(couple.get(1)))
-                                + "|@").reset())); //chemin relatif
-        System.out.println();
+        System.out.println(ansi().render(du(repertoire.nerToPath(cli.ner))).reset());
         cli.afficheEtAttend("Appuyez sur entrée pour continuer:");
       }
-      case ANNOTE -> Annotation.annote(repertoire.nerToPath(cli.ner), cli.nom);
-      case SUPPRNOTE -> Annotation.deleteNote(repertoire.nerToPath(cli.ner));
-      case NER -> { }
+      // Seules les notes affichées sont à relire
+      case ANNOTE -> {
+        Annotation.annote(repertoire.nerToPath(cli.ner), cli.nom);
+        repertoire.oublierNotes();
+      }
+      case SUPPRNOTE -> {
+        Annotation.deleteNote(repertoire.nerToPath(cli.ner));
+        repertoire.oublierNotes();
+      }
+      case PAGE_SUIVANTE -> repertoire.pageSuivante();
+      case PAGE_PRECEDENTE -> repertoire.pagePrecedente();
+      case NER -> repertoire.afficheNer(cli.ner);
       default -> throw new IllegalArgumentException("Argument illégal.");
     }
+
+    if (COMMANDES_AFFICHANT.contains(cli.commande)) {
+      repertoire.effacerAffichage();
+    }
+  }
+
+  /**
+   * Affiche un fichier texte page par page (voir TextPager) : seules les lignes
+   * de l'écran sont lues, quelle que soit la taille du fichier.
+   * Entrée ou ">" (ou la touche Page suivante) affiche la page suivante, "<" la page
+   * précédente, un numéro la ligne correspondante, un pourcentage (par exemple "50%")
+   * la position correspondante dans le fichier, "fin" les dernières lignes, "suivi"
+   * les dernières lignes au fur et à mesure que le fichier grandit, et "q" revient
+   * au répertoire.
+
+   * @param cli l'entrée utilisateur
+   * @param fichier le fichier à afficher
+   */
+  private static void pagine(Cli cli, Path fichier) {
+    FrameRenderer ecran = new FrameRenderer();
+    List<String> image = new ArrayList<>();
+    try (TextPager pager = new TextPager(fichier)) {
+      while (true) {
+        int hauteur = cli.hauteurTerminal();
+        int largeur = cli.largeurTerminal();
+        // Titre, ligne d'état, invite et ligne où passe le curseur après l'entrée
+        final int nbLignes = Math.max(1, hauteur - 4);
+        // Le fichier a pu grandir (journal en cours d'écriture)
+        pager.actualiserTaille();
+
+        image.clear();
+        image.add(titre(fichier, largeur));
+        for (String ligne : pager.lignes(nbLignes)) {
+          image.add(Repertoire.coupe(ligne, largeur));
+        }
+        long pourcentage = pager.getTaille() == 0 ? 100
+            : pager.getPositionFin() * 100 / pager.getTaille();
+        long numero = pager.getNumeroLigne();
+        image.add(etat((numero > 0 ? "Ligne " + numero
+            + (pager.getNbLignes() >= 0 ? " sur " + pager.getNbLignes() : "") + ", " : "")
+            + pourcentage + " %. Entrée ou > : page suivante, < : page précédente,"
+            + " <numéro> : ligne, <n>% : position, fin, suivi, q : quitter.", largeur));
+        image.add(": ");
+        ecran.affiche(image, hauteur, largeur);
+
+        String commande = cli.lireLigne().trim().toLowerCase();
+        if (commande.matches("[0-9]{1,18}")) {
+          pager.allerLigne(Long.parseLong(commande));
+        } else if (commande.matches("[0-9]{1,3}%")) {
+          pager.allerPourcentage(Integer.parseInt(commande.substring(0, commande.length() - 1)));
+        } else {
+          switch (commande) {
+            case "", ">" -> pager.avance(nbLignes);
+            case "<" -> pager.recule(nbLignes);
+            case "fin" -> pager.fin(nbLignes);
+            case "suivi" -> suit(cli, pager, fichier, ecran);
+            case "q" -> {
+              return;
+            }
+            default -> {
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Erreur lors de la lecture du fichier texte.", e);
+    }
+  }
+
+  /**
+   * Affiche un fichier binaire page par page en hexadécimal et en ASCII (voir HexPager) :
+   * seules les lignes de l'écran sont lues, quelle que soit la taille du fichier.
+   * Entrée ou ">" affiche la page suivante, "<" la page précédente, une position
+   * (en décimal, ou en hexadécimal précédée de "0x") la ligne qui contient l'octet
+   * correspondant, un pourcentage la position correspondante, "fin" les dernières lignes,
+   * et "q" revient au répertoire.
+
+   * @param cli l'entrée utilisateur
+   * @param fichier le fichier à afficher
+   * @param type le type du fichier (affiché dans la ligne d'état)
+   */
+  private static void hexa(Cli cli, Path fichier, TypeFichier type) {
+    FrameRenderer ecran = new FrameRenderer();
+    List<String> image = new ArrayList<>();
+    try (HexPager pager = new HexPager(fichier)) {
+      while (true) {
+        int hauteur = cli.hauteurTerminal();
+        int largeur = cli.largeurTerminal();
+        // Titre, ligne d'état, invite et ligne où passe le curseur après l'entrée
+        final int nbLignes = Math.max(1, hauteur - 4);
+
+        image.clear();
+        image.add(titre(fichier, largeur));
+        for (String ligne : pager.lignes(nbLignes)) {
+          image.add(Repertoire.coupe(ligne, largeur));
+        }
+        image.add(etat(type.getDescription() + ", " + pager.getTaille() + " octet(s)."
+            + " Position 0x" + Long.toHexString(pager.getPosition())
+            + ". Entrée ou > : page suivante,"
+            + " < : page précédente, <position> ou 0x<position> : octet, <n>% : position,"
+            + " fin, q : quitter.", largeur));
+        image.add(": ");
+        ecran.affiche(image, hauteur, largeur);
+
+        String commande = cli.lireLigne().trim().toLowerCase();
+        if (commande.matches("0x[0-9a-f]{1,15}")) {
+          pager.allerA(Long.parseLong(commande.substring(2), 16));
+        } else if (commande.matches("[0-9]{1,18}")) {
+          pager.allerA(Long.parseLong(commande));
+        } else if (commande.matches("[0-9]{1,3}%")) {
+          pager.allerPourcentage(Integer.parseInt(commande.substring(0, commande.length() - 1)));
+        } else {
+          switch (commande) {
+            case "", ">" -> pager.avance(nbLignes);
+            case "<" -> pager.recule(nbLignes);
+            case "fin" -> pager.fin(nbLignes);
+            case "q" -> {
+              return;
+            }
+            default -> {
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Erreur lors de la lecture du fichier.", e);
+    }
+  }
+
+  /**
+   * Mode suivi du pager : affiche les dernières lignes du fichier et les met à jour
+   * à chaque ajout (voir SuiviFichier), sans relire le fichier (voir TextPager.suivi),
+   * jusqu'à ce que l'utilisateur appuie sur entrée.
+   * Le pager est ensuite placé sur les dernières lignes.
+   */
+  private static void suit(Cli cli, TextPager pager, Path fichier, FrameRenderer ecran)
+      throws IOException {
+    int hauteur = cli.hauteurTerminal();
+    int largeur = cli.largeurTerminal();
+    int nbLignes = Math.max(1, hauteur - 4);
+    List<String> image = new ArrayList<>();
+    synchronized (pager) {
+      imageSuivi(image, fichier, pager.suivi(nbLignes), nbLignes, largeur);
+      ecran.affiche(image, hauteur, largeur);
+    }
+    SuiviFichier suivi = new SuiviFichier(fichier, () -> {
+      synchronized (pager) {
+        try {
+          imageSuivi(image, fichier, pager.suivi(nbLignes), nbLignes, largeur);
+          // Seules les lignes modifiées sont réécrites, sans toucher à l'invite
+          ecran.actualise(image, hauteur, largeur);
+        } catch (IOException e) {
+          // Fichier illisible : l'écran reste celui de la dernière lecture
+        }
+      }
+    });
+    try {
+      cli.lireLigne();
+    } finally {
+      suivi.close();
+    }
+    pager.fin(nbLignes);
+  }
+
+  /**
+   * Construit l'écran du mode suivi : le même nombre de lignes à chaque fois,
+   * pour que l'invite ne change pas de place.
+   */
+  private static void imageSuivi(List<String> image, Path fichier, List<String> lignes,
+                                 int nbLignes, int largeur) {
+    image.clear();
+    image.add(titre(fichier, largeur));
+    for (int i = 0; i < nbLignes; i++) {
+      image.add(i < lignes.size() ? Repertoire.coupe(lignes.get(i), largeur) : "");
+    }
+    image.add(etat("Suivi de la fin du fichier. Entrée pour arrêter.", largeur));
+    image.add(": ");
+  }
+
+  /**
+   * Retourne la ligne de titre du pager : le nom du fichier.
+   */
+  private static String titre(Path fichier, int largeur) {
+    return ansi().render("@|bold,yellow "
+        + Repertoire.coupe(fichier.getFileName().toString(), largeur) + "|@").reset().toString();
+  }
+
+  /**
+   * Retourne la ligne d'état du pager.
+   */
+  private static String etat(String texte, int largeur) {
+    return ansi().render("@|italic " + Repertoire.coupe("(" + texte + ")", largeur) + "|@")
+        .reset().toString();
+  }
+
+  /**
+   * Affiche le résultat d'une recherche (find ou search) puis attend que l'utilisateur
+   * appuie sur entrée.
+
+   * @param repertoire le répertoire dans lequel on travaille
+   * @param cli la commande utilisateur
+   * @param resultat la liste des noms de fichier trouvés + le chemin de leur répertoire
+   */
+  private static void afficheResultats(Repertoire repertoire, Cli cli,
+                                       List<List<String>> resultat) {
+    //Si liste vide
+    if (resultat.isEmpty()) {
+      System.out.println(ansi().render("@|red Aucun résultat n'a été trouvé.|@").reset());
+      cli.afficheEtAttend("Appuyez sur entrée pour continuer:");
+      return;
+    }
+    System.out.println(ansi().eraseScreen());
+    //Pour chaque couple de la liste, on affiche le nom de fichier et le chemin relatif
+    resultat.forEach(
+            couple -> System.out.println(ansi().render(
+                    "@|bold,yellow " + couple.get(0) + "|@" + "\t" //Nom fichier(gras,jaune)
+                            + "@|magenta " + Paths.get(repertoire.repertoireCourant)
+                                    .relativize(Paths.get(couple.get(1)))
+                            + "|@").reset())); //chemin relatif
+    System.out.println();
+    cli.afficheEtAttend("Appuyez sur entrée pour continuer:");
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,296 @@
+package fr.uvsq.cprog;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Contenu d'un répertoire stocké de façon compacte.
+ * Le chemin du répertoire n'est stocké qu'une fois ; les noms des éléments sont rangés
+ * les uns à la suite des autres dans un seul tableau d'octets (UTF-8), avec une table
+ * des positions de début de chaque nom. Un élément coûte donc la longueur de son nom
+ * plus 4 octets, au lieu d'un objet Path contenant le chemin complet.
+ * Les objets Path ne sont construits qu'à la demande (get).
+ * Les attributs des éléments (voir ListingAttributes) sont rangés dans des tableaux
+ * de types primitifs, à raison de 17 octets par élément.
+ */
+public class CompactListing extends AbstractList<Path> implements ListingAttributes {
+
+  private final Path parent;
+
+  /**
+   * Les noms des éléments, à la suite les uns des autres.
+   */
+  private byte[] arena;
+
+  /**
+   * Position de début du nom de chaque élément dans arena ; offsets[size] est la fin.
+   */
+  private int[] offsets;
+
+  /**
+   * Attributs des éléments, par indice (même capacité que offsets).
+   */
+  private long[] sizes;
+  private long[] lastModified;
+  private byte[] types;
+
+  private int size;
+
+  /**
+   * Construit le contenu vide d'un répertoire.
+
+   * @param parent le répertoire
+   */
+  public CompactListing(Path parent) {
+    this.parent = parent;
+    this.arena = new byte[256];
+    this.offsets = new int[17];
+    this.sizes = new long[17];
+    this.lastModified = new long[17];
+    this.types = new byte[17];
+  }
+
+  /**
+   * Retourne le répertoire dont c'est le contenu.
+
+   * @return le chemin du répertoire
+   */
+  public Path getParent() {
+    return parent;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Path get(int index) {
+    return parent.resolve(getName(index));
+  }
+
+  /**
+   * Retourne le nom d'un élément sans construire d'objet Path.
+
+   * @param index indice de l'élément
+   * @return le nom de l'élément
+   */
+  public String getName(int index) {
+    Objects.checkIndex(index, size);
+    return new String(arena, offsets[index], offsets[index + 1] - offsets[index],
+        StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public long getSize(int index) {
+    Objects.checkIndex(index, size);
+    return sizes[index];
+  }
+
+  @Override
+  public long getLastModified(int index) {
+    Objects.checkIndex(index, size);
+    return lastModified[index];
+  }
+
+  @Override
+  public char getType(int index) {
+    Objects.checkIndex(index, size);
+    return (char) types[index];
+  }
+
+  /**
+   * Ajoute un élément à la position index, sans attributs (type inconnu).
+
+   * @param index la position de l'élément
+   * @param chemin le chemin de l'élément, qui doit être dans le répertoire
+   */
+  @Override
+  public void add(int index, Path chemin) {
+    add(index, chemin, null);
+  }
+
+  /**
+   * Ajoute un élément et ses attributs à la fin de la liste.
+
+   * @param chemin le chemin de l'élément, qui doit être dans le répertoire
+   * @param attrs les attributs de l'élément, ou null s'ils sont inconnus
+   */
+  public void add(Path chemin, BasicFileAttributes attrs) {
+    add(size, chemin, attrs);
+  }
+
+  /**
+   * Ajoute un élément et ses attributs à la position index.
+
+   * @param index la position de l'élément
+   * @param chemin le chemin de l'élément, qui doit être dans le répertoire
+   * @param attrs les attributs de l'élément, ou null s'ils sont inconnus
+   */
+  public void add(int index, Path chemin, BasicFileAttributes attrs) {
+    Objects.checkIndex(index, size + 1);
+    byte[] name = nameOf(chemin);
+    if (name == null) {
+      throw new IllegalArgumentException("Le chemin n'est pas dans le répertoire : " + chemin);
+    }
+
+    int start = offsets[index];
+    int end = offsets[size];
+    ensureCapacity(end + name.length, size + 2);
+    System.arraycopy(arena, start, arena, start + name.length, end - start);
+    System.arraycopy(name, 0, arena, start, name.length);
+    System.arraycopy(offsets, index + 1, offsets, index + 2, size - index);
+    for (int i = index + 2; i <= size + 1; i++) {
+      offsets[i] += name.length;
+    }
+    offsets[index + 1] = start + name.length;
+    System.arraycopy(sizes, index, sizes, index + 1, size - index);
+    System.arraycopy(lastModified, index, lastModified, index + 1, size - index);
+    System.arraycopy(types, index, types, index + 1, size - index);
+    size++;
+    setAttributes(index, attrs);
+    modCount++;
+  }
+
+  @Override
+  public Path remove(int index) {
+    Path removed = get(index);
+    removeRange(index, index + 1);
+    return removed;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    int index = indexOf(o);
+    if (index < 0) {
+      return false;
+    }
+    removeRange(index, index + 1);
+    return true;
+  }
+
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    if (fromIndex >= toIndex) {
+      return;
+    }
+    int start = offsets[fromIndex];
+    int removed = offsets[toIndex] - start;
+    System.arraycopy(arena, offsets[toIndex], arena, start, offsets[size] - offsets[toIndex]);
+    for (int i = toIndex; i <= size; i++) {
+      offsets[i - (toIndex - fromIndex)] = offsets[i] - removed;
+    }
+    System.arraycopy(sizes, toIndex, sizes, fromIndex, size - toIndex);
+    System.arraycopy(lastModified, toIndex, lastModified, fromIndex, size - toIndex);
+    System.arraycopy(types, toIndex, types, fromIndex, size - toIndex);
+    size -= toIndex - fromIndex;
+    modCount++;
+  }
+
+  /**
+   * Cherche un élément en comparant les noms, sans construire d'objet Path.
+   */
+  @Override
+  public int indexOf(Object o) {
+    if (!(o instanceof Path)) {
+      return -1;
+    }
+    byte[] name = nameOf((Path) o);
+    if (name == null) {
+      return -1;
+    }
+    for (int i = 0; i < size; i++) {
+      if (Arrays.equals(arena, offsets[i], offsets[i + 1], name, 0, name.length)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return indexOf(o) >= 0;
+  }
+
+  /**
+   * Réduit la place occupée en mémoire à celle des éléments présents.
+   */
+  public void trimToSize() {
+    arena = Arrays.copyOf(arena, offsets[size]);
+    offsets = Arrays.copyOf(offsets, size + 1);
+    sizes = Arrays.copyOf(sizes, size + 1);
+    lastModified = Arrays.copyOf(lastModified, size + 1);
+    types = Arrays.copyOf(types, size + 1);
+  }
+
+  /**
+   * Réordonne les éléments : l'élément d'indice permutation[i] passe à l'indice i.
+
+   * @param permutation les anciens indices, dans le nouvel ordre
+   */
+  public void reorder(int[] permutation) {
+    if (permutation.length != size) {
+      throw new IllegalArgumentException("La permutation doit contenir tous les éléments.");
+    }
+    byte[] newArena = new byte[offsets[size]];
+    int[] newOffsets = new int[size + 1];
+    long[] newSizes = new long[size + 1];
+    long[] newLastModified = new long[size + 1];
+    byte[] newTypes = new byte[size + 1];
+    for (int i = 0; i < size; i++) {
+      int old = permutation[i];
+      int length = offsets[old + 1] - offsets[old];
+      System.arraycopy(arena, offsets[old], newArena, newOffsets[i], length);
+      newOffsets[i + 1] = newOffsets[i] + length;
+      newSizes[i] = sizes[old];
+      newLastModified[i] = lastModified[old];
+      newTypes[i] = types[old];
+    }
+    arena = newArena;
+    offsets = newOffsets;
+    sizes = newSizes;
+    lastModified = newLastModified;
+    types = newTypes;
+    modCount++;
+  }
+
+  /**
+   * Remplace les attributs d'un élément (par exemple après sa modification).
+
+   * @param index indice de l'élément
+   * @param attrs les nouveaux attributs, ou null s'ils sont inconnus
+   */
+  public void setAttributes(int index, BasicFileAttributes attrs) {
+    Objects.checkIndex(index, size);
+    sizes[index] = attrs == null ? -1 : attrs.size();
+    lastModified[index] = attrs == null ? -1 : attrs.lastModifiedTime().toMillis();
+    types[index] = (byte) ListingAttributes.typeOf(attrs);
+  }
+
+  /**
+   * Retourne le nom (UTF-8) d'un chemin du répertoire, ou null s'il n'est pas dans le répertoire.
+   */
+  private byte[] nameOf(Path chemin) {
+    if (chemin.getFileName() == null || !parent.equals(chemin.getParent())) {
+      return null;
+    }
+    return chemin.getFileName().toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private void ensureCapacity(int arenaLength, int offsetsLength) {
+    if (arenaLength > arena.length) {
+      arena = Arrays.copyOf(arena, Math.max(arenaLength, arena.length * 2));
+    }
+    if (offsetsLength > offsets.length) {
+      int capacity = Math.max(offsetsLength, offsets.length * 2);
+      offsets = Arrays.copyOf(offsets, capacity);
+      sizes = Arrays.copyOf(sizes, capacity);
+      lastModified = Arrays.copyOf(lastModified, capacity);
+      types = Arrays.copyOf(types, capacity);
+    }
+  }
+}
@@ -1,14 +1,20 @@
 package fr.uvsq.cprog;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Cette classe représente un objet "Fichier" avec un nom et un texte associé.
+ * Le texte associé est une suite de segments datés, un par annotation :
+ * annoter à nouveau un fichier ajoute un segment sans recopier le texte précédent.
  * Cette classe est sérialisable.
  */
 public class Fichier implements Serializable {
   private String nom;
-  private String texteAssocie;
+  private final List<Segment> segments = new ArrayList<>();
+  private long textLength;
 
   // Constructeur par défaut (nécessaire pour la sérialisation)
   public Fichier() {
@@ -16,7 +22,19 @@ public class Fichier implements Serializable {
 
   public Fichier(String nom, String texteAssocie) {
     this.nom = nom;
-    this.texteAssocie = texteAssocie;
+    setTexteAssocie(texteAssocie);
+  }
+
+  /**
+   * Construit un objet Fichier dont la note est un seul segment daté.
+
+   * @param nom le nom du fichier
+   * @param date la date du segment (en millisecondes depuis 1970, 0 si inconnue)
+   * @param texte le texte du segment
+   */
+  public Fichier(String nom, long date, String texte) {
+    this.nom = nom;
+    addSegment(date, texte);
   }
 
   // Getters et setters
@@ -28,11 +46,119 @@ public class Fichier implements Serializable {
     this.nom = nom;
   }
 
+  /**
+   * Retourne le texte associé : le texte des segments séparés par un espace.
+
+   * @return le texte associé, ou null si le fichier n'a pas de texte
+   */
   public String getTexteAssocie() {
-    return texteAssocie;
+    return texteRecent(segments.size());
+  }
+
+  /**
+   * Retourne le texte des derniers segments, séparés par un espace.
+
+   * @param count nombre de segments voulus (les plus récents)
+   * @return le texte des count derniers segments, ou null si le fichier n'a pas de texte
+   */
+  public String texteRecent(int count) {
+    if (segments.isEmpty()) {
+      return null;
+    }
+    int first = Math.max(0, segments.size() - Math.max(count, 0));
+    StringBuilder texte = new StringBuilder();
+    for (int i = first; i < segments.size(); i++) {
+      if (i > first) {
+        texte.append(' ');
+      }
+      texte.append(segments.get(i).getTexte());
+    }
+    return texte.toString();
   }
 
+  /**
+   * Remplace le texte associé par un seul segment non daté.
+
+   * @param texteAssocie le nouveau texte (null pour aucun texte)
+   */
   public void setTexteAssocie(String texteAssocie) {
-    this.texteAssocie = texteAssocie;
+    segments.clear();
+    textLength = 0;
+    if (texteAssocie != null) {
+      addSegment(0, texteAssocie);
+    }
+  }
+
+  /**
+   * Ajoute un segment à la fin du texte associé.
+
+   * @param date la date du segment (en millisecondes depuis 1970, 0 si inconnue)
+   * @param texte le texte du segment
+   */
+  public void addSegment(long date, String texte) {
+    Segment segment = new Segment(date, texte == null ? "" : texte);
+    segments.add(segment);
+    textLength += segment.getTexte().length();
+  }
+
+  /**
+   * Retourne les segments du texte associé, du plus ancien au plus récent.
+
+   * @return la liste (non modifiable) des segments
+   */
+  public List<Segment> getSegments() {
+    return Collections.unmodifiableList(segments);
+  }
+
+  /**
+   * Retourne le nombre total de caractères des segments.
+
+   * @return la longueur du texte associé, sans les séparateurs
+   */
+  public long getTextLength() {
+    return textLength;
+  }
+
+  /**
+   * Retourne une copie de cet objet sous un autre nom (mêmes segments).
+
+   * @param nouveauNom le nom de la copie
+   * @return la copie
+   */
+  public Fichier copyAs(String nouveauNom) {
+    Fichier copie = new Fichier();
+    copie.nom = nouveauNom;
+    copie.segments.addAll(segments);
+    copie.textLength = textLength;
+    return copie;
+  }
+
+  /**
+   * Un segment de note : le texte d'une annotation et sa date.
+   */
+  public static final class Segment implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long date;
+    private final String texte;
+
+    /**
+     * Construit un segment.
+
+     * @param date la date (en millisecondes depuis 1970, 0 si inconnue)
+     * @param texte le texte
+     */
+    public Segment(long date, String texte) {
+      this.date = date;
+      this.texte = texte;
+    }
+
+    public long getDate() {
+      return date;
+    }
+
+    public String getTexte() {
+      return texte;
+    }
   }
 }
@@ -0,0 +1,146 @@
+package fr.uvsq.cprog;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Affichage de l'écran par images complètes.
+ * Une image est une liste de lignes (déjà mises en forme avec Jansi) ; elle est construite
+ * dans un tampon réutilisé et écrite en une seule fois. Seules les lignes qui ont changé
+ * depuis l'image précédente sont réécrites (déplacement du curseur puis effacement de la
+ * fin de ligne), ce qui évite le scintillement et limite ce qui passe par le terminal.
+ * La dernière ligne de l'image est l'invite : elle est toujours réécrite et le curseur
+ * reste à sa fin.
+ * Si quelque chose d'autre est affiché entre deux images, il faut appeler invalider() :
+ * l'image suivante est alors entièrement redessinée.
+ */
+public class FrameRenderer {
+
+  private static final String CSI = "\u001B[";
+
+  /**
+   * Tampon de l'image à écrire (réutilisé d'une image à l'autre).
+   */
+  private final StringBuilder tampon = new StringBuilder(4096);
+
+  /**
+   * Les lignes de l'image affichée.
+   */
+  private final List<String> precedent = new ArrayList<>();
+
+  /**
+   * Faux si l'écran ne correspond plus à l'image précédente.
+   */
+  private boolean valide;
+
+  private int hauteur;
+  private int largeur;
+
+  /**
+   * Indique que l'écran a été modifié en dehors de ce rendu :
+   * la prochaine image sera entièrement redessinée.
+   */
+  public void invalider() {
+    valide = false;
+  }
+
+  /**
+   * Affiche une image sur la sortie standard.
+
+   * @param lignes les lignes de l'image, la dernière étant l'invite
+   * @param hauteur la hauteur du terminal (un changement redessine tout l'écran)
+   * @param largeur la largeur du terminal (un changement redessine tout l'écran)
+   */
+  public void affiche(List<String> lignes, int hauteur, int largeur) {
+    affiche(lignes, hauteur, largeur, System.out);
+  }
+
+  /**
+   * Affiche une image.
+
+   * @param lignes les lignes de l'image, la dernière étant l'invite
+   * @param hauteur la hauteur du terminal (un changement redessine tout l'écran)
+   * @param largeur la largeur du terminal (un changement redessine tout l'écran)
+   * @param out la sortie
+   */
+  public void affiche(List<String> lignes, int hauteur, int largeur, PrintStream out) {
+    boolean complet = !valide || hauteur != this.hauteur || largeur != this.largeur;
+    tampon.setLength(0);
+    if (complet) {
+      tampon.append(CSI).append("2J");
+    }
+
+    int invite = lignes.size() - 1;
+    for (int i = 0; i < invite; i++) {
+      if (complet || i >= precedent.size() || !lignes.get(i).equals(precedent.get(i))) {
+        ecritLigne(i, lignes.get(i));
+      }
+    }
+    // Lignes de l'image précédente qui ne sont plus utilisées
+    for (int i = lignes.size(); !complet && i < precedent.size(); i++) {
+      ecritLigne(i, "");
+    }
+    if (invite >= 0) {
+      ecritLigne(invite, lignes.get(invite));
+    }
+
+    out.print(tampon);
+    out.flush();
+    precedent.clear();
+    precedent.addAll(lignes);
+    this.hauteur = hauteur;
+    this.largeur = largeur;
+    valide = true;
+  }
+
+  /**
+   * Met à jour l'image affichée pendant la saisie d'une commande (par exemple à l'arrivée
+   * de données lues en arrière-plan) : les lignes modifiées sont réécrites, mais pas
+   * l'invite, et le curseur est remis où il était (sauvegarde et restauration du curseur).
+   * Rien n'est fait si l'image a changé de taille ou si l'écran n'est plus à jour.
+
+   * @param lignes les lignes de l'image, la dernière étant l'invite
+   * @param hauteur la hauteur du terminal
+   * @param largeur la largeur du terminal
+   * @return Vrai si l'écran a été mis à jour
+   */
+  public boolean actualise(List<String> lignes, int hauteur, int largeur) {
+    return actualise(lignes, hauteur, largeur, System.out);
+  }
+
+  /**
+   * Met à jour l'image affichée pendant la saisie d'une commande (voir actualise).
+
+   * @param lignes les lignes de l'image, la dernière étant l'invite
+   * @param hauteur la hauteur du terminal
+   * @param largeur la largeur du terminal
+   * @param out la sortie
+   * @return Vrai si l'écran a été mis à jour
+   */
+  public boolean actualise(List<String> lignes, int hauteur, int largeur, PrintStream out) {
+    if (!valide || hauteur != this.hauteur || largeur != this.largeur
+        || lignes.size() != precedent.size()) {
+      return false;
+    }
+    tampon.setLength(0);
+    for (int i = 0; i < lignes.size() - 1; i++) {
+      if (!lignes.get(i).equals(precedent.get(i))) {
+        ecritLigne(i, lignes.get(i));
+        precedent.set(i, lignes.get(i));
+      }
+    }
+    if (tampon.length() > 0) {
+      out.print("\u001B7" + tampon + "\u001B8");
+      out.flush();
+    }
+    return true;
+  }
+
+  /**
+   * Ajoute au tampon l'écriture d'une ligne de l'écran (numérotée à partir de 0).
+   */
+  private void ecritLigne(int numero, String ligne) {
+    tampon.append(CSI).append(numero + 1).append(";1H").append(CSI).append('K').append(ligne);
+  }
+}
@@ -0,0 +1,236 @@
+package fr.uvsq.cprog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Affichage page par page d'un fichier binaire en hexadécimal et en ASCII, de taille
+ * quelconque (comme hexdump -C).
+ * Comme pour TextPager, seule une fenêtre de taille fixe du fichier est projetée en mémoire
+ * (FileChannel.map) et déplacée à la demande : aller à une position quelconque est immédiat,
+ * même dans un fichier de plusieurs gigaoctets. Seules les lignes affichées sont mises en
+ * forme, dans un tampon de caractères réutilisé.
+ * Chaque ligne montre OCTETS_PAR_LIGNE octets : leur position, leur valeur en hexadécimal
+ * et les caractères ASCII correspondants ('.' pour les autres octets).
+ */
+public class HexPager implements Closeable {
+
+  /**
+   * Taille par défaut de la fenêtre projetée en mémoire.
+   */
+  static final int TAILLE_FENETRE = 8 << 20;
+
+  /**
+   * Nombre d'octets affichés par ligne.
+   */
+  static final int OCTETS_PAR_LIGNE = 16;
+
+  private static final char[] CHIFFRES = "0123456789abcdef".toCharArray();
+
+  private final FileChannel canal;
+  private final int tailleFenetre;
+
+  /**
+   * La taille du fichier (relue à chaque appel de lignes()).
+   */
+  private long taille;
+
+  /**
+   * Nombre de chiffres hexadécimaux des positions (au moins 8).
+   */
+  private int largeurPosition;
+
+  /**
+   * La fenêtre projetée, et la position dans le fichier de son premier octet.
+   */
+  private MappedByteBuffer fenetre;
+  private long debutFenetre;
+
+  /**
+   * Position du premier octet affiché (un multiple de OCTETS_PAR_LIGNE).
+   */
+  private long position;
+
+  /**
+   * Tampon de mise en forme d'une ligne (réutilisé).
+   */
+  private char[] ligne;
+
+  /**
+   * Ouvre un fichier.
+
+   * @param fichier le fichier
+   * @throws IOException si le fichier ne peut pas être ouvert
+   */
+  public HexPager(Path fichier) throws IOException {
+    this(fichier, TAILLE_FENETRE);
+  }
+
+  /**
+   * Ouvre un fichier avec une taille de fenêtre donnée.
+   */
+  HexPager(Path fichier, int tailleFenetre) throws IOException {
+    this.canal = FileChannel.open(fichier, StandardOpenOption.READ);
+    this.tailleFenetre = tailleFenetre;
+    actualiserTaille();
+  }
+
+  /**
+   * Retourne la taille du fichier (à la dernière lecture).
+
+   * @return la taille en octets
+   */
+  public long getTaille() {
+    return taille;
+  }
+
+  /**
+   * Retourne la position courante.
+
+   * @return la position (en octets) du premier octet affiché
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Met en forme des lignes à partir de la position courante.
+
+   * @param nombre le nombre maximal de lignes
+   * @return les lignes (moins de nombre à la fin du fichier)
+   * @throws IOException en cas d'erreur de lecture
+   */
+  public List<String> lignes(int nombre) throws IOException {
+    // Le fichier a pu changer de taille : on ne lit pas au-delà de sa fin
+    actualiserTaille();
+    List<String> lignes = new ArrayList<>(nombre);
+    for (long p = position; p < taille && lignes.size() < nombre; p += OCTETS_PAR_LIGNE) {
+      lignes.add(new String(ligne, 0, formate(p)));
+    }
+    return lignes;
+  }
+
+  /**
+   * Se place sur la ligne qui contient un octet (la dernière ligne au-delà de la fin).
+
+   * @param cible la position de l'octet
+   */
+  public void allerA(long cible) {
+    long derniere = taille == 0 ? 0 : (taille - 1) / OCTETS_PAR_LIGNE * OCTETS_PAR_LIGNE;
+    position = Math.min(derniere, Math.max(0, cible) / OCTETS_PAR_LIGNE * OCTETS_PAR_LIGNE);
+  }
+
+  /**
+   * Se place sur la ligne qui contient l'octet situé à un pourcentage de la taille.
+
+   * @param pourcentage le pourcentage (entre 0 et 100)
+   */
+  public void allerPourcentage(int pourcentage) {
+    int p = Math.max(0, Math.min(100, pourcentage));
+    allerA(taille / 100 * p + taille % 100 * p / 100);
+  }
+
+  /**
+   * Avance de plusieurs lignes (sans dépasser la dernière ligne).
+
+   * @param nombre le nombre de lignes
+   */
+  public void avance(int nombre) {
+    allerA(position + (long) nombre * OCTETS_PAR_LIGNE);
+  }
+
+  /**
+   * Recule de plusieurs lignes (sans dépasser le début du fichier).
+
+   * @param nombre le nombre de lignes
+   */
+  public void recule(int nombre) {
+    allerA(position - (long) nombre * OCTETS_PAR_LIGNE);
+  }
+
+  /**
+   * Se place de façon à afficher les dernières lignes du fichier.
+
+   * @param nombre le nombre de lignes affichées
+   */
+  public void fin(int nombre) {
+    allerA(taille);
+    recule(Math.max(0, nombre - 1));
+  }
+
+  @Override
+  public void close() throws IOException {
+    fenetre = null;
+    canal.close();
+  }
+
+  /**
+   * Relit la taille du fichier ; la fenêtre est abandonnée si elle a changé.
+   */
+  private void actualiserTaille() throws IOException {
+    long nouvelle = canal.size();
+    if (nouvelle != taille || ligne == null) {
+      taille = nouvelle;
+      fenetre = null;
+      largeurPosition = Math.max(8, (64 - Long.numberOfLeadingZeros(taille) + 3) / 4);
+      // Position, deux espaces, octets (avec un espace au milieu), " |", ASCII, "|"
+      ligne = new char[largeurPosition + 2 + OCTETS_PAR_LIGNE * 3 + 1 + 2
+          + OCTETS_PAR_LIGNE + 1];
+      allerA(position);
+    }
+  }
+
+  /**
+   * Met en forme la ligne qui commence à la position debut dans le tampon ligne.
+
+   * @return le nombre de caractères de la ligne
+   */
+  private int formate(long debut) throws IOException {
+    int n = (int) Math.min(OCTETS_PAR_LIGNE, taille - debut);
+    int i = 0;
+    for (int decalage = (largeurPosition - 1) * 4; decalage >= 0; decalage -= 4) {
+      ligne[i++] = CHIFFRES[(int) (debut >>> decalage) & 0xF];
+    }
+    ligne[i++] = ' ';
+    ligne[i++] = ' ';
+    int ascii = i + OCTETS_PAR_LIGNE * 3 + 1 + 2;
+    for (int k = 0; k < OCTETS_PAR_LIGNE; k++) {
+      if (k == OCTETS_PAR_LIGNE / 2) {
+        ligne[i++] = ' ';
+      }
+      if (k < n) {
+        int b = octet(debut + k) & 0xFF;
+        ligne[i++] = CHIFFRES[b >>> 4];
+        ligne[i++] = CHIFFRES[b & 0xF];
+        ligne[ascii + k] = b >= 0x20 && b < 0x7F ? (char) b : '.';
+      } else {
+        ligne[i++] = ' ';
+        ligne[i++] = ' ';
+      }
+      ligne[i++] = ' ';
+    }
+    ligne[i++] = ' ';
+    ligne[i] = '|';
+    ligne[ascii + n] = '|';
+    return ascii + n + 1;
+  }
+
+  /**
+   * Retourne un octet du fichier, en déplaçant la fenêtre si besoin : la nouvelle fenêtre
+   * est centrée sur l'octet, pour lire aussi bien en avant qu'en arrière.
+   */
+  private byte octet(long p) throws IOException {
+    if (fenetre == null || p < debutFenetre || p >= debutFenetre + fenetre.limit()) {
+      debutFenetre = Math.max(0, Math.min(p - tailleFenetre / 2, taille - tailleFenetre));
+      fenetre = canal.map(FileChannel.MapMode.READ_ONLY, debutFenetre,
+          Math.min(tailleFenetre, taille - debutFenetre));
+    }
+    return fenetre.get((int) (p - debutFenetre));
+  }
+}
@@ -0,0 +1,220 @@
+package fr.uvsq.cprog;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Index des lignes d'un fichier texte : la position (en octets) du début d'une ligne
+ * toutes les PAS lignes. Aller à une ligne revient alors à lire une position dans l'index
+ * puis à avancer de moins de PAS lignes, au lieu de parcourir le fichier depuis le début.
+ * L'index est construit en arrière-plan (le fichier est projeté en mémoire par blocs) :
+ * les positions sont utilisables au fur et à mesure de sa construction.
+ * Les index sont gardés en cache par fichier, tant que sa taille et sa date de modification
+ * ne changent pas (quelques kilo-octets pour un fichier de plusieurs millions de lignes).
+ */
+public class LineIndex {
+
+  /**
+   * Nombre de lignes entre deux positions de l'index.
+   */
+  public static final int PAS = 4096;
+
+  /**
+   * Taille des blocs du fichier projetés en mémoire pendant la construction.
+   */
+  private static final int TAILLE_BLOC = 64 << 20;
+
+  /**
+   * Les index, par fichier (chemin absolu normalisé).
+   */
+  private static final Map<Path, LineIndex> CACHE = new ConcurrentHashMap<>();
+
+  /**
+   * Thread d'arrière-plan construisant les index.
+   */
+  private static final ExecutorService INDEXEUR = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "index-lignes");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Path fichier;
+  private final long taille;
+  private final long date;
+
+  /**
+   * points[k] est la position du début de la ligne k * PAS + 1 ; seuls les nbPoints
+   * premiers sont connus.
+   */
+  private long[] points = new long[16];
+  private int nbPoints;
+
+  /**
+   * Nombre de lignes du fichier, connu une fois l'index terminé (-1 avant).
+   */
+  private long nbLignes = -1;
+
+  private Future<?> construction;
+
+  private LineIndex(Path fichier, long taille, long date) {
+    this.fichier = fichier;
+    this.taille = taille;
+    this.date = date;
+    points[nbPoints++] = 0;
+  }
+
+  /**
+   * Retourne l'index d'un fichier : celui du cache si le fichier n'a pas changé,
+   * sinon un nouvel index dont la construction est lancée en arrière-plan.
+
+   * @param fichier le fichier
+   * @return l'index (éventuellement en cours de construction)
+   * @throws IOException si les attributs du fichier ne peuvent pas être lus
+   */
+  public static LineIndex pour(Path fichier) throws IOException {
+    Path chemin = fichier.toAbsolutePath().normalize();
+    BasicFileAttributes attrs = Files.readAttributes(chemin, BasicFileAttributes.class);
+    long date = attrs.lastModifiedTime().toMillis();
+    LineIndex index = CACHE.get(chemin);
+    if (index != null && index.taille == attrs.size() && index.date == date) {
+      return index;
+    }
+    LineIndex nouveau = new LineIndex(chemin, attrs.size(), date);
+    synchronized (nouveau) {
+      nouveau.construction = INDEXEUR.submit(nouveau::construit);
+    }
+    CACHE.put(chemin, nouveau);
+    return nouveau;
+  }
+
+  /**
+   * Vide le cache.
+   */
+  public static void vider() {
+    CACHE.clear();
+  }
+
+  /**
+   * Retourne la taille du fichier indexé.
+
+   * @return la taille en octets
+   */
+  public long getTaille() {
+    return taille;
+  }
+
+  /**
+   * Retourne le nombre de positions connues.
+
+   * @return le nombre de positions (au moins 1 : le début du fichier)
+   */
+  public synchronized int getNbPoints() {
+    return nbPoints;
+  }
+
+  /**
+   * Retourne une position de l'index.
+
+   * @param k le numéro de la position (inférieur à getNbPoints())
+   * @return la position du début de la ligne k * PAS + 1
+   */
+  public synchronized long getPoint(int k) {
+    if (k < 0 || k >= nbPoints) {
+      throw new IndexOutOfBoundsException("Position de l'index inconnue : " + k);
+    }
+    return points[k];
+  }
+
+  /**
+   * Retourne le numéro de la dernière position connue qui précède une position du fichier.
+
+   * @param position une position du fichier
+   * @return le numéro k du point tel que getPoint(k) est inférieur ou égal à position
+   */
+  public synchronized int pointAvant(long position) {
+    int k = Arrays.binarySearch(points, 0, nbPoints, position);
+    return k >= 0 ? k : -k - 2;
+  }
+
+  /**
+   * Indique si l'index est terminé.
+
+   * @return Vrai si toutes les lignes du fichier sont indexées
+   */
+  public synchronized boolean estComplet() {
+    return nbLignes >= 0;
+  }
+
+  /**
+   * Retourne le nombre de lignes du fichier.
+
+   * @return le nombre de lignes, ou -1 si l'index n'est pas terminé
+   */
+  public synchronized long getNbLignes() {
+    return nbLignes;
+  }
+
+  /**
+   * Attend la fin de la construction de l'index (utilisé par les tests).
+   */
+  void attendre() throws InterruptedException, ExecutionException {
+    Future<?> attente;
+    synchronized (this) {
+      attente = construction;
+    }
+    attente.get();
+  }
+
+  /**
+   * Construit l'index (dans le thread d'arrière-plan) en parcourant le fichier par blocs.
+   */
+  private void construit() {
+    long lignes = 0;
+    try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+      for (long debut = 0; debut < taille; debut += TAILLE_BLOC) {
+        MappedByteBuffer bloc = canal.map(FileChannel.MapMode.READ_ONLY, debut,
+            Math.min(TAILLE_BLOC, taille - debut));
+        int longueur = bloc.limit();
+        for (int i = 0; i < longueur; i++) {
+          if (bloc.get(i) == '\n' && ++lignes % PAS == 0 && debut + i + 1 < taille) {
+            ajoute(debut + i + 1);
+          }
+        }
+      }
+      if (taille > 0 && dernierOctet(canal) != '\n') {
+        // Dernière ligne sans fin de ligne
+        lignes++;
+      }
+    } catch (IOException e) {
+      // Fichier supprimé ou illisible : seules les positions déjà trouvées sont utilisables
+      CACHE.remove(fichier, this);
+      return;
+    }
+    synchronized (this) {
+      nbLignes = lignes;
+    }
+  }
+
+  private synchronized void ajoute(long position) {
+    if (nbPoints == points.length) {
+      points = Arrays.copyOf(points, nbPoints * 2);
+    }
+    points[nbPoints++] = position;
+  }
+
+  private byte dernierOctet(FileChannel canal) throws IOException {
+    return canal.map(FileChannel.MapMode.READ_ONLY, taille - 1, 1).get(0);
+  }
+}
@@ -0,0 +1,78 @@
+package fr.uvsq.cprog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Contenu de répertoire qui garde, avec le nom de chaque élément, ses attributs
+ * (type, taille, date de modification) lus en même temps que le répertoire :
+ * l'affichage des colonnes ne demande aucun appel système supplémentaire.
+ */
+public interface ListingAttributes {
+
+  char TYPE_FILE = '-';
+  char TYPE_DIRECTORY = 'd';
+  char TYPE_LINK = 'l';
+  char TYPE_OTHER = 'o';
+  char TYPE_UNKNOWN = '?';
+
+  /**
+   * Retourne la taille d'un élément.
+
+   * @param index indice de l'élément
+   * @return la taille en octets, ou -1 si elle est inconnue
+   */
+  long getSize(int index);
+
+  /**
+   * Retourne la date de dernière modification d'un élément.
+
+   * @param index indice de l'élément
+   * @return la date en millisecondes depuis 1970, ou -1 si elle est inconnue
+   */
+  long getLastModified(int index);
+
+  /**
+   * Retourne le type d'un élément (TYPE_FILE, TYPE_DIRECTORY...).
+
+   * @param index indice de l'élément
+   * @return le type, TYPE_UNKNOWN si les attributs n'ont pas pu être lus
+   */
+  char getType(int index);
+
+  /**
+   * Retourne le type correspondant à des attributs.
+
+   * @param attrs les attributs (lus sans suivre les liens), ou null
+   * @return le type
+   */
+  static char typeOf(BasicFileAttributes attrs) {
+    if (attrs == null) {
+      return TYPE_UNKNOWN;
+    } else if (attrs.isSymbolicLink()) {
+      return TYPE_LINK;
+    } else if (attrs.isDirectory()) {
+      return TYPE_DIRECTORY;
+    } else if (attrs.isRegularFile()) {
+      return TYPE_FILE;
+    }
+    return TYPE_OTHER;
+  }
+
+  /**
+   * Lit les attributs d'un élément, sans suivre les liens symboliques.
+
+   * @param chemin le chemin de l'élément
+   * @return les attributs, ou null si l'élément n'existe pas ou n'est pas lisible
+   */
+  static BasicFileAttributes read(Path chemin) {
+    try {
+      return Files.readAttributes(chemin, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    } catch (IOException | SecurityException ex) {
+      return null;
+    }
+  }
+}
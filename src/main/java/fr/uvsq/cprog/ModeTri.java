@@ -0,0 +1,210 @@
+package fr.uvsq.cprog;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Modes de tri du contenu d'un répertoire.
+ * Les clés de tri sont calculées une seule fois par lecture du répertoire
+ * (les noms sont décodés une fois, la taille et la date sont des long, l'extension
+ * et la clé de l'ordre naturel sont des chaînes comparées avec compareTo) ;
+ * le tri ne fait ensuite que comparer ces clés.
+ * Chaque mode se termine par le nom (ordre naturel puis ordre exact des caractères) :
+ * l'ordre est total, les NER ne changent donc pas tant que le contenu ne change pas.
+ */
+public enum ModeTri {
+  /**
+   * Par nom, dans l'ordre naturel ("f2" avant "f10"), sans tenir compte de la casse.
+   */
+  NOM,
+  /**
+   * Par taille, du plus gros au plus petit.
+   */
+  TAILLE,
+  /**
+   * Par date de dernière modification, du plus récent au plus ancien.
+   */
+  DATE,
+  /**
+   * Par extension, puis par nom.
+   */
+  EXTENSION;
+
+  /**
+   * Retourne le mode de tri correspondant à un nom de la commande tri.
+
+   * @param nom nom du mode (nom, taille, date ou extension)
+   * @return le mode de tri
+   */
+  public static ModeTri depuis(String nom) {
+    try {
+      return valueOf(nom.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "Mode de tri invalide (nom, taille, date ou extension).", e);
+    }
+  }
+
+  /**
+   * Trie le contenu d'un répertoire selon ce mode.
+   * Les clés de chaque élément (extension, clé de l'ordre naturel) sont calculées
+   * une seule fois avant le tri.
+
+   * @param contenu le contenu à trier
+   */
+  public void trie(CompactListing contenu) {
+    int taille = contenu.size();
+    Cle[] cles = new Cle[taille];
+    for (int i = 0; i < taille; i++) {
+      cles[i] = cle(i, contenu.getName(i), valeur(contenu, i));
+    }
+    Arrays.sort(cles, this::compare);
+
+    int[] permutation = new int[taille];
+    for (int i = 0; i < taille; i++) {
+      permutation[i] = cles[i].indice;
+    }
+    contenu.reorder(permutation);
+  }
+
+  /**
+   * Retourne la position où insérer un nouvel élément dans un contenu déjà trié.
+
+   * @param contenu le contenu trié selon ce mode
+   * @param nom le nom du nouvel élément
+   * @param taille sa taille (-1 si inconnue)
+   * @param date sa date de modification (-1 si inconnue)
+   * @return l'indice d'insertion
+   */
+  public int position(CompactListing contenu, String nom, long taille, long date) {
+    Cle cle = cle(-1, nom, this == TAILLE ? taille : date);
+    int debut = 0;
+    int fin = contenu.size();
+    while (debut < fin) {
+      int milieu = (debut + fin) >>> 1;
+      if (compare(cle(milieu, contenu.getName(milieu), valeur(contenu, milieu)), cle) < 0) {
+        debut = milieu + 1;
+      } else {
+        fin = milieu;
+      }
+    }
+    return debut;
+  }
+
+  /**
+   * Clé numérique du mode (taille ou date) d'un élément, 0 pour les modes par nom.
+   */
+  private long valeur(CompactListing contenu, int index) {
+    if (this == TAILLE) {
+      return contenu.getSize(index);
+    }
+    return this == DATE ? contenu.getLastModified(index) : 0;
+  }
+
+  private Cle cle(int indice, String nom, long valeur) {
+    return new Cle(indice, nom, valeur, this == EXTENSION ? extension(nom) : "",
+        cleNaturelle(nom));
+  }
+
+  private int compare(Cle a, Cle b) {
+    int resultat = 0;
+    if (this == TAILLE || this == DATE) {
+      // Décroissant : les plus gros ou les plus récents d'abord
+      resultat = Long.compare(b.valeur, a.valeur);
+    } else if (this == EXTENSION) {
+      resultat = a.extension.compareTo(b.extension);
+    }
+    if (resultat == 0) {
+      resultat = a.naturel.compareTo(b.naturel);
+    }
+    return resultat != 0 ? resultat : a.nom.compareTo(b.nom);
+  }
+
+  /**
+   * Retourne l'extension d'un nom, en minuscules (vide s'il n'en a pas).
+   * Le point initial d'un fichier caché n'est pas une extension.
+   */
+  static String extension(String nom) {
+    int point = nom.lastIndexOf('.');
+    return point <= 0 ? "" : nom.substring(point + 1).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Compare deux noms dans l'ordre naturel : les suites de chiffres (0 à 9) sont comparées
+   * comme des nombres et les lettres sans tenir compte de la casse.
+
+   * @param a premier nom
+   * @param b second nom
+   * @return négatif, zéro ou positif comme compareTo
+   */
+  static int compareNaturel(String a, String b) {
+    return cleNaturelle(a).compareTo(cleNaturelle(b));
+  }
+
+  /**
+   * Retourne la clé de l'ordre naturel d'un nom : les clés de deux noms se comparent
+   * (compareTo) comme ces noms dans l'ordre naturel.
+   * Les lettres sont mises en minuscules et chaque suite de chiffres est remplacée par '0',
+   * le nombre de ses chiffres sans les zéros initiaux (en un caractère) puis ces chiffres :
+   * la plus longue suite est la plus grande, et une suite se compare à un autre caractère
+   * comme son premier chiffre.
+
+   * @param nom le nom
+   * @return la clé du nom
+   */
+  static String cleNaturelle(String nom) {
+    StringBuilder cle = new StringBuilder(nom.length() + 4);
+    int i = 0;
+    while (i < nom.length()) {
+      char c = nom.charAt(i);
+      if (estChiffre(c)) {
+        int fin = finChiffres(nom, i);
+        int debut = sansZeros(nom, i, fin);
+        cle.append('0').append((char) (fin - debut)).append(nom, debut, fin);
+        i = fin;
+      } else {
+        cle.append(Character.toLowerCase(c));
+        i++;
+      }
+    }
+    return cle.toString();
+  }
+
+  private static boolean estChiffre(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static int finChiffres(String s, int debut) {
+    int fin = debut;
+    while (fin < s.length() && estChiffre(s.charAt(fin))) {
+      fin++;
+    }
+    return fin;
+  }
+
+  private static int sansZeros(String s, int debut, int fin) {
+    while (debut < fin - 1 && s.charAt(debut) == '0') {
+      debut++;
+    }
+    return debut;
+  }
+
+  /**
+   * Les clés de tri d'un élément.
+   */
+  private static final class Cle {
+    private final int indice;
+    private final String nom;
+    private final long valeur;
+    private final String extension;
+    private final String naturel;
+
+    private Cle(int indice, String nom, long valeur, String extension, String naturel) {
+      this.indice = indice;
+      this.nom = nom;
+      this.valeur = valeur;
+      this.extension = extension;
+      this.naturel = naturel;
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package fr.uvsq.cprog;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache en mémoire des tables de notes, une par répertoire.
+ * Une entrée n'est valable que si le fichier de notes et le journal du répertoire
+ * ont toujours la même date de modification et la même taille (voir Stamp).
+ * Le cache est limité en taille totale des notes : les répertoires
+ * les moins récemment utilisés sont retirés en premier.
+ */
+public class NoteCache {
+
+  /**
+   * Taille maximale (approximative, en octets) des notes conservées.
+   */
+  private final long maxBytes;
+
+  /**
+   * Taille actuelle des notes conservées.
+   */
+  private long totalBytes;
+
+  /**
+   * Les entrées du cache, de la moins récemment utilisée à la plus récemment utilisée.
+   */
+  private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Construit un cache vide.
+
+   * @param maxBytes taille maximale des notes conservées, en octets
+   */
+  public NoteCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Retourne la table de notes d'un répertoire si elle est encore valable.
+
+   * @param dir le répertoire
+   * @param stamp l'état actuel des fichiers de notes du répertoire
+   * @return la table en cache, ou null si absente ou périmée
+   */
+  public synchronized NoteTable get(Path dir, Stamp stamp) {
+    Entry entry = entries.get(dir);
+    if (entry == null) {
+      return null;
+    }
+    if (!entry.stamp.equals(stamp)) {
+      remove(dir);
+      return null;
+    }
+    return entry.table;
+  }
+
+  /**
+   * Ajoute ou remplace la table de notes d'un répertoire.
+
+   * @param dir le répertoire
+   * @param stamp l'état des fichiers de notes correspondant à table
+   * @param table la table de notes
+   */
+  public synchronized void put(Path dir, Stamp stamp, NoteTable table) {
+    remove(dir);
+    long weight = table.weight();
+    if (weight > maxBytes) {
+      // Trop gros pour le cache : on ne le garde pas.
+      return;
+    }
+    entries.put(dir, new Entry(stamp, table, weight));
+    totalBytes += weight;
+
+    Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && iterator.hasNext()) {
+      totalBytes -= iterator.next().getValue().weight;
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Retire la table de notes d'un répertoire.
+
+   * @param dir le répertoire
+   */
+  public synchronized void remove(Path dir) {
+    Entry entry = entries.remove(dir);
+    if (entry != null) {
+      totalBytes -= entry.weight;
+    }
+  }
+
+  /**
+   * Vide le cache.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    totalBytes = 0;
+  }
+
+  /**
+   * Retourne la taille actuelle des notes conservées.
+
+   * @return taille en octets
+   */
+  public synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Une entrée du cache.
+   */
+  private static final class Entry {
+    private final Stamp stamp;
+    private final NoteTable table;
+    private final long weight;
+
+    private Entry(Stamp stamp, NoteTable table, long weight) {
+      this.stamp = stamp;
+      this.table = table;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * État (date de modification et taille) du fichier de notes et du journal d'un répertoire.
+   */
+  public static final class Stamp {
+    private final long noteModified;
+    private final long noteSize;
+    private final long journalModified;
+    private final long journalSize;
+
+    private Stamp(long noteModified, long noteSize, long journalModified, long journalSize) {
+      this.noteModified = noteModified;
+      this.noteSize = noteSize;
+      this.journalModified = journalModified;
+      this.journalSize = journalSize;
+    }
+
+    /**
+     * Lit l'état actuel d'un fichier de notes et de son journal.
+
+     * @param noteFile le fichier de notes
+     * @param journal le journal
+     * @return l'état des deux fichiers (un fichier absent a une taille de -1)
+     */
+    public static Stamp of(File noteFile, File journal) {
+      long[] note = attributes(noteFile.toPath());
+      long[] journ = attributes(journal.toPath());
+      return new Stamp(note[0], note[1], journ[0], journ[1]);
+    }
+
+    private static long[] attributes(Path path) {
+      try {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        return new long[] {attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), attrs.size()};
+      } catch (IOException ex) {
+        // Fichier absent
+        return new long[] {-1, -1};
+      }
+    }
+
+    /**
+     * Indique si le fichier de notes ou le journal existe.
+
+     * @return Vrai si au moins un des deux fichiers existe, Faux sinon.
+     */
+    public boolean hasFiles() {
+      return noteSize >= 0 || journalSize >= 0;
+    }
+
+    /**
+     * Écrit cet état dans un flux binaire.
+
+     * @param out le flux
+     */
+    void write(DataOutputStream out) throws IOException {
+      out.writeLong(noteModified);
+      out.writeLong(noteSize);
+      out.writeLong(journalModified);
+      out.writeLong(journalSize);
+    }
+
+    /**
+     * Lit un état écrit par write().
+
+     * @param in le flux
+     * @return l'état lu
+     */
+    static Stamp read(DataInputStream in) throws IOException {
+      return new Stamp(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Stamp)) {
+        return false;
+      }
+      Stamp stamp = (Stamp) other;
+      return noteModified == stamp.noteModified && noteSize == stamp.noteSize
+          && journalModified == stamp.journalModified && journalSize == stamp.journalSize;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(noteModified, noteSize, journalModified, journalSize);
+    }
+  }
+}
@@ -0,0 +1,237 @@
+package fr.uvsq.cprog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Journal des modifications de notes d'un répertoire, nommé "notes.journal".
+ * Chaque annotation ou suppression de note est ajoutée à la fin du journal
+ * sans relire ni réécrire le fichier de notes : le coût d'une modification
+ * ne dépend donc pas du nombre de notes du répertoire.
+ * À la lecture, le journal est rejoué sur le contenu du fichier de notes.
+ * L'en-tête du journal contient le numéro de version du fichier de notes
+ * auquel il s'applique : un journal resté après la réécriture du fichier de notes
+ * (par exemple si le programme s'est arrêté pendant une compaction) est ignoré.
+ * Un dernier enregistrement incomplet (écriture interrompue) est ignoré à la lecture
+ * et remplacé par l'enregistrement ajouté suivant.
+ */
+public class NoteJournal {
+
+  /**
+   * Nom du fichier journal dans chaque répertoire.
+   */
+  public static final String FILE_NAME = "notes.journal";
+
+  /**
+   * Nombre magique en tête du journal ("JRNL" en ASCII).
+   */
+  static final int MAGIC = 0x4A524E4C;
+
+  /**
+   * Enregistrement : ajoute une note ou un segment daté à la note existante.
+   */
+  static final byte ANNOTE = 3;
+
+  /**
+   * Ancien enregistrement d'annotation, sans date (encore relu).
+   */
+  static final byte ANNOTE_SANS_DATE = 1;
+
+  /**
+   * Enregistrement : supprime la note d'un fichier.
+   */
+  static final byte DELETE = 2;
+
+  /**
+   * Retourne le journal d'un répertoire.
+
+   * @param noteFile le fichier de notes du répertoire
+   * @return le fichier journal situé à côté de noteFile
+   */
+  public static File journalOf(File noteFile) {
+    return new File(noteFile.getAbsoluteFile().getParentFile(), FILE_NAME);
+  }
+
+  /**
+   * Ajoute un enregistrement à la fin du journal (le crée si nécessaire).
+   * Un journal correspondant à une autre version du fichier de notes est remplacé.
+   * Un dernier enregistrement incomplet est retiré avant l'ajout : les enregistrements
+   * suivants ne seraient sinon pas relus correctement.
+
+   * @param journal le fichier journal
+   * @param version le numéro de version du fichier de notes
+   * @param type le type d'enregistrement (ANNOTE ou DELETE)
+   * @param nom le nom du fichier annoté
+   * @param date la date de l'annotation (ignorée pour DELETE)
+   * @param texte le texte à ajouter (ignoré pour DELETE)
+   */
+  public static void append(File journal, long version, byte type, String nom, long date,
+      String texte) {
+    long fin = longueurValide(journal, version);
+    boolean nouveau = fin < 0;
+
+    try (FileOutputStream fichier = new FileOutputStream(journal, !nouveau)) {
+      if (!nouveau && fichier.getChannel().size() > fin) {
+        fichier.getChannel().truncate(fin);
+      }
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fichier));
+      if (nouveau) {
+        out.writeInt(MAGIC);
+        out.writeLong(version);
+      }
+      out.writeByte(type);
+      BinaryNoteStore.writeString(out, nom);
+      if (type == ANNOTE) {
+        out.writeLong(date);
+        BinaryNoteStore.writeString(out, texte);
+      }
+      out.flush();
+    } catch (IOException ex) {
+      throw new RuntimeException("Erreur, le journal des notes n'a pas pu etre écrit.", ex);
+    }
+  }
+
+  /**
+   * Rejoue les enregistrements du journal sur une table de notes.
+   * Un dernier enregistrement incomplet (écriture interrompue) est ignoré,
+   * ainsi qu'un journal correspondant à une autre version du fichier de notes.
+
+   * @param journal le fichier journal (rien n'est fait s'il n'existe pas)
+   * @param table la table de notes à mettre à jour
+   * @param version le numéro de version du fichier de notes lu dans table
+   */
+  public static void replay(File journal, NoteTable table, long version) {
+    if (journal.exists()) {
+      lire(journal, table, version);
+    }
+  }
+
+  /**
+   * Retourne la longueur de la partie valide d'un journal, c'est-à-dire la fin
+   * de son dernier enregistrement complet.
+
+   * @param journal le fichier journal
+   * @param version le numéro de version du fichier de notes
+   * @return la longueur en octets, ou -1 si le journal n'existe pas, n'a pas d'en-tête
+   *     valide ou correspond à une autre version du fichier de notes
+   */
+  static long longueurValide(File journal, long version) {
+    return journal.exists() ? lire(journal, null, version) : -1;
+  }
+
+  /**
+   * Lit les enregistrements du journal et les rejoue sur une table de notes
+   * (si table est null, les enregistrements sont seulement parcourus, et la lecture
+   * s'arrête au premier enregistrement inconnu ou à un en-tête invalide).
+
+   * @return la fin du dernier enregistrement complet, ou -1 si le journal n'a pas
+   *     d'en-tête valide ou correspond à une autre version du fichier de notes
+   */
+  private static long lire(File journal, NoteTable table, long version) {
+    long fin = -1;
+    try (Compteur compteur = new Compteur(new BufferedInputStream(
+        new FileInputStream(journal)))) {
+      DataInputStream in = new DataInputStream(compteur);
+      if (in.readInt() != MAGIC) {
+        if (table == null) {
+          return -1;
+        }
+        throw new IllegalArgumentException("Le fichier " + journal.getName()
+            + " n'est pas un journal de notes.");
+      }
+      if (in.readLong() != version) {
+        return -1;
+      }
+      fin = compteur.lus;
+
+      while (true) {
+        int type = in.read();
+        if (type == -1) {
+          break;
+        }
+        if (type != ANNOTE && type != ANNOTE_SANS_DATE && type != DELETE) {
+          if (table == null) {
+            break;
+          }
+          throw new IllegalArgumentException("Enregistrement de journal inconnu : " + type);
+        }
+        String nom = BinaryNoteStore.readString(in);
+        long date = type == ANNOTE ? in.readLong() : 0;
+        String texte = type == DELETE ? null : BinaryNoteStore.readString(in);
+        fin = compteur.lus;
+        if (table == null) {
+          continue;
+        }
+        if (type == DELETE) {
+          table.remove(nom);
+        } else {
+          table.annote(nom, date, texte);
+        }
+      }
+    } catch (EOFException ex) {
+      // Dernier enregistrement tronqué : on garde ce qui a été lu.
+    } catch (IOException ex) {
+      throw new RuntimeException("Erreur, le journal des notes n'a pas pu etre lu.", ex);
+    }
+    return fin;
+  }
+
+  /**
+   * Retourne le numéro de version du fichier de notes auquel s'applique un journal.
+
+   * @param journal le fichier journal
+   * @return le numéro de version, ou -1 si le journal n'existe pas ou n'a pas d'en-tête valide
+   */
+  static long versionOf(File journal) {
+    try (DataInputStream in = new DataInputStream(new FileInputStream(journal))) {
+      return in.readInt() == MAGIC ? in.readLong() : -1;
+    } catch (IOException ex) {
+      return -1;
+    }
+  }
+
+  /**
+   * Flux comptant les octets lus, pour connaître la fin de chaque enregistrement.
+   */
+  private static final class Compteur extends FilterInputStream {
+    private long lus;
+
+    Compteur(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int octet = super.read();
+      if (octet >= 0) {
+        lus++;
+      }
+      return octet;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        lus += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long sautes = super.skip(n);
+      lus += sautes;
+      return sautes;
+    }
+  }
+}
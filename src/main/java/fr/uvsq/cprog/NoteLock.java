@@ -0,0 +1,177 @@
+package fr.uvsq.cprog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Verrou sur les notes d'un répertoire.
+ * Le verrou d'écriture est partagé entre les threads de l'application (ReentrantLock)
+ * et entre les processus, grâce à un verrou FileChannel sur le fichier "notes.lock"
+ * du répertoire : plusieurs instances du programme peuvent modifier les mêmes notes
+ * sans perdre de modification.
+ * Le fichier "notes.lock" est supprimé quand le répertoire n'a plus de notes
+ * (voir deleteFileOnRelease) : avant sa suppression, un octet y est écrit pour que
+ * les processus qui attendaient ce verrou sachent qu'il faut verrouiller le nouveau fichier.
+ * Le verrou local ne protège que des autres threads de l'application et ne crée
+ * aucun fichier : il sert aux lectures.
+ */
+public class NoteLock implements AutoCloseable {
+
+  /**
+   * Nom du fichier verrouillé dans chaque répertoire.
+   */
+  public static final String FILE_NAME = "notes.lock";
+
+  /**
+   * Verrous des threads de l'application, un par répertoire.
+   */
+  private static final Map<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+  /**
+   * Verrous d'écriture tenant le fichier de verrou, un par répertoire.
+   */
+  private static final Map<Path, NoteLock> HELD = new ConcurrentHashMap<>();
+
+  private final Path dir;
+  private final ReentrantLock localLock;
+  private final FileChannel channel;
+  private final FileLock fileLock;
+
+  /**
+   * Le verrou qui tient le fichier, pour un verrou repris par le même thread.
+   */
+  private final NoteLock outer;
+
+  private boolean deleteFile;
+
+  private NoteLock(Path dir, ReentrantLock localLock, FileChannel channel, FileLock fileLock,
+      NoteLock outer) {
+    this.dir = dir;
+    this.localLock = localLock;
+    this.channel = channel;
+    this.fileLock = fileLock;
+    this.outer = outer;
+  }
+
+  /**
+   * Prend le verrou d'écriture des notes d'un répertoire (attend s'il est déjà pris).
+   * Un thread qui possède déjà le verrou peut le reprendre.
+
+   * @param dir le répertoire
+   * @return le verrou, à libérer avec close()
+   */
+  public static NoteLock acquire(Path dir) {
+    ReentrantLock localLock = localLockOf(dir);
+    localLock.lock();
+    if (localLock.getHoldCount() > 1) {
+      // Le verrou fichier est déjà tenu par ce thread.
+      return new NoteLock(dir, localLock, null, null, HELD.get(dir));
+    }
+
+    FileChannel channel = null;
+    try {
+      while (true) {
+        channel = FileChannel.open(dir.resolve(FILE_NAME), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock fileLock = channel.lock();
+        if (channel.size() == 0) {
+          NoteLock lock = new NoteLock(dir, localLock, channel, fileLock, null);
+          HELD.put(dir, lock);
+          return lock;
+        }
+        // Fichier supprimé par le précédent détenteur du verrou : on verrouille le nouveau
+        channel.close();
+      }
+    } catch (IOException | RuntimeException ex) {
+      closeQuietly(channel);
+      localLock.unlock();
+      throw new RuntimeException("Erreur, les notes du répertoire n'ont pas pu etre verrouillées.",
+          ex);
+    }
+  }
+
+  /**
+   * Prend le verrou local (threads de l'application uniquement) des notes d'un répertoire.
+
+   * @param dir le répertoire
+   * @return le verrou, à libérer avec close()
+   */
+  public static NoteLock local(Path dir) {
+    ReentrantLock localLock = localLockOf(dir);
+    localLock.lock();
+    return new NoteLock(dir, localLock, null, null, null);
+  }
+
+  /**
+   * Demande (ou annule) la suppression du fichier de verrou à la libération du verrou
+   * d'écriture, quand le répertoire n'a plus de notes.
+
+   * @param delete Vrai pour supprimer le fichier
+   */
+  public void deleteFileOnRelease(boolean delete) {
+    if (outer != null) {
+      outer.deleteFileOnRelease(delete);
+    } else {
+      deleteFile = delete;
+    }
+  }
+
+  @Override
+  public void close() {
+    if (fileLock != null) {
+      HELD.remove(dir);
+      if (deleteFile) {
+        deleteLockFile();
+      }
+    }
+    try {
+      if (fileLock != null) {
+        fileLock.release();
+      }
+    } catch (IOException ex) {
+      // Le verrou est de toute façon libéré à la fermeture du canal.
+    } finally {
+      closeQuietly(channel);
+      localLock.unlock();
+    }
+  }
+
+  /**
+   * Marque le fichier de verrou comme supprimé puis le supprime (verrou encore tenu).
+   */
+  private void deleteLockFile() {
+    try {
+      channel.write(ByteBuffer.wrap(new byte[] {1}), 0);
+      try {
+        Files.deleteIfExists(dir.resolve(FILE_NAME));
+      } catch (IOException ex) {
+        // Fichier impossible à supprimer : il reste le fichier de verrou
+        channel.truncate(0);
+      }
+    } catch (IOException ex) {
+      // Le fichier est gardé
+    }
+  }
+
+  private static ReentrantLock localLockOf(Path dir) {
+    return LOCKS.computeIfAbsent(dir, d -> new ReentrantLock());
+  }
+
+  private static void closeQuietly(FileChannel channel) {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException ex) {
+        // Rien à faire
+      }
+    }
+  }
+}
@@ -0,0 +1,657 @@
+package fr.uvsq.cprog;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Index de recherche plein texte sur les notes de toute une arborescence.
+ * Pour chaque répertoire annoté, l'index conserve l'état de ses fichiers de notes
+ * et les mots de chaque note ; l'index inversé (mot vers notes) est construit en mémoire.
+ * L'index est enregistré sur le disque, dans un fichier propre au répertoire de lancement
+ * de l'application (voir defaultIndexFile, ou la propriété système "explorer.index"),
+ * et mis à jour à chaque modification de note : les mises à jour sont mises en attente
+ * et appliquées en arrière-plan, une fois l'index chargé, pour ne pas retarder l'écriture
+ * des notes (ni prolonger le verrou des notes).
+ * Si l'arborescence recherchée n'a jamais été parcourue, ses notes sont toutes lues
+ * en parallèle pour construire l'index. Sinon, à chaque recherche, l'arborescence est
+ * parcourue sans lire les notes pour trouver les répertoires dont les fichiers de notes
+ * ont été créés, modifiés ou supprimés (par exemple par un autre programme) : seules
+ * les notes de ces répertoires sont relues.
+ */
+public class NoteSearchIndex {
+
+  /**
+   * Propriété système permettant de choisir le fichier de l'index.
+   */
+  public static final String PROPERTY = "explorer.index";
+
+  /**
+   * Nombre magique en tête du fichier d'index ("NIDX" en ASCII).
+   */
+  static final int MAGIC = 0x4E494458;
+
+  /**
+   * Version du format du fichier d'index.
+   */
+  static final byte FORMAT_VERSION = 1;
+
+  /**
+   * Index partagé par l'application.
+   */
+  private static NoteSearchIndex instance;
+
+  /**
+   * Thread d'arrière-plan enregistrant l'index sur le disque.
+   */
+  private static final ExecutorService SAVER = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "sauvegarde-index-notes");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Fichier où est enregistré l'index.
+   */
+  private final Path indexFile;
+
+  /**
+   * Racines des arborescences entièrement parcourues.
+   */
+  private final Set<Path> roots = new HashSet<>();
+
+  /**
+   * Les répertoires indexés.
+   */
+  private final Map<Path, DirectoryEntry> directories = new HashMap<>();
+
+  /**
+   * Index inversé : pour chaque mot, les notes qui le contiennent.
+   */
+  private final Map<String, Set<NoteRef>> postings = new HashMap<>();
+
+  /**
+   * Mises à jour pas encore appliquées à l'index, dans l'ordre des modifications.
+   */
+  private final List<Runnable> pendingUpdates = new ArrayList<>();
+
+  private boolean loaded;
+  private boolean dirty;
+  private boolean saveScheduled;
+
+  /**
+   * Construit un index enregistré dans le fichier donné.
+
+   * @param indexFile le fichier de l'index
+   */
+  public NoteSearchIndex(Path indexFile) {
+    this.indexFile = indexFile.toAbsolutePath();
+  }
+
+  /**
+   * Retourne l'index partagé par l'application.
+
+   * @return l'index de recherche des notes
+   */
+  public static synchronized NoteSearchIndex getInstance() {
+    if (instance == null) {
+      String property = System.getProperty(PROPERTY);
+      Path indexFile = property != null
+          ? Paths.get(property)
+          : defaultIndexFile(Paths.get(System.getProperty("user.dir")));
+      instance = new NoteSearchIndex(indexFile);
+      NoteSearchIndex index = instance;
+      Runtime.getRuntime().addShutdownHook(new Thread(index::saveIfDirty));
+    }
+    return instance;
+  }
+
+  /**
+   * Retourne le fichier d'index par défaut d'un répertoire racine :
+   * "~/.explorer/notes-XXXXXXXX.idx", où XXXXXXXX est le code de hachage (en hexadécimal)
+   * du chemin absolu de la racine. Chaque racine a ainsi son propre index.
+
+   * @param root le répertoire racine
+   * @return le fichier de l'index
+   */
+  public static Path defaultIndexFile(Path root) {
+    String key = root.toAbsolutePath().normalize().toString();
+    return Paths.get(System.getProperty("user.home"), ".explorer",
+        String.format("notes-%08x.idx", key.hashCode()));
+  }
+
+  /**
+   * Découpe un texte en mots (suites de lettres, chiffres, '-' et '_'), en minuscules.
+
+   * @param texte le texte à découper
+   * @return les mots du texte, sans doublon
+   */
+  public static Set<String> tokenize(String texte) {
+    Set<String> tokens = new LinkedHashSet<>();
+    if (texte == null) {
+      return tokens;
+    }
+    StringBuilder token = new StringBuilder();
+    for (int i = 0; i <= texte.length(); i++) {
+      char c = i < texte.length() ? texte.charAt(i) : ' ';
+      if (Character.isLetterOrDigit(c) || c == '-' || c == '_') {
+        token.append(Character.toLowerCase(c));
+      } else if (token.length() > 0) {
+        tokens.add(token.toString());
+        token.setLength(0);
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Recherche les fichiers dont la note contient tous les mots de la requête,
+   * dans un répertoire et tous ses sous-répertoires.
+
+   * @param dirPath chemin du répertoire racine de la recherche
+   * @param query les mots à rechercher
+   * @return la liste des noms de fichier trouvés + le chemin de leur répertoire
+   */
+  public List<List<String>> search(String dirPath, String query) {
+    Path root = Paths.get(dirPath).toAbsolutePath().normalize();
+    if (!Files.isDirectory(root)) {
+      String errorMsg = "Le chemin entrée dans correspondre à un répertoire ou n'existe pas.";
+      throw new IllegalArgumentException(errorMsg);
+    }
+
+    boolean covered;
+    synchronized (this) {
+      applyPendingUpdates();
+      covered = isCovered(root);
+    }
+    if (covered) {
+      refresh(root);
+    } else {
+      Map<Path, DirectoryEntry> scanned = scan(root);
+      synchronized (this) {
+        replaceTree(root, scanned);
+      }
+    }
+
+    synchronized (this) {
+      return lookup(root, tokenize(query));
+    }
+  }
+
+  /**
+   * Met à jour l'index après l'ajout (ou la concaténation) d'une note (en arrière-plan).
+
+   * @param dir le répertoire du fichier annoté
+   * @param nom le nom du fichier annoté
+   * @param texte le texte ajouté
+   * @param stamp l'état des fichiers de notes du répertoire après l'ajout
+   */
+  public void noteAdded(Path dir, String nom, String texte, NoteCache.Stamp stamp) {
+    Path key = dir.toAbsolutePath().normalize();
+    enqueue(() -> applyNoteAdded(key, nom, texte, stamp));
+  }
+
+  private void applyNoteAdded(Path key, String nom, String texte, NoteCache.Stamp stamp) {
+    DirectoryEntry entry = directories.get(key);
+    if (entry == null) {
+      // Premier ajout dans ce répertoire : on indexe toutes ses notes.
+      addDirectory(key, entryOf(Annotation.readDirectory(key), stamp));
+      markDirty();
+      return;
+    }
+    entry.stamp = stamp;
+    Set<String> tokens = entry.tokens.computeIfAbsent(nom, n -> new HashSet<>());
+    NoteRef ref = new NoteRef(key, nom);
+    for (String token : tokenize(texte)) {
+      tokens.add(token);
+      postings.computeIfAbsent(token, t -> new HashSet<>()).add(ref);
+    }
+    markDirty();
+  }
+
+  /**
+   * Met à jour l'index après la suppression d'une note (en arrière-plan).
+
+   * @param dir le répertoire du fichier
+   * @param nom le nom du fichier
+   * @param stamp l'état des fichiers de notes du répertoire après la suppression
+   */
+  public void noteRemoved(Path dir, String nom, NoteCache.Stamp stamp) {
+    Path key = dir.toAbsolutePath().normalize();
+    enqueue(() -> applyNoteRemoved(key, nom, stamp));
+  }
+
+  private void applyNoteRemoved(Path key, String nom, NoteCache.Stamp stamp) {
+    DirectoryEntry entry = directories.get(key);
+    if (entry == null) {
+      return;
+    }
+    entry.stamp = stamp;
+    removeNote(key, nom, entry.tokens.remove(nom));
+    markDirty();
+  }
+
+  /**
+   * Met à jour l'index après la réécriture de toutes les notes d'un répertoire
+   * (en arrière-plan).
+
+   * @param dir le répertoire
+   * @param objectsList les notes du répertoire
+   * @param stamp l'état des fichiers de notes du répertoire après l'écriture
+   */
+  public void directoryReplaced(Path dir, List<Fichier> objectsList, NoteCache.Stamp stamp) {
+    Path key = dir.toAbsolutePath().normalize();
+    List<Fichier> notes = new ArrayList<>(objectsList);
+    enqueue(() -> {
+      removeDirectory(key);
+      addDirectory(key, entryOf(notes, stamp));
+      markDirty();
+    });
+  }
+
+  /**
+   * Met à jour l'index après la copie, le déplacement ou la suppression d'une arborescence :
+   * les répertoires indexés qu'elle contenait sont retirés et, si elle fait partie
+   * d'une arborescence déjà parcourue, ses répertoires annotés sont relus.
+
+   * @param root l'arborescence copiée, déplacée ou supprimée
+   */
+  public void treeChanged(Path root) {
+    Path key = root.toAbsolutePath().normalize();
+    boolean covered;
+    synchronized (this) {
+      applyPendingUpdates();
+      covered = isCovered(key);
+    }
+
+    Map<Path, DirectoryEntry> scanned = covered && Files.isDirectory(key)
+        ? scan(key) : new HashMap<>();
+    synchronized (this) {
+      directories.keySet().stream().filter(dir -> dir.startsWith(key))
+          .collect(Collectors.toList()).forEach(this::removeDirectory);
+      scanned.forEach(this::addDirectory);
+      markDirty();
+    }
+  }
+
+  /**
+   * Indique si une arborescence fait partie d'une arborescence déjà parcourue.
+   */
+  private boolean isCovered(Path root) {
+    return roots.stream().anyMatch(root::startsWith);
+  }
+
+  /**
+   * Met à jour l'index d'une arborescence déjà parcourue : les répertoires annotés sont
+   * recherchés sans lire les notes, et seuls ceux qui ne sont pas indexés, dont les fichiers
+   * de notes ont changé ou qui n'ont plus de notes sont relus ou retirés.
+   */
+  private void refresh(Path root) {
+    Set<Path> annotatedDirs = annotatedDirectories(root);
+    List<Path> stale = new ArrayList<>();
+    List<Path> removed;
+    synchronized (this) {
+      for (Path dir : annotatedDirs) {
+        DirectoryEntry entry = directories.get(dir);
+        if (entry == null || !Annotation.stampOf(dir).equals(entry.stamp)) {
+          stale.add(dir);
+        }
+      }
+      removed = directories.keySet().stream()
+          .filter(dir -> dir.startsWith(root) && !annotatedDirs.contains(dir))
+          .collect(Collectors.toList());
+    }
+    if (stale.isEmpty() && removed.isEmpty()) {
+      return;
+    }
+
+    Map<Path, DirectoryEntry> read = readDirectories(stale);
+    synchronized (this) {
+      removed.forEach(this::removeDirectory);
+      stale.forEach(this::removeDirectory);
+      read.forEach(this::addDirectory);
+      markDirty();
+    }
+  }
+
+  /**
+   * Parcourt une arborescence et lit en parallèle les notes de chaque répertoire annoté.
+   */
+  private static Map<Path, DirectoryEntry> scan(Path root) {
+    return readDirectories(annotatedDirectories(root));
+  }
+
+  /**
+   * Retourne les répertoires d'une arborescence qui contiennent un fichier de notes.
+   */
+  private static Set<Path> annotatedDirectories(Path root) {
+    Set<String> noteFiles = Set.of(Annotation.getNoteStore().getFileName(),
+        NoteJournal.FILE_NAME, XmlNoteStore.FILE_NAME);
+    Set<Path> annotatedDirs = new HashSet<>();
+
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          if (noteFiles.contains(file.getFileName().toString())) {
+            annotatedDirs.add(file.getParent());
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException ex) {
+          // Répertoire illisible : on l'ignore
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException ex) {
+      throw new RuntimeException("Erreur lors du parcours de l'arborescence.", ex);
+    }
+    return annotatedDirs;
+  }
+
+  /**
+   * Lit en parallèle les notes de plusieurs répertoires.
+   */
+  private static Map<Path, DirectoryEntry> readDirectories(Collection<Path> dirs) {
+    return dirs.parallelStream().collect(Collectors.toConcurrentMap(
+        dir -> dir,
+        dir -> {
+          // L'état est lu avant les notes : une modification pendant la lecture
+          // sera vue à la prochaine recherche.
+          NoteCache.Stamp stamp = Annotation.stampOf(dir);
+          return entryOf(Annotation.readDirectory(dir), stamp);
+        }));
+  }
+
+  /**
+   * Remplace les répertoires indexés d'une arborescence par ceux qui viennent d'être lus.
+   */
+  private void replaceTree(Path root, Map<Path, DirectoryEntry> scanned) {
+    List<Path> oldDirs = directories.keySet().stream()
+        .filter(dir -> dir.startsWith(root)).collect(Collectors.toList());
+    oldDirs.forEach(this::removeDirectory);
+    scanned.forEach(this::addDirectory);
+
+    roots.removeIf(indexedRoot -> indexedRoot.startsWith(root));
+    roots.add(root);
+    markDirty();
+  }
+
+  /**
+   * Retourne les notes d'une arborescence contenant tous les mots donnés.
+   */
+  private List<List<String>> lookup(Path root, Set<String> tokens) {
+    List<List<String>> liste = new ArrayList<>();
+    if (tokens.isEmpty()) {
+      return liste;
+    }
+
+    // On part du mot le moins fréquent puis on filtre avec les autres.
+    Set<NoteRef> smallest = null;
+    for (String token : tokens) {
+      Set<NoteRef> refs = postings.get(token);
+      if (refs == null) {
+        return liste;
+      }
+      if (smallest == null || refs.size() < smallest.size()) {
+        smallest = refs;
+      }
+    }
+
+    List<NoteRef> matches = new ArrayList<>();
+    for (NoteRef ref : smallest) {
+      if (!ref.dir.startsWith(root)) {
+        continue;
+      }
+      boolean all = true;
+      for (String token : tokens) {
+        if (!postings.get(token).contains(ref)) {
+          all = false;
+          break;
+        }
+      }
+      if (all) {
+        matches.add(ref);
+      }
+    }
+
+    matches.sort(Comparator.comparing((NoteRef ref) -> ref.dir.toString())
+        .thenComparing(ref -> ref.nom));
+    for (NoteRef ref : matches) {
+      liste.add(List.of(ref.nom, ref.dir.toString()));
+    }
+    return liste;
+  }
+
+  private static DirectoryEntry entryOf(List<Fichier> objectsList, NoteCache.Stamp stamp) {
+    DirectoryEntry entry = new DirectoryEntry(stamp);
+    for (Fichier fichier : objectsList) {
+      entry.tokens.put(fichier.getNom(), new HashSet<>(tokenize(fichier.getTexteAssocie())));
+    }
+    return entry;
+  }
+
+  private void addDirectory(Path dir, DirectoryEntry entry) {
+    directories.put(dir, entry);
+    for (Map.Entry<String, Set<String>> note : entry.tokens.entrySet()) {
+      NoteRef ref = new NoteRef(dir, note.getKey());
+      for (String token : note.getValue()) {
+        postings.computeIfAbsent(token, t -> new HashSet<>()).add(ref);
+      }
+    }
+  }
+
+  private void removeDirectory(Path dir) {
+    DirectoryEntry entry = directories.remove(dir);
+    if (entry != null) {
+      for (Map.Entry<String, Set<String>> note : entry.tokens.entrySet()) {
+        removeNote(dir, note.getKey(), note.getValue());
+      }
+    }
+  }
+
+  private void removeNote(Path dir, String nom, Set<String> tokens) {
+    if (tokens == null) {
+      return;
+    }
+    NoteRef ref = new NoteRef(dir, nom);
+    for (String token : tokens) {
+      Set<NoteRef> refs = postings.get(token);
+      if (refs != null) {
+        refs.remove(ref);
+        if (refs.isEmpty()) {
+          postings.remove(token);
+        }
+      }
+    }
+  }
+
+  /**
+   * Met en attente une mise à jour de l'index et prévoit son application en arrière-plan.
+   */
+  private void enqueue(Runnable update) {
+    synchronized (pendingUpdates) {
+      pendingUpdates.add(update);
+    }
+    SAVER.execute(this::applyPendingUpdates);
+  }
+
+  /**
+   * Charge l'index si nécessaire puis lui applique les mises à jour en attente.
+   */
+  private synchronized void applyPendingUpdates() {
+    ensureLoaded();
+    List<Runnable> updates;
+    synchronized (pendingUpdates) {
+      updates = new ArrayList<>(pendingUpdates);
+      pendingUpdates.clear();
+    }
+    updates.forEach(Runnable::run);
+  }
+
+  /**
+   * Charge l'index depuis son fichier lors de la première utilisation.
+   * Un fichier absent ou illisible donne un index vide, reconstruit au fil des recherches.
+   */
+  private void ensureLoaded() {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    if (!Files.exists(indexFile)) {
+      return;
+    }
+
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(indexFile)))) {
+      if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+        return;
+      }
+      int rootCount = in.readInt();
+      for (int i = 0; i < rootCount; i++) {
+        roots.add(Paths.get(BinaryNoteStore.readString(in)));
+      }
+      int dirCount = in.readInt();
+      for (int i = 0; i < dirCount; i++) {
+        Path dir = Paths.get(BinaryNoteStore.readString(in));
+        DirectoryEntry entry = new DirectoryEntry(NoteCache.Stamp.read(in));
+        int noteCount = in.readInt();
+        for (int j = 0; j < noteCount; j++) {
+          String nom = BinaryNoteStore.readString(in);
+          int tokenCount = in.readInt();
+          Set<String> tokens = new HashSet<>();
+          for (int k = 0; k < tokenCount; k++) {
+            tokens.add(BinaryNoteStore.readString(in));
+          }
+          entry.tokens.put(nom, tokens);
+        }
+        addDirectory(dir, entry);
+      }
+    } catch (IOException | RuntimeException ex) {
+      // Index corrompu : on repart d'un index vide.
+      roots.clear();
+      directories.clear();
+      postings.clear();
+    }
+  }
+
+  /**
+   * Prévoit l'enregistrement de l'index en arrière-plan.
+   */
+  private void markDirty() {
+    dirty = true;
+    if (!saveScheduled) {
+      saveScheduled = true;
+      SAVER.execute(this::saveIfDirty);
+    }
+  }
+
+  /**
+   * Enregistre l'index s'il a été modifié depuis le dernier enregistrement.
+   */
+  public synchronized void saveIfDirty() {
+    applyPendingUpdates();
+    saveScheduled = false;
+    if (!dirty) {
+      return;
+    }
+    try {
+      save();
+      dirty = false;
+    } catch (IOException ex) {
+      // L'index sera reconstruit à partir des notes si besoin.
+    }
+  }
+
+  /**
+   * Écrit l'index dans un fichier temporaire puis remplace l'ancien fichier (voir AtomicFile).
+   */
+  private void save() throws IOException {
+    Files.createDirectories(indexFile.getParent());
+
+    AtomicFile.write(indexFile.toFile(), stream -> {
+      DataOutputStream out = new DataOutputStream(stream);
+      out.writeInt(MAGIC);
+      out.writeByte(FORMAT_VERSION);
+      out.writeInt(roots.size());
+      for (Path root : roots) {
+        BinaryNoteStore.writeString(out, root.toString());
+      }
+      out.writeInt(directories.size());
+      for (Map.Entry<Path, DirectoryEntry> dir : directories.entrySet()) {
+        BinaryNoteStore.writeString(out, dir.getKey().toString());
+        dir.getValue().stamp.write(out);
+        out.writeInt(dir.getValue().tokens.size());
+        for (Map.Entry<String, Set<String>> note : dir.getValue().tokens.entrySet()) {
+          BinaryNoteStore.writeString(out, note.getKey());
+          out.writeInt(note.getValue().size());
+          for (String token : note.getValue()) {
+            BinaryNoteStore.writeString(out, token);
+          }
+        }
+      }
+      out.flush();
+    });
+  }
+
+  /**
+   * Les notes indexées d'un répertoire.
+   */
+  private static final class DirectoryEntry {
+    private NoteCache.Stamp stamp;
+    private final Map<String, Set<String>> tokens = new HashMap<>();
+
+    private DirectoryEntry(NoteCache.Stamp stamp) {
+      this.stamp = stamp;
+    }
+  }
+
+  /**
+   * Référence vers la note d'un fichier.
+   */
+  private static final class NoteRef {
+    private final Path dir;
+    private final String nom;
+
+    private NoteRef(Path dir, String nom) {
+      this.dir = dir;
+      this.nom = nom;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof NoteRef)) {
+        return false;
+      }
+      NoteRef ref = (NoteRef) other;
+      return dir.equals(ref.dir) && nom.equals(ref.nom);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(dir, nom);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package fr.uvsq.cprog;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Cette interface représente un format de stockage des notes d'un répertoire.
+ * Une implémentation sait lire et écrire la liste des objets Fichier
+ * contenue dans le fichier de notes d'un répertoire.
+ */
+public interface NoteStore {
+
+  /**
+   * Retourne le nom du fichier de notes utilisé par ce format dans chaque répertoire.
+
+   * @return le nom du fichier de notes (par exemple "notes.bin")
+   */
+  String getFileName();
+
+  /**
+   * Lit le contenu d'un fichier de notes.
+
+   * @param noteFile le fichier de notes à lire
+   * @return la liste des objets Fichier contenus dans noteFile
+   */
+  List<Fichier> readNotes(File noteFile);
+
+  /**
+   * Écrit une liste d'objets Fichier dans un fichier de notes.
+   * Le contenu précédent du fichier est remplacé.
+
+   * @param noteFile le fichier de notes à écrire
+   * @param objectsList la liste d'objets à écrire dans noteFile
+   */
+  void writeNotes(File noteFile, List<Fichier> objectsList);
+
+  /**
+   * Écrit une liste d'objets Fichier dans un fichier de notes,
+   * avec un numéro de version donné (ignoré si le format n'en conserve pas).
+
+   * @param noteFile le fichier de notes à écrire
+   * @param objectsList la liste d'objets à écrire dans noteFile
+   * @param version le numéro de version des notes écrites
+   */
+  default void writeNotes(File noteFile, List<Fichier> objectsList, long version) {
+    writeNotes(noteFile, objectsList);
+  }
+
+  /**
+   * Retourne le numéro de version des notes d'un fichier de notes.
+   * Un format qui ne conserve pas de numéro de version retourne toujours 0.
+
+   * @param noteFile le fichier de notes à lire
+   * @return le numéro de version des notes contenues dans noteFile
+   */
+  default long readVersion(File noteFile) {
+    return 0;
+  }
+}
@@ -0,0 +1,276 @@
+package fr.uvsq.cprog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table des notes d'un répertoire, indexée par nom de fichier.
+ * C'est une table de hachage à adressage ouvert (sondage linéaire) :
+ * la recherche, la concaténation et la suppression d'une note se font en temps constant.
+ * Les objets Fichier sont rangés dans un tableau séparé, dans leur ordre d'insertion,
+ * afin que l'ordre des notes dans le fichier reste stable d'une écriture à l'autre.
+ */
+public class NoteTable {
+
+  /**
+   * Case de la table jamais utilisée.
+   */
+  private static final int EMPTY = 0;
+
+  /**
+   * Case de la table dont l'entrée a été supprimée.
+   */
+  private static final int DELETED = -1;
+
+  /**
+   * Surcoût estimé en mémoire d'un segment de note, en octets.
+   */
+  private static final long SEGMENT_WEIGHT = 40;
+
+  /**
+   * Cases de la table : indice de l'entrée dans entries + 1, EMPTY ou DELETED.
+   */
+  private int[] slots;
+
+  /**
+   * Les objets Fichier dans leur ordre d'insertion (null si supprimé).
+   */
+  private Fichier[] entries;
+
+  /**
+   * Nombre de cases utilisées dans entries (y compris les entrées supprimées).
+   */
+  private int used;
+
+  /**
+   * Nombre de notes présentes dans la table.
+   */
+  private int size;
+
+  /**
+   * Taille approximative en mémoire des notes présentes, en octets.
+   */
+  private long weight;
+
+  /**
+   * Construit une table vide.
+   */
+  public NoteTable() {
+    this(8);
+  }
+
+  /**
+   * Construit une table vide pouvant contenir expected notes sans être agrandie.
+
+   * @param expected nombre de notes attendu
+   */
+  public NoteTable(int expected) {
+    int capacity = 16;
+    while (capacity * 3 / 4 < expected) {
+      capacity <<= 1;
+    }
+    slots = new int[capacity];
+    entries = new Fichier[Math.max(4, expected)];
+  }
+
+  /**
+   * Construit une table à partir d'une liste d'objets Fichier.
+
+   * @param objectsList la liste des notes, dans l'ordre du fichier
+   * @return la table contenant ces notes
+   */
+  public static NoteTable of(List<Fichier> objectsList) {
+    NoteTable table = new NoteTable(objectsList.size());
+    for (Fichier fichier : objectsList) {
+      table.put(fichier);
+    }
+    return table;
+  }
+
+  /**
+   * Retourne le nombre de notes de la table.
+
+   * @return nombre de notes
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Retourne la taille approximative en mémoire des notes de la table.
+
+   * @return taille en octets
+   */
+  public long weight() {
+    return weight;
+  }
+
+  /**
+   * Retourne la note d'un fichier.
+
+   * @param nom nom du fichier
+   * @return l'objet Fichier correspondant ou null si le fichier n'a pas de note
+   */
+  public Fichier get(String nom) {
+    int slot = findSlot(nom);
+    return slot < 0 ? null : entries[slots[slot] - 1];
+  }
+
+  /**
+   * Ajoute ou remplace la note d'un fichier.
+   * Une note remplacée garde sa position dans l'ordre de la table.
+
+   * @param fichier l'objet Fichier à ajouter
+   */
+  public void put(Fichier fichier) {
+    int slot = findSlot(fichier.getNom());
+    if (slot >= 0) {
+      weight += weightOf(fichier) - weightOf(entries[slots[slot] - 1]);
+      entries[slots[slot] - 1] = fichier;
+    } else {
+      insert(fichier);
+    }
+  }
+
+  /**
+   * Ajoute une note à un fichier, ou un segment si le fichier a déjà une note,
+   * datée de l'instant présent.
+
+   * @param nom nom du fichier
+   * @param texte texte de la note
+   */
+  public void annote(String nom, String texte) {
+    annote(nom, System.currentTimeMillis(), texte);
+  }
+
+  /**
+   * Ajoute une note à un fichier, ou un segment si le fichier a déjà une note.
+   * Le texte déjà présent n'est pas recopié.
+
+   * @param nom nom du fichier
+   * @param date date de l'annotation (en millisecondes depuis 1970)
+   * @param texte texte de la note
+   */
+  public void annote(String nom, long date, String texte) {
+    Fichier existingFichier = get(nom);
+    if (existingFichier != null) {
+      existingFichier.addSegment(date, texte);
+      weight += SEGMENT_WEIGHT + 2L * (texte == null ? 0 : texte.length());
+    } else {
+      insert(new Fichier(nom, date, texte));
+    }
+  }
+
+  /**
+   * Supprime la note d'un fichier si elle existe.
+
+   * @param nom nom du fichier
+   * @return Vrai si une note a été supprimée, Faux sinon.
+   */
+  public boolean remove(String nom) {
+    int slot = findSlot(nom);
+    if (slot < 0) {
+      return false;
+    }
+    weight -= weightOf(entries[slots[slot] - 1]);
+    entries[slots[slot] - 1] = null;
+    slots[slot] = DELETED;
+    size--;
+    return true;
+  }
+
+  /**
+   * Retourne les notes de la table dans leur ordre d'insertion.
+
+   * @return une nouvelle liste des objets Fichier
+   */
+  public List<Fichier> toList() {
+    List<Fichier> objectsList = new ArrayList<>(size);
+    for (int i = 0; i < used; i++) {
+      if (entries[i] != null) {
+        objectsList.add(entries[i]);
+      }
+    }
+    return objectsList;
+  }
+
+  /**
+   * Cherche la case contenant le nom donné.
+
+   * @return l'indice de la case, ou -1 si le nom n'est pas dans la table
+   */
+  private int findSlot(String nom) {
+    int mask = slots.length - 1;
+    int index = hash(nom) & mask;
+
+    while (slots[index] != EMPTY) {
+      if (slots[index] != DELETED && entries[slots[index] - 1].getNom().equals(nom)) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Ajoute une entrée dont on sait que le nom n'est pas dans la table.
+   */
+  private void insert(Fichier fichier) {
+    // Agrandit (ou nettoie) la table si elle est remplie aux trois quarts
+    if ((used + 1) > slots.length * 3 / 4) {
+      rehash(Math.max(size + 1, 8));
+    }
+    if (used == entries.length) {
+      entries = Arrays.copyOf(entries, entries.length * 2);
+    }
+
+    entries[used] = fichier;
+    used++;
+    size++;
+    weight += weightOf(fichier);
+
+    int mask = slots.length - 1;
+    int index = hash(fichier.getNom()) & mask;
+    while (slots[index] > 0) {
+      index = (index + 1) & mask;
+    }
+    slots[index] = used;
+  }
+
+  /**
+   * Reconstruit la table sans les entrées supprimées.
+   */
+  private void rehash(int expected) {
+    final List<Fichier> objectsList = toList();
+    int capacity = 16;
+    while (capacity * 3 / 4 < expected * 2) {
+      capacity <<= 1;
+    }
+    slots = new int[capacity];
+    entries = new Fichier[Math.max(entries.length, expected * 2)];
+    used = 0;
+    size = 0;
+    weight = 0;
+    for (Fichier fichier : objectsList) {
+      insert(fichier);
+    }
+  }
+
+  /**
+   * Estime la taille en mémoire d'un objet Fichier (deux octets par caractère
+   * plus un surcoût fixe pour les objets).
+   */
+  private static long weightOf(Fichier fichier) {
+    return 64 + SEGMENT_WEIGHT * fichier.getSegments().size()
+        + 2L * (fichier.getNom().length() + fichier.getTextLength());
+  }
+
+  /**
+   * Calcule le code de hachage d'un nom (bits de poids fort mélangés aux bits de poids faible).
+   */
+  private static int hash(String nom) {
+    int h = nom.hashCode();
+    return h ^ (h >>> 16);
+  }
+}
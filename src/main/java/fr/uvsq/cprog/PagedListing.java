@@ -0,0 +1,417 @@
+package fr.uvsq.cprog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * Contenu d'un très grand répertoire, lu page par page.
+ * Le répertoire n'est parcouru qu'une fois : les noms de ses éléments (sans leurs attributs)
+ * sont écrits les uns à la suite des autres dans un fichier temporaire, et seule la position
+ * dans ce fichier du premier nom de chaque page (un point de reprise) est gardée en mémoire.
+ * Une page, en avant comme en arrière, est relue à partir de son point de reprise, sans
+ * relire le répertoire ; seuls les chemins et les attributs de la page chargée sont gardés
+ * en mémoire (les attributs sont lus au chargement de la page).
+ * getName() lit les noms sans lire les attributs : parcourir tous les noms (pour un filtre)
+ * ne demande aucun appel système sur les éléments.
+ * L'ordre des éléments est celui du DirectoryStream (comme Files.list).
+ * Les créations et suppressions sont appliquées sans relire le répertoire : un élément créé
+ * est ajouté à la fin, un élément supprimé est seulement marqué comme tel (les éléments
+ * suivants remontent d'une place, comme dans une liste) et la page chargée est oubliée.
+ */
+public class PagedListing extends AbstractList<Path> implements Closeable, ListingAttributes {
+
+  /**
+   * Taille du tampon d'écriture des noms.
+   */
+  private static final int TAILLE_TAMPON = 64 * 1024;
+
+  private final Path dir;
+  private final int pageSize;
+
+  /**
+   * Le fichier des noms : pour chaque élément, la longueur de son nom (2 octets)
+   * puis son nom en UTF-8.
+   */
+  private final Path fichierNoms;
+  private final FileChannel noms;
+
+  /**
+   * Noms pas encore écrits dans le fichier, et position dans le fichier de la fin des noms
+   * (tampon compris).
+   */
+  private final ByteBuffer tampon = ByteBuffer.allocate(TAILLE_TAMPON);
+  private long finNoms;
+
+  /**
+   * Points de reprise : position dans le fichier du premier nom de chaque page
+   * (pages du fichier, éléments supprimés compris).
+   */
+  private long[] reprises = new long[16];
+
+  /**
+   * Nombre de noms écrits dans le fichier, et code de hachage de chacun
+   * (pour retrouver un élément sans relire tous les noms).
+   */
+  private int nbNoms;
+  private int[] hachages = new int[1024];
+
+  /**
+   * Positions dans le fichier des éléments supprimés, dans l'ordre croissant.
+   */
+  private int[] supprimes = new int[16];
+  private int nbSupprimes;
+
+  /**
+   * Les chemins de la page chargée.
+   */
+  private Path[] page = new Path[0];
+
+  /**
+   * Les attributs des éléments de la page chargée.
+   */
+  private long[] pageSizes;
+  private long[] pageLastModified;
+  private char[] pageTypes;
+
+  /**
+   * Indice du premier élément de la page chargée.
+   */
+  private int pageStart;
+
+  /**
+   * Les noms d'une page lus par getName (sans attributs), et l'indice du premier.
+   */
+  private String[] pageNoms = new String[0];
+  private int debutPageNoms;
+
+  /**
+   * Construit le contenu paginé (vide) d'un répertoire ; les noms sont ajoutés par ajouter().
+
+   * @param dir le répertoire
+   * @param pageSize le nombre d'éléments d'une page
+   * @throws IOException si le fichier des noms ne peut pas être créé
+   */
+  public PagedListing(Path dir, int pageSize) throws IOException {
+    this.dir = dir;
+    this.pageSize = pageSize;
+    this.fichierNoms = Files.createTempFile("listing", ".noms");
+    fichierNoms.toFile().deleteOnExit();
+    this.noms = FileChannel.open(fichierNoms, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Ajoute un élément à la fin du contenu.
+
+   * @param nom le nom de l'élément
+   */
+  public synchronized void ajouter(String nom) {
+    byte[] octets = nom.getBytes(StandardCharsets.UTF_8);
+    if (nbNoms % pageSize == 0) {
+      int numeroPage = nbNoms / pageSize;
+      if (numeroPage == reprises.length) {
+        reprises = Arrays.copyOf(reprises, reprises.length * 2);
+      }
+      reprises[numeroPage] = finNoms;
+    }
+    try {
+      // Un nom de fichier tient toujours dans le tampon vide
+      if (tampon.remaining() < 2 + octets.length) {
+        ecrireTampon();
+      }
+      tampon.putShort((short) octets.length).put(octets);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Erreur lors de l'écriture des noms du répertoire.", ex);
+    }
+    if (nbNoms == hachages.length) {
+      hachages = Arrays.copyOf(hachages, hachages.length * 2);
+    }
+    hachages[nbNoms++] = nom.hashCode();
+    finNoms += 2 + octets.length;
+  }
+
+  @Override
+  public synchronized int size() {
+    return nbNoms - nbSupprimes;
+  }
+
+  /**
+   * Ajoute un élément créé dans le répertoire, à la fin du contenu uniquement.
+
+   * @param index indice de l'élément (le nombre d'éléments)
+   * @param chemin le chemin de l'élément
+   */
+  @Override
+  public synchronized void add(int index, Path chemin) {
+    if (index != size()) {
+      throw new UnsupportedOperationException(
+          "Un répertoire paginé ne reçoit de nouveaux éléments qu'à la fin.");
+    }
+    ajouter(chemin.getFileName().toString());
+    oublierPages();
+    modCount++;
+  }
+
+  /**
+   * Retire un élément supprimé du répertoire ; les éléments suivants remontent d'une place.
+
+   * @param index indice de l'élément
+   * @return le chemin de l'élément retiré
+   */
+  @Override
+  public synchronized Path remove(int index) {
+    final Path retire = dir.resolve(getName(index));
+    int position = positionDansFichier(index);
+    if (nbSupprimes == supprimes.length) {
+      supprimes = Arrays.copyOf(supprimes, supprimes.length * 2);
+    }
+    int rang = -Arrays.binarySearch(supprimes, 0, nbSupprimes, position) - 1;
+    System.arraycopy(supprimes, rang, supprimes, rang + 1, nbSupprimes - rang);
+    supprimes[rang] = position;
+    nbSupprimes++;
+    oublierPages();
+    modCount++;
+    return retire;
+  }
+
+  /**
+   * Cherche un élément par son nom, sans lire les attributs des éléments : seuls les noms
+   * de même code de hachage sont relus.
+   */
+  @Override
+  public synchronized int indexOf(Object o) {
+    if (!(o instanceof Path) || ((Path) o).getFileName() == null
+        || !dir.equals(((Path) o).getParent())) {
+      return -1;
+    }
+    String nom = ((Path) o).getFileName().toString();
+    int hachage = nom.hashCode();
+    for (int i = 0; i < nbNoms; i++) {
+      if (hachages[i] == hachage) {
+        int rang = Arrays.binarySearch(supprimes, 0, nbSupprimes, i);
+        if (rang < 0 && nom.equals(lireNoms(i, 1, -rang - 1)[0])) {
+          return i + rang + 1;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return indexOf(o) >= 0;
+  }
+
+  /**
+   * Remplace les attributs d'un élément (par exemple après sa modification),
+   * s'il est dans la page chargée ; sinon ils seront lus avec sa page.
+
+   * @param index indice de l'élément
+   * @param attrs les nouveaux attributs, ou null s'ils sont inconnus
+   */
+  public synchronized void setAttributes(int index, BasicFileAttributes attrs) {
+    checkIndex(index);
+    if (index >= pageStart && index < pageStart + page.length) {
+      int i = index - pageStart;
+      pageSizes[i] = attrs == null ? -1 : attrs.size();
+      pageLastModified[i] = attrs == null ? -1 : attrs.lastModifiedTime().toMillis();
+      pageTypes[i] = ListingAttributes.typeOf(attrs);
+    }
+  }
+
+  /**
+   * Retourne le chemin d'un élément, en chargeant sa page si nécessaire.
+
+   * @param index indice de l'élément
+   * @return le chemin de l'élément
+   */
+  @Override
+  public synchronized Path get(int index) {
+    int i = pageIndexOf(index);
+    return page[i];
+  }
+
+  /**
+   * Retourne le nom d'un élément sans lire ses attributs : les noms sont lus une page
+   * à la fois, un parcours de tous les noms lit donc le fichier des noms une seule fois.
+
+   * @param index indice de l'élément
+   * @return le nom de l'élément
+   */
+  public synchronized String getName(int index) {
+    checkIndex(index);
+    if (index >= pageStart && index < pageStart + page.length) {
+      return page[index - pageStart].getFileName().toString();
+    }
+    if (index < debutPageNoms || index >= debutPageNoms + pageNoms.length) {
+      int debut = index / pageSize * pageSize;
+      pageNoms = lireNoms(debut, Math.min(pageSize, size() - debut));
+      debutPageNoms = debut;
+    }
+    return pageNoms[index - debutPageNoms];
+  }
+
+  @Override
+  public synchronized long getSize(int index) {
+    int i = pageIndexOf(index);
+    return pageSizes[i];
+  }
+
+  @Override
+  public synchronized long getLastModified(int index) {
+    int i = pageIndexOf(index);
+    return pageLastModified[i];
+  }
+
+  @Override
+  public synchronized char getType(int index) {
+    int i = pageIndexOf(index);
+    return pageTypes[i];
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Indice " + index + " hors du répertoire.");
+    }
+  }
+
+  /**
+   * Charge la page d'un élément si nécessaire et retourne son indice dans la page
+   * (à appeler avant de lire les tableaux de la page, qui peuvent être remplacés).
+   */
+  private int pageIndexOf(int index) {
+    checkIndex(index);
+    if (index < pageStart || index >= pageStart + page.length) {
+      loadPage(index / pageSize * pageSize);
+    }
+    return index - pageStart;
+  }
+
+  /**
+   * Charge la page commençant à l'indice start : ses noms sont lus à partir
+   * de son point de reprise, puis les attributs de ses éléments.
+   */
+  private void loadPage(int start) {
+    String[] nomsPage = lireNoms(start, Math.min(pageSize, size() - start));
+    int count = nomsPage.length;
+    Path[] entries = new Path[count];
+    long[] sizes = new long[count];
+    long[] lastModified = new long[count];
+    char[] types = new char[count];
+    for (int i = 0; i < count; i++) {
+      entries[i] = dir.resolve(nomsPage[i]);
+      BasicFileAttributes attrs = ListingAttributes.read(entries[i]);
+      sizes[i] = attrs == null ? -1 : attrs.size();
+      lastModified[i] = attrs == null ? -1 : attrs.lastModifiedTime().toMillis();
+      types[i] = ListingAttributes.typeOf(attrs);
+    }
+    page = entries;
+    pageSizes = sizes;
+    pageLastModified = lastModified;
+    pageTypes = types;
+    pageStart = start;
+  }
+
+  /**
+   * Lit les noms de plusieurs éléments consécutifs (nombre noms à partir de l'indice start).
+   */
+  private String[] lireNoms(int start, int nombre) {
+    int position = positionDansFichier(start);
+    int rang = -Arrays.binarySearch(supprimes, 0, nbSupprimes, position) - 1;
+    return lireNoms(position, nombre, rang);
+  }
+
+  /**
+   * Lit des noms à partir d'une position dans le fichier, en sautant les éléments supprimés
+   * (rang est l'indice du premier élément supprimé après cette position), page par page
+   * à partir du point de reprise de la page de la position.
+   */
+  private String[] lireNoms(int position, int nombre, int rang) {
+    String[] resultat = new String[nombre];
+    int n = 0;
+    int suivant = rang;
+    try {
+      ecrireTampon();
+      for (int numeroPage = position / pageSize; n < nombre; numeroPage++) {
+        int premier = numeroPage * pageSize;
+        int dernier = Math.min(premier + pageSize, nbNoms);
+        long fin = dernier < nbNoms ? reprises[numeroPage + 1] : finNoms;
+        ByteBuffer octets = ByteBuffer.allocate((int) (fin - reprises[numeroPage]));
+        while (octets.hasRemaining()
+            && noms.read(octets, reprises[numeroPage] + octets.position()) >= 0) {
+          // Lecture jusqu'à la fin de la page
+        }
+        octets.flip();
+        for (int i = premier; i < dernier && n < nombre; i++) {
+          int longueur = Short.toUnsignedInt(octets.getShort());
+          if (i >= position && suivant < nbSupprimes && supprimes[suivant] == i) {
+            suivant++;
+          } else if (i >= position) {
+            resultat[n++] = new String(octets.array(), octets.position(), longueur,
+                StandardCharsets.UTF_8);
+          }
+          octets.position(octets.position() + longueur);
+        }
+      }
+      return resultat;
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Erreur lors de la lecture des noms du répertoire.", ex);
+    }
+  }
+
+  /**
+   * Retourne la position dans le fichier d'un élément : son indice, augmenté du nombre
+   * d'éléments supprimés avant lui.
+   */
+  private int positionDansFichier(int index) {
+    int position = index;
+    for (int k = 0; k < nbSupprimes && supprimes[k] <= position; k++) {
+      position++;
+    }
+    return position;
+  }
+
+  /**
+   * Oublie la page chargée et les noms lus après une création ou une suppression
+   * (les limites des pages ont changé).
+   */
+  private void oublierPages() {
+    page = new Path[0];
+    pageNoms = new String[0];
+  }
+
+  /**
+   * Écrit dans le fichier les noms du tampon.
+   */
+  private void ecrireTampon() throws IOException {
+    tampon.flip();
+    long position = finNoms - tampon.remaining();
+    while (tampon.hasRemaining()) {
+      position += noms.write(tampon, position);
+    }
+    tampon.clear();
+  }
+
+  /**
+   * Ferme et supprime le fichier des noms.
+   */
+  @Override
+  public synchronized void close() {
+    try {
+      noms.close();
+      Files.deleteIfExists(fichierNoms);
+    } catch (IOException ex) {
+      // Rien à faire : le fichier sera supprimé à l'arrêt du programme
+    }
+  }
+}
@@ -3,21 +3,86 @@ package fr.uvsq.cprog;
 import static org.fusesource.jansi.Ansi.ansi;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
-import org.fusesource.jansi.AnsiConsole;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Classe représentant le répertoire courant du programme.
  * Une instance stocke :
  * - Le chemin du répertoire
  * - Les chemins des fichiers du répertoire, sous forme de liste
+ *   (compacte, voir CompactListing), avec leurs attributs (type, taille, date)
  * Les méthodes de cette classe permet l'affichage de ces derniers avec leur NER
+ * Le contenu est trié selon un mode de tri (voir ModeTri), par nom par défaut :
+ * les NER ne changent pas d'une lecture à l'autre si le contenu n'a pas changé.
+ * Au-delà d'un certain nombre d'éléments, le contenu du répertoire est paginé
+ * (voir PagedListing) : seule une page de chemins est gardée en mémoire, les noms
+ * des autres éléments sont relus sans relire le répertoire,
+ * et il est affiché dans l'ordre du système de fichiers, sans tri.
+ * La méthode rafraichir() surveille le répertoire courant (WatchService) et n'applique
+ * que les créations et suppressions d'éléments, sans relire tout le répertoire.
+ * Le fichier de verrou des notes (voir NoteLock) n'est pas affiché.
+ * Un filtre (voir filtrer) restreint les éléments affichés à ceux dont le nom contient
+ * un motif ; les éléments gardent leur NER.
  */
 public class Repertoire {
+  /**
+   * Nombre d'éléments d'une page d'un répertoire paginé.
+   */
+  public static final int TAILLE_PAGE = 1024;
+
+  /**
+   * Nombre d'éléments au-delà duquel le contenu du répertoire est paginé.
+   */
+  private static int seuilPagination = 50_000;
+
+  /**
+   * Titre affiché en haut de l'écran.
+   */
+  private static final String TITRE =
+      "Gestionnaire de Fichiers en Commandes en Ligne avec Annotations ";
+
+  /**
+   * Marque affichée devant les éléments qui ont une note.
+   */
+  private static final String MARQUE_NOTE = "*";
+
+  /**
+   * Invite affichée en bas de l'écran.
+   */
+  private static final String INVITE = "Entrer une commande: ";
+
+  /**
+   * Format de la date de modification affichée.
+   */
+  private static final DateTimeFormatter FORMAT_DATE =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
   /**
    * Le chemin du répertoire courant.
    */
@@ -34,6 +99,133 @@ public class Repertoire {
    */
   public String pressePapier = "";
 
+  /**
+   * Le mode de tri du contenu.
+   */
+  private ModeTri modeTri = ModeTri.NOM;
+
+  /**
+   * Indice du premier élément affiché (la fenêtre d'affichage sur le contenu).
+   */
+  private int debutAffichage;
+
+  /**
+   * Nombre d'éléments affichés par page, calculé au dernier affichage.
+   */
+  private int lignesParPage = 1;
+
+  /**
+   * Le répertoire dont le contenu a été lu (pour revenir en haut en changeant de répertoire).
+   */
+  private Path repertoireLu;
+
+  /**
+   * Motif du filtre (en minuscules), ou null si tous les éléments sont affichés.
+   */
+  private String motifFiltre;
+
+  /**
+   * Indices (croissants) des éléments retenus par le filtre : les nbFiltres premiers.
+   * L'affichage (debutAffichage, lignesParPage) porte alors sur ces éléments.
+   */
+  private int[] filtre;
+  private int nbFiltres;
+
+  /**
+   * Nombre de noms comparés au motif du filtre, pour les tests.
+   */
+  private long comparaisonsFiltre;
+
+  /**
+   * Thread d'arrière-plan lisant les notes des éléments affichés.
+   * Il lit le contenu du répertoire (pour redessiner l'écran) sous le moniteur de l'objet :
+   * les méthodes qui modifient le contenu, le filtre ou l'affichage sont donc synchronisées.
+   */
+  private static final ExecutorService CHARGEUR_NOTES = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "chargement-notes");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Noms des éléments dont les notes sont demandées (éléments affichés et NER courant),
+   * null si aucune lecture n'est en cours ou faite pour l'affichage actuel.
+   * Ces champs sont partagés avec le thread de lecture des notes (accès synchronisés).
+   */
+  private Set<String> nomsNotes;
+
+  /**
+   * Notes lues pour nomsNotes (null tant que la lecture n'est pas terminée).
+   */
+  private Map<String, String> notesAffichees;
+
+  /**
+   * Vrai si la lecture des notes a échoué : elles seront lues une par une.
+   */
+  private boolean erreurNotes;
+
+  /**
+   * Affichage pour lequel les notes ont été demandées : premier et dernier élément, NER.
+   */
+  private int debutNotes;
+  private int finNotes;
+  private int nerNotes;
+
+  /**
+   * Numéro de la dernière lecture demandée (les résultats des précédentes sont ignorés).
+   */
+  private int generationNotes;
+  private Future<?> chargementNotes;
+
+  /**
+   * Vrai pendant la saisie d'une commande : les notes qui arrivent sont affichées aussitôt.
+   */
+  private boolean enSaisie;
+
+  /**
+   * Paramètres du dernier affichage (hauteur, largeur, NER courant).
+   */
+  private int hauteurImage;
+  private int largeurImage;
+  private int nerImage;
+
+  /**
+   * Rendu de l'écran et lignes de l'image en cours (réutilisées d'un affichage à l'autre).
+   */
+  private final FrameRenderer ecran = new FrameRenderer();
+  private final List<String> image = new ArrayList<>();
+
+  /**
+   * Service de surveillance du répertoire courant (créé au premier rafraichissement).
+   */
+  private WatchService surveillance;
+
+  /**
+   * Clé de surveillance du répertoire surveillé.
+   */
+  private WatchKey cleSurveillance;
+
+  /**
+   * Le répertoire surveillé (null si aucun).
+   */
+  private Path repertoireSurveille;
+
+  /**
+   * Vrai si le répertoire doit être entièrement relu au prochain rafraichissement.
+   */
+  private boolean relectureDemandee;
+
+  /**
+   * Noms des éléments modifiés par une commande (voir signaler), vérifiés au prochain
+   * rafraichissement comme les événements du WatchService.
+   */
+  private final Set<Path> elementsSignales = new HashSet<>();
+
+  /**
+   * Nombre de lectures complètes du répertoire, pour les tests.
+   */
+  private long lectures;
+
   /**
    * Constructeur : Affecte les attributs à partir du chemin courant donné.
    *
@@ -46,16 +238,447 @@ public class Repertoire {
     actualiser();
   }
 
+  /**
+   * Modifie le nombre d'éléments au-delà duquel le contenu d'un répertoire est paginé.
+
+   * @param seuil nombre d'éléments
+   */
+  public static void setSeuilPagination(int seuil) {
+    seuilPagination = seuil;
+  }
+
+  /**
+   * Retourne le mode de tri du contenu.
+
+   * @return le mode de tri
+   */
+  public synchronized ModeTri getModeTri() {
+    return modeTri;
+  }
+
+  /**
+   * Change le mode de tri du contenu ; le répertoire est trié de nouveau
+   * au prochain rafraichissement.
+
+   * @param modeTri le nouveau mode de tri
+   */
+  public synchronized void setModeTri(ModeTri modeTri) {
+    this.modeTri = modeTri;
+    invalider();
+  }
+
   /**
    * Génère la liste des chemins des éléments du répertoire (profondeur 1).
+   * Les noms sont lus en une seule fois ; s'il y a plus de seuilPagination éléments,
+   * seuls leurs noms sont gardés (voir PagedListing) et les attributs seront lus page
+   * par page. Sinon les attributs de chaque élément sont lus une fois le nombre
+   * d'éléments connu : un grand répertoire ne paie pas la lecture d'attributs aussitôt
+   * oubliés.
    */
-  public void actualiser() {
-    try {
-      this.contenuRepertoire = Files.list(Paths.get(repertoireCourant).toAbsolutePath())
-              .collect(Collectors.toList());
-    } catch (IOException e) {
+  public synchronized void actualiser() {
+    Path dir = Paths.get(repertoireCourant).toAbsolutePath();
+    CompactListing contenu = new CompactListing(dir);
+    if (!dir.equals(repertoireLu)) {
+      debutAffichage = 0;
+      repertoireLu = dir;
+      motifFiltre = null;
+      filtre = null;
+    }
+    oublierNotes();
+    lectures++;
+    PagedListing pagine = null;
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, c -> !masque(c))) {
+      for (Path chemin : stream) {
+        if (pagine != null) {
+          pagine.ajouter(chemin.getFileName().toString());
+        } else if (contenu.size() < seuilPagination) {
+          contenu.add(chemin, null);
+        } else {
+          // Répertoire paginé : seuls les noms sont gardés, hors de la mémoire
+          pagine = new PagedListing(dir, TAILLE_PAGE);
+          for (int i = 0; i < contenu.size(); i++) {
+            pagine.ajouter(contenu.getName(i));
+          }
+          pagine.ajouter(chemin.getFileName().toString());
+        }
+      }
+      if (pagine == null) {
+        for (int i = 0; i < contenu.size(); i++) {
+          contenu.setAttributes(i, ListingAttributes.read(contenu.get(i)));
+        }
+      }
+    } catch (IOException | DirectoryIteratorException | UncheckedIOException e) {
+      if (pagine != null) {
+        pagine.close();
+      }
       throw new RuntimeException("Erreur lors de la lecture du répertoire.");
     }
+
+    // Suppression du fichier des noms de l'ancien contenu paginé
+    if (contenuRepertoire instanceof PagedListing) {
+      ((PagedListing) contenuRepertoire).close();
+    }
+    if (pagine == null) {
+      modeTri.trie(contenu);
+      this.contenuRepertoire = contenu;
+    } else {
+      this.contenuRepertoire = pagine;
+    }
+    refiltrer();
+  }
+
+  /**
+   * Met à jour le contenu du répertoire courant avant un affichage.
+   * Les créations et suppressions signalées par le WatchService depuis le dernier
+   * rafraichissement, et les éléments signalés par les commandes (voir signaler),
+   * sont appliqués au contenu : si rien n'a changé, rien n'est relu.
+   * Le répertoire n'est entièrement relu que si le répertoire courant a changé,
+   * si des événements ont été perdus (OVERFLOW) ou après invalider().
+   */
+  public synchronized void rafraichir() {
+    Path dir = Paths.get(repertoireCourant).toAbsolutePath();
+    boolean relire = relectureDemandee || !dir.equals(repertoireSurveille);
+    boolean modifie = false;
+
+    if (!relire) {
+      WatchKey cle;
+      while ((cle = surveillance.poll()) != null) {
+        if (cle == cleSurveillance) {
+          for (WatchEvent<?> event : cle.pollEvents()) {
+            relire = relire || event.kind() == StandardWatchEventKinds.OVERFLOW
+                || !appliquer(dir.resolve((Path) event.context()));
+            modifie = true;
+          }
+          // Clé invalide : répertoire supprimé ou inaccessible
+          relire = relire || !cle.reset();
+        } else {
+          // Événements d'un ancien répertoire courant
+          cle.pollEvents();
+          cle.reset();
+        }
+      }
+      // Éléments modifiés par une commande : leur événement peut ne pas être encore arrivé
+      for (Path nom : elementsSignales) {
+        relire = relire || !appliquer(dir.resolve(nom));
+        modifie = true;
+      }
+    }
+    elementsSignales.clear();
+
+    if (relire) {
+      surveiller(dir);
+      actualiser();
+      relectureDemandee = false;
+    } else if (modifie) {
+      // Élément ou fichier de notes modifié : les notes affichées sont à relire
+      oublierNotes();
+      // Les indices des éléments ont pu changer
+      refiltrer();
+    }
+    // Les totaux des sous-répertoires sont vérifiés ici, et non à chaque affichage
+    TailleRepertoire.valider(dir);
+  }
+
+  /**
+   * Demande que le répertoire soit entièrement relu au prochain rafraichissement
+   * (par exemple après un changement du mode de tri).
+   */
+  public synchronized void invalider() {
+    relectureDemandee = true;
+    oublierNotes();
+  }
+
+  /**
+   * Signale qu'une commande a créé, supprimé ou modifié un élément : il est vérifié
+   * au prochain rafraichissement, comme pour un événement du WatchService (qui peut arriver
+   * plus tard), sans relire le répertoire. Seul l'élément du répertoire courant qui contient
+   * le chemin est concerné ; un chemin hors du répertoire courant est ignoré.
+
+   * @param chemin le chemin de l'élément (ou null si la commande n'a rien modifié)
+   */
+  public synchronized void signaler(String chemin) {
+    if (chemin == null) {
+      return;
+    }
+    Path dir = Paths.get(repertoireCourant).toAbsolutePath().normalize();
+    Path relatif = dir.relativize(Paths.get(chemin).toAbsolutePath().normalize());
+    if (relatif.getNameCount() > 0 && !relatif.toString().isEmpty()
+        && !relatif.getName(0).toString().equals("..")) {
+      elementsSignales.add(relatif.getName(0));
+    }
+  }
+
+  /**
+   * Retourne le nombre de lectures complètes du répertoire (pour les tests).
+   */
+  long getLectures() {
+    return lectures;
+  }
+
+  /**
+   * Affiche la page suivante du contenu (sans relire ni retrier le répertoire).
+   */
+  public synchronized void pageSuivante() {
+    deplacerAffichage(debutAffichage + lignesParPage);
+  }
+
+  /**
+   * Affiche la page précédente du contenu.
+   */
+  public synchronized void pagePrecedente() {
+    deplacerAffichage(debutAffichage - lignesParPage);
+  }
+
+  /**
+   * Déplace l'affichage pour que l'élément d'un NER soit visible ;
+   * s'il ne l'est pas déjà, il devient le premier élément affiché.
+
+   * @param ner le NER à afficher
+   */
+  public synchronized void afficheNer(int ner) {
+    int position = ner - 1;
+    if (filtre != null) {
+      // Un élément écarté par le filtre ne peut pas être affiché
+      position = Arrays.binarySearch(filtre, 0, nbFiltres, ner - 1);
+      if (position < 0) {
+        return;
+      }
+    }
+    if (position < debutAffichage || position >= debutAffichage + lignesParPage) {
+      deplacerAffichage(position);
+    }
+  }
+
+  /**
+   * Retourne l'indice du premier élément affiché.
+
+   * @return l'indice (NER - 1) du premier élément affiché
+   */
+  public synchronized int getDebutAffichage() {
+    return debutAffichage;
+  }
+
+  private void deplacerAffichage(int debut) {
+    int max = Math.max(0, nbAffichables() - lignesParPage);
+    debutAffichage = Math.max(0, Math.min(debut, max));
+  }
+
+  /**
+   * Filtre les éléments affichés : seuls ceux dont le nom contient le motif
+   * (sans tenir compte de la casse) restent affichés, avec leur NER.
+   * Si le nouveau motif contient l'ancien (un caractère de plus tapé), seuls les éléments
+   * déjà retenus sont comparés ; sinon tout le contenu est parcouru.
+   * L'affichage revient au premier élément retenu.
+
+   * @param motif le motif, ou une chaîne vide pour tout afficher
+   */
+  public synchronized void filtrer(String motif) {
+    String nouveau = motif == null ? "" : motif.toLowerCase(Locale.ROOT);
+    if (nouveau.isEmpty()) {
+      motifFiltre = null;
+      filtre = null;
+    } else if (motifFiltre != null && nouveau.contains(motifFiltre)) {
+      // Les éléments retenus par le nouveau motif l'étaient déjà par l'ancien
+      int nb = 0;
+      for (int i = 0; i < nbFiltres; i++) {
+        if (correspond(filtre[i], nouveau)) {
+          filtre[nb++] = filtre[i];
+        }
+      }
+      nbFiltres = nb;
+      motifFiltre = nouveau;
+    } else {
+      motifFiltre = nouveau;
+      refiltrer();
+    }
+    debutAffichage = 0;
+    oublierNotes();
+  }
+
+  /**
+   * Filtre les éléments affichés pendant la saisie du motif (voir filtrer),
+   * puis redessine l'écran du dernier affichage. Rien n'est fait si l'utilisateur
+   * n'est pas en train d'entrer une commande (l'écran affiche autre chose).
+
+   * @param motif le motif saisi jusque là
+   */
+  public synchronized void filtreEnSaisie(String motif) {
+    if (enSaisie) {
+      filtrer(motif);
+      construireImage();
+      ecran.affiche(image, hauteurImage, largeurImage);
+    }
+  }
+
+  /**
+   * Retourne le motif du filtre.
+
+   * @return le motif (en minuscules), ou null si tous les éléments sont affichés
+   */
+  public synchronized String getMotifFiltre() {
+    return motifFiltre;
+  }
+
+  /**
+   * Retourne les NER des éléments affichables (ceux retenus par le filtre).
+
+   * @return les NER, dans l'ordre d'affichage
+   */
+  public synchronized int[] getNersFiltres() {
+    int[] ners = new int[nbAffichables()];
+    for (int i = 0; i < ners.length; i++) {
+      ners[i] = indiceAffichable(i) + 1;
+    }
+    return ners;
+  }
+
+  /**
+   * Retourne le nombre de noms comparés au motif depuis la création (pour les tests).
+   */
+  synchronized long getComparaisonsFiltre() {
+    return comparaisonsFiltre;
+  }
+
+  /**
+   * Applique de nouveau le filtre à tout le contenu (qui a été relu ou modifié).
+   */
+  private synchronized void refiltrer() {
+    if (motifFiltre == null) {
+      return;
+    }
+    int taille = contenuRepertoire.size();
+    if (filtre == null || filtre.length < taille) {
+      filtre = new int[taille];
+    }
+    nbFiltres = 0;
+    for (int i = 0; i < taille; i++) {
+      if (correspond(i, motifFiltre)) {
+        filtre[nbFiltres++] = i;
+      }
+    }
+    deplacerAffichage(debutAffichage);
+  }
+
+  /**
+   * Indique si le nom d'un élément contient un motif (en minuscules).
+   */
+  private boolean correspond(int index, String motif) {
+    comparaisonsFiltre++;
+    String nom;
+    if (contenuRepertoire instanceof CompactListing) {
+      nom = ((CompactListing) contenuRepertoire).getName(index);
+    } else if (contenuRepertoire instanceof PagedListing) {
+      // Sans lire les attributs des éléments
+      nom = ((PagedListing) contenuRepertoire).getName(index);
+    } else {
+      nom = contenuRepertoire.get(index).getFileName().toString();
+    }
+    return nom.toLowerCase(Locale.ROOT).contains(motif);
+  }
+
+  /**
+   * Nombre d'éléments affichables : ceux retenus par le filtre, ou tout le contenu.
+   */
+  private int nbAffichables() {
+    return filtre != null ? nbFiltres : contenuRepertoire.size();
+  }
+
+  /**
+   * Indice dans le contenu du répertoire de l'élément affichable d'une position donnée.
+   */
+  private int indiceAffichable(int position) {
+    return filtre != null ? filtre[position] : position;
+  }
+
+  /**
+   * Indique si un élément n'est pas affiché : le fichier de verrou des notes (voir NoteLock).
+   */
+  private static boolean masque(Path chemin) {
+    return NoteLock.FILE_NAME.equals(chemin.getFileName().toString());
+  }
+
+  /**
+   * Applique au contenu du répertoire la création, la suppression ou la modification
+   * d'un élément (signalée par le WatchService ou par une commande).
+
+   * @param chemin le chemin de l'élément
+   * @return Faux si le changement ne peut pas être appliqué et qu'il faut relire le répertoire.
+   */
+  private boolean appliquer(Path chemin) {
+    if (masque(chemin)) {
+      return true;
+    }
+    if (contenuRepertoire instanceof PagedListing) {
+      // Sans tri : un élément créé est ajouté à la fin, les autres NER ne changent pas
+      PagedListing contenu = (PagedListing) contenuRepertoire;
+      BasicFileAttributes attrs = ListingAttributes.read(chemin);
+      int index = contenu.indexOf(chemin);
+      boolean existe = attrs != null || Files.exists(chemin, LinkOption.NOFOLLOW_LINKS);
+      if (index >= 0 && !existe) {
+        contenu.remove(index);
+      } else if (index >= 0) {
+        contenu.setAttributes(index, attrs);
+      } else if (existe) {
+        contenu.add(chemin);
+      }
+      return true;
+    }
+    if (!(contenuRepertoire instanceof CompactListing)) {
+      return false;
+    }
+
+    // Les événements peuvent être regroupés ou déjà périmés : on vérifie l'état réel
+    CompactListing contenu = (CompactListing) contenuRepertoire;
+    BasicFileAttributes attrs = ListingAttributes.read(chemin);
+    int index = contenu.indexOf(chemin);
+    boolean existe = attrs != null || Files.exists(chemin, LinkOption.NOFOLLOW_LINKS);
+    if (index >= 0 && (!existe || attrs != null && changeDePlace(contenu, index, attrs))) {
+      contenu.remove(index);
+      index = -1;
+    }
+    if (index >= 0) {
+      contenu.setAttributes(index, attrs);
+    } else if (existe) {
+      // Insertion à sa place dans l'ordre de tri : les autres NER ne changent pas d'ordre
+      String nom = chemin.getFileName().toString();
+      contenu.add(modeTri.position(contenu, nom,
+          attrs == null ? -1 : attrs.size(),
+          attrs == null ? -1 : attrs.lastModifiedTime().toMillis()), chemin, attrs);
+    }
+    return true;
+  }
+
+  /**
+   * Indique si la modification d'un élément change sa place dans l'ordre de tri.
+   */
+  private boolean changeDePlace(CompactListing contenu, int index, BasicFileAttributes attrs) {
+    return modeTri == ModeTri.TAILLE && attrs.size() != contenu.getSize(index)
+        || modeTri == ModeTri.DATE
+            && attrs.lastModifiedTime().toMillis() != contenu.getLastModified(index);
+  }
+
+  /**
+   * Surveille un nouveau répertoire courant. Si la surveillance est impossible,
+   * le répertoire sera relu à chaque rafraichissement.
+   */
+  private void surveiller(Path dir) {
+    if (cleSurveillance != null) {
+      cleSurveillance.cancel();
+    }
+    cleSurveillance = null;
+    repertoireSurveille = null;
+    try {
+      if (surveillance == null) {
+        surveillance = FileSystems.getDefault().newWatchService();
+      }
+      // Enregistrement avant la lecture : aucune modification n'est perdue
+      cleSurveillance = dir.register(surveillance, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+      repertoireSurveille = dir;
+    } catch (IOException | UnsupportedOperationException e) {
+      // Pas de surveillance possible : relecture complète
+    }
   }
 
   /**
@@ -65,50 +688,270 @@ public class Repertoire {
    * @param nerCourant le NER courant dont on veut afficher la note
    */
   public void afficheCourant(int nbLignes, int nerCourant) {
-    //Le nombre de lignes à afficher
-    //(on réserve X lignes (2+ pour l'instant) pour afficher d'autres choses)
-    //On prend le minimum afin d'arrêter de parcourir la liste si on a atteint sa fin
+    afficheCourant(nbLignes, Integer.MAX_VALUE, nerCourant);
+  }
 
-    //Première ligne
-    System.out.println(ansi().eraseScreen());
-    System.out.println(ansi().render("@|bold,magenta "
-          + "Gestionnaire de Fichiers en Commandes en Ligne avec Annotations |@").reset());
-    System.out.println(ansi().render("Contenu de: @|yellow " + repertoireCourant + "|@").reset());
+  /**
+   * Affiche les noms de fichiers du répertoire courant et leur NER associé.
+   * L'écran est construit en entier puis écrit en une fois (voir FrameRenderer) :
+   * seules les lignes qui ont changé depuis le dernier affichage sont réécrites.
+   * Les lignes trop longues sont coupées à la largeur du terminal.
+   * Les notes des éléments affichés sont lues en arrière-plan : l'affichage n'attend pas
+   * leur lecture, une marque apparaît devant les éléments annotés dès qu'elles arrivent.
+   *
+   * @param hauteur le nombre de lignes du terminal
+   * @param largeur le nombre de colonnes du terminal
+   * @param nerCourant le NER courant dont on veut afficher la note
+   */
+  public synchronized void afficheCourant(int hauteur, int largeur, int nerCourant) {
+    hauteurImage = hauteur;
+    largeurImage = largeur;
+    nerImage = nerCourant;
+    construireImage();
+    ecran.affiche(image, hauteur, largeur);
+  }
+
+  /**
+   * Construit l'image de l'écran avec les paramètres du dernier affichage.
+   */
+  private void construireImage() {
+    final int hauteur = hauteurImage;
+    int largeur = largeurImage;
+    int nerCourant = nerImage;
+    image.clear();
+
+    //Entête
+    image.add(rendu("@|bold,magenta " + coupe(TITRE, largeur) + "|@"));
+    image.add(rendu("Contenu de: @|yellow "
+        + coupe(repertoireCourant, largeur - "Contenu de: ".length()) + "|@"));
 
     //Contenu du répertoire
-    int maxAffichage = Math.min((nbLignes - 2), (contenuRepertoire.size()));
-    for (int ner = 0; ner < maxAffichage; ner++) {
-      afficheLigne(ner + 1, contenuRepertoire.get(ner));
+    //On réserve les lignes de l'entête, des éléments non affichés, de la note, de l'invite,
+    //et celle où passe le curseur après l'entrée d'une commande (pour ne pas faire défiler)
+    int reserve = 2 + 1 + 1 + (nerCourant > 0 ? 2 : 0) + 1 + 1;
+    lignesParPage = Math.max(1, hauteur - reserve);
+    deplacerAffichage(debutAffichage);
+    int fin = Math.min(debutAffichage + lignesParPage, nbAffichables());
+    prechargeNotes(fin, nerCourant);
+    for (int position = debutAffichage; position < fin; position++) {
+      int index = indiceAffichable(position);
+      image.add(ligne(index + 1, contenuRepertoire.get(index), largeur));
     }
 
     //Dernière ligne
-    if (contenuRepertoire.size() > (nbLignes - 2)) {
-      System.out.println(ansi().render("@|italic ("
-              + (contenuRepertoire.size() - (nbLignes - 2))
-                    + " éléments du répertoire n'ont pas été affichés.)" + "|@").reset());
+    if (motifFiltre != null) {
+      String pages = nbFiltres > lignesParPage
+          ? ", " + (debutAffichage + 1) + " à " + fin + " affichés" : "";
+      image.add(rendu("@|italic " + coupe("(Filtre \"" + motifFiltre + "\" : " + nbFiltres
+          + " élément(s) sur " + contenuRepertoire.size() + pages
+          + ". Entrer / pour tout afficher.)", largeur) + "|@"));
+    } else if (contenuRepertoire.size() > lignesParPage) {
+      image.add(rendu("@|italic " + coupe("(Éléments " + (debutAffichage + 1) + " à " + fin
+          + " sur " + contenuRepertoire.size() + ". Pages : < et >, ou entrer un NER.)",
+          largeur) + "|@"));
     }
 
     //Affichage note (si NER est initialisé)
+    image.add("");
     if (nerCourant > 0) {
-      AnsiConsole.out().println();
-      System.out.println(ansi().render("Note associé au NER @|bold " + nerCourant + "|@:").reset());
-      System.out.println(ansi().render(("@|green " + recupereNote(nerCourant) + "|@")).reset());
+      image.add(rendu("Note associé au NER @|bold " + nerCourant + "|@:"));
+      image.add(rendu("@|green " + coupe(String.valueOf(recupereNote(nerCourant)), largeur)
+          + "|@"));
     }
 
-    AnsiConsole.out().println();
-    AnsiConsole.out().print("Entrer une commande: ");
+    image.add(INVITE);
+  }
+
+  /**
+   * Demande en arrière-plan la lecture des notes des éléments affichés et du NER courant,
+   * si elle n'a pas déjà été demandée pour cet affichage : passer d'un NER affiché
+   * à un autre ne relit pas les notes.
+   */
+  private synchronized void prechargeNotes(int fin, int nerCourant) {
+    if (nomsNotes != null && debutNotes == debutAffichage && finNotes == fin
+        && nerNotes == nerCourant) {
+      return;
+    }
+    List<String> noms = new ArrayList<>(fin - debutAffichage + 1);
+    for (int i = debutAffichage; i < fin; i++) {
+      noms.add(contenuRepertoire.get(indiceAffichable(i)).getFileName().toString());
+    }
+    if (nerCourant > 0 && nerCourant <= contenuRepertoire.size()) {
+      noms.add(contenuRepertoire.get(nerCourant - 1).getFileName().toString());
+    }
+
+    final int generation = ++generationNotes;
+    nomsNotes = new HashSet<>(noms);
+    notesAffichees = null;
+    erreurNotes = false;
+    debutNotes = debutAffichage;
+    finNotes = fin;
+    nerNotes = nerCourant;
+    Path dir = Paths.get(repertoireCourant);
+    chargementNotes = CHARGEUR_NOTES.submit(() -> chargeNotes(generation, dir, noms));
+  }
+
+  /**
+   * Lit des notes (dans le thread d'arrière-plan) puis, si l'utilisateur est en train
+   * d'entrer une commande, met à jour l'écran avec les notes arrivées.
+   */
+  private void chargeNotes(int generation, Path dir, List<String> noms) {
+    Map<String, String> notes;
+    try {
+      notes = Annotation.afficheNotes(dir, noms);
+    } catch (RuntimeException e) {
+      // Les notes seront lues une par une (et l'erreur affichée)
+      notes = null;
+    }
+    synchronized (this) {
+      if (generation != generationNotes) {
+        // Affichage changé pendant la lecture
+        return;
+      }
+      notesAffichees = notes;
+      erreurNotes = notes == null;
+      if (enSaisie && !erreurNotes) {
+        construireImage();
+        ecran.actualise(image, hauteurImage, largeurImage);
+      }
+    }
+  }
+
+  /**
+   * Oublie les notes lues (le répertoire ou ses notes ont changé) : elles seront relues
+   * au prochain affichage, sans relire le répertoire.
+   */
+  public synchronized void oublierNotes() {
+    generationNotes++;
+    nomsNotes = null;
+    notesAffichees = null;
+  }
+
+  /**
+   * Attend la fin de la lecture en cours des notes affichées (utilisé par les tests).
+   */
+  void attendreNotes() throws InterruptedException, ExecutionException {
+    Future<?> chargement;
+    synchronized (this) {
+      chargement = chargementNotes;
+    }
+    if (chargement != null) {
+      chargement.get();
+    }
+  }
+
+  /**
+   * Indique le début de la saisie d'une commande : les notes arrivées pendant la saisie
+   * sont affichées sans toucher à la ligne de l'invite.
+   */
+  public synchronized void debutSaisie() {
+    enSaisie = true;
+  }
+
+  /**
+   * Indique la fin de la saisie d'une commande : l'écran n'est plus mis à jour
+   * en arrière-plan.
+   */
+  public synchronized void finSaisie() {
+    enSaisie = false;
+  }
+
+  /**
+   * Indique que l'écran a été utilisé pour autre chose que le répertoire :
+   * il sera entièrement redessiné au prochain affichage.
+   */
+  public synchronized void effacerAffichage() {
+    ecran.invalider();
   }
 
   /**
-   * Affiche une ligne (des fichiers).
+   * Retourne une ligne (des fichiers) : NER, marque de note, type, taille,
+   * date de modification et nom.
+   * Les attributs sont ceux gardés avec le contenu du répertoire (aucun accès disque).
    *
    * @param ner : NER à afficher
    * @param chemin : chemin du fichier
+   * @param largeur : largeur maximale de la ligne
    */
-  private void afficheLigne(int ner, Path chemin) {
-    //TODO Taille max ligne
-    System.out.println(ansi().render(("@|magenta " + String.format("%03d", ner) + "|@"
-            + " " + chemin.getFileName())).reset());
+  private String ligne(int ner, Path chemin, int largeur) {
+    String numero = String.format("%03d", ner);
+    String nom = chemin.getFileName().toString();
+    String colonnes = "";
+    if (contenuRepertoire instanceof ListingAttributes) {
+      colonnes = colonnes((ListingAttributes) contenuRepertoire, ner - 1, chemin) + " ";
+    }
+    //Marque des éléments annotés (une fois les notes lues)
+    String marque = notesAffichees != null && notesAffichees.containsKey(nom)
+        ? "@|green " + MARQUE_NOTE + "|@" : " ";
+    int debutNom = numero.length() + 3 + colonnes.length();
+    return rendu("@|magenta " + numero + "|@ " + marque + " " + colonnes
+        + coupe(nom, largeur - debutNom));
+  }
+
+  /**
+   * Met en forme une ligne avec Jansi.
+   */
+  private static String rendu(String texte) {
+    return ansi().render(texte).reset().toString();
+  }
+
+  /**
+   * Coupe un texte à une largeur donnée (le dernier caractère affiché est alors "…").
+   */
+  static String coupe(String texte, int largeur) {
+    if (texte.length() <= largeur) {
+      return texte;
+    }
+    return largeur <= 0 ? "" : texte.substring(0, largeur - 1) + "…";
+  }
+
+  /**
+   * Retourne les colonnes type, taille et date d'un élément.
+   */
+  static String colonnes(ListingAttributes attributs, int index) {
+    return colonnes(attributs, index, null);
+  }
+
+  /**
+   * Retourne les colonnes type, taille et date d'un élément. La taille d'un répertoire
+   * est celle de son arborescence, si elle a déjà été calculée (voir TailleRepertoire)
+   * et que le répertoire n'a pas changé depuis.
+   */
+  static String colonnes(ListingAttributes attributs, int index, Path chemin) {
+    char type = attributs.getType(index);
+    long date = attributs.getLastModified(index);
+    String taille = "";
+    if (type == ListingAttributes.TYPE_FILE) {
+      taille = formatTaille(attributs.getSize(index));
+    } else if (type == ListingAttributes.TYPE_DIRECTORY && chemin != null) {
+      TailleRepertoire.Total total = TailleRepertoire.connu(chemin, date);
+      taille = total == null ? "" : formatTaille(total.getOctets());
+    }
+    return String.format("%c %6s %16s", type, taille,
+        date < 0 ? "" : FORMAT_DATE.format(Instant.ofEpochMilli(date)));
+  }
+
+  /**
+   * Retourne une taille lisible : en octets jusqu'à 1023, puis en K, M, G ou T.
+
+   * @param octets la taille en octets
+   * @return la taille formatée (vide si elle est inconnue)
+   */
+  static String formatTaille(long octets) {
+    if (octets < 0) {
+      return "";
+    }
+    if (octets < 1024) {
+      return Long.toString(octets);
+    }
+    double valeur = octets;
+    int unite = -1;
+    while (valeur >= 1024 && unite < 3) {
+      valeur /= 1024;
+      unite++;
+    }
+    String format = valeur < 10 ? "%.1f%c" : "%.0f%c";
+    return String.format(Locale.ROOT, format, valeur, "KMGT".charAt(unite));
   }
 
   /**
@@ -126,6 +969,16 @@ public class Repertoire {
     } catch (IllegalArgumentException e) {
       return "Pas de note car NER invalide pour ce répertoire.";
     }
+    //Note demandée avec celles des éléments affichés
+    String nom = Paths.get(path).getFileName().toString();
+    synchronized (this) {
+      if (nomsNotes != null && !erreurNotes && nomsNotes.contains(nom)) {
+        if (notesAffichees == null) {
+          return "Chargement de la note...";
+        }
+        return notesAffichees.getOrDefault(nom, "Cet élément n'a pas d'annotation.");
+      }
+    }
     //Si note existe ou non
     try {
       afficher = Annotation.afficheNote(path);
@@ -142,7 +995,7 @@ public class Repertoire {
    * @param ner : NER de l'élément
    * @return : Chemin de fichier de l'élément, en chaine de caractères
    */
-  public String nerToPath(int ner) {
+  public synchronized String nerToPath(int ner) {
     try {
       return contenuRepertoire.get(ner - 1).toString();
     } catch (IndexOutOfBoundsException e) {
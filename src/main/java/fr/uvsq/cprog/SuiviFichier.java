@@ -0,0 +1,107 @@
+package fr.uvsq.cprog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Surveillance d'un fichier qui grandit (mode suivi de visu).
+ * Un thread d'arrière-plan attend les modifications du répertoire du fichier (WatchService)
+ * et appelle une action à chaque modification. L'action est aussi appelée régulièrement
+ * (toutes les DELAI millisecondes) : c'est le seul moyen de voir les modifications si la
+ * surveillance est impossible ou si le système de fichiers ne les signale pas (par exemple
+ * un répertoire réseau). L'action doit donc être peu coûteuse quand rien n'a changé.
+ */
+public class SuiviFichier implements Closeable {
+
+  /**
+   * Délai (en millisecondes) entre deux appels de l'action sans modification signalée.
+   */
+  static final long DELAI = 500;
+
+  private final Thread thread;
+  private final WatchService surveillance;
+  private volatile boolean arrete;
+
+  /**
+   * Commence la surveillance d'un fichier.
+
+   * @param fichier le fichier
+   * @param action l'action appelée (dans le thread de surveillance) à chaque modification
+   */
+  public SuiviFichier(Path fichier, Runnable action) {
+    Path dir = fichier.toAbsolutePath().getParent();
+    WatchService service = null;
+    try {
+      service = FileSystems.getDefault().newWatchService();
+      dir.register(service, StandardWatchEventKinds.ENTRY_MODIFY,
+          StandardWatchEventKinds.ENTRY_CREATE);
+    } catch (IOException | UnsupportedOperationException e) {
+      // Surveillance impossible : seule la relecture régulière est utilisée
+      fermer(service);
+      service = null;
+    }
+    this.surveillance = service;
+    this.thread = new Thread(() -> surveille(action), "suivi-fichier");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Boucle du thread de surveillance.
+   */
+  private void surveille(Runnable action) {
+    try {
+      while (!arrete) {
+        if (surveillance == null) {
+          Thread.sleep(DELAI);
+        } else {
+          WatchKey cle = surveillance.poll(DELAI, TimeUnit.MILLISECONDS);
+          if (cle != null) {
+            // Les événements des autres éléments du répertoire sont ignorés,
+            // mais l'action est peu coûteuse : elle est appelée dans tous les cas
+            cle.pollEvents();
+            cle.reset();
+          }
+        }
+        if (!arrete) {
+          action.run();
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // Arrêt de la surveillance
+    }
+  }
+
+  /**
+   * Arrête la surveillance (l'action n'est plus appelée après le retour de cette méthode).
+   * Le thread n'est pas interrompu : une interruption pendant une lecture fermerait
+   * le FileChannel utilisé par l'action.
+   */
+  @Override
+  public void close() {
+    arrete = true;
+    fermer(surveillance);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void fermer(WatchService service) {
+    if (service != null) {
+      try {
+        service.close();
+      } catch (IOException e) {
+        // Rien à faire
+      }
+    }
+  }
+}
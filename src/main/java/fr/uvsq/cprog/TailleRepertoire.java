@@ -0,0 +1,308 @@
+package fr.uvsq.cprog;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calcul de la taille d'une arborescence (comme la commande du).
+ * Les sous-répertoires sont parcourus en parallèle (fork/join : chaque sous-répertoire
+ * est une tâche, les threads inoccupés prennent les tâches des autres).
+ * Pour chaque répertoire sont gardés en cache, avec sa date de modification,
+ * la taille de ses fichiers et la liste de ses sous-répertoires : un répertoire dont
+ * la date n'a pas changé n'est pas relu, seuls ses sous-répertoires sont vérifiés.
+ * La date d'un répertoire ne change que si des éléments y sont créés, supprimés ou
+ * renommés : un fichier modifié sans que son répertoire le soit garde son ancienne
+ * taille dans le total.
+ * Les totaux affichés avec le contenu d'un répertoire sont vérifiés une fois, lors
+ * du rafraichissement du répertoire (voir valider) : leur affichage ne demande ensuite
+ * aucun accès au disque.
+ * Les liens symboliques ne sont pas suivis (leur propre taille est comptée).
+ */
+public class TailleRepertoire {
+
+  /**
+   * Délai (en millisecondes) pendant lequel une date de modification récente
+   * n'est pas jugée fiable : un répertoire modifié juste après sa lecture, dans la même
+   * unité de temps, garderait sinon la même date.
+   */
+  private static final long DELAI_FIABILITE = 2000;
+
+  /**
+   * Nombre maximal de répertoires gardés en cache : au-delà, le cache est vidé.
+   */
+  static final int MAX_ENTREES = 100_000;
+
+  /**
+   * Le cache, par répertoire (chemin absolu normalisé).
+   */
+  private static final Map<Path, Entree> CACHE = new ConcurrentHashMap<>();
+
+  /**
+   * Les répertoires dont la taille a été demandée (leur répertoire parent n'est pas
+   * forcément dans le cache).
+   */
+  private static final Set<Path> RACINES = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Nombre de répertoires lus (et non pris dans le cache), pour les tests.
+   */
+  private static final AtomicLong LECTURES = new AtomicLong();
+
+  private TailleRepertoire() {
+  }
+
+  /**
+   * Taille totale d'une arborescence.
+   */
+  public static final class Total {
+    private final long octets;
+    private final long fichiers;
+    private final long repertoires;
+
+    Total(long octets, long fichiers, long repertoires) {
+      this.octets = octets;
+      this.fichiers = fichiers;
+      this.repertoires = repertoires;
+    }
+
+    public long getOctets() {
+      return octets;
+    }
+
+    public long getFichiers() {
+      return fichiers;
+    }
+
+    public long getRepertoires() {
+      return repertoires;
+    }
+  }
+
+  /**
+   * Contenu d'un répertoire gardé en cache, et dernier total calculé de son arborescence.
+   */
+  private static final class Entree {
+    private final long date;
+    private final boolean fiable;
+    private final long octets;
+    private final long fichiers;
+    private final String[] sousRepertoires;
+    private volatile Total total;
+
+    Entree(long date, boolean fiable, long octets, long fichiers, String[] sousRepertoires) {
+      this.date = date;
+      this.fiable = fiable;
+      this.octets = octets;
+      this.fichiers = fichiers;
+      this.sousRepertoires = sousRepertoires;
+    }
+  }
+
+  /**
+   * Calcule la taille d'une arborescence.
+
+   * @param repertoire le répertoire racine
+   * @return le total de l'arborescence
+   */
+  public static Total calcule(Path repertoire) {
+    Path racine = repertoire.toAbsolutePath().normalize();
+    if (!Files.isDirectory(racine, LinkOption.NOFOLLOW_LINKS)) {
+      throw new IllegalArgumentException("Le chemin n'est pas un répertoire.");
+    }
+    Total total = ForkJoinPool.commonPool().invoke(new Parcours(racine));
+    RACINES.add(racine);
+    return total;
+  }
+
+  /**
+   * Retourne le dernier total calculé d'une arborescence, s'il est connu et si
+   * la date du répertoire racine n'a pas changé depuis. Les sous-répertoires ne sont
+   * pas vérifiés ici (voir valider) : seul le cache est consulté.
+
+   * @param repertoire le répertoire racine
+   * @param date la date de modification actuelle du répertoire (en millisecondes)
+   * @return le total, ou null s'il n'est pas connu
+   */
+  public static Total connu(Path repertoire, long date) {
+    Entree entree = CACHE.get(repertoire.toAbsolutePath().normalize());
+    if (entree == null || !entree.fiable || entree.date != date) {
+      return null;
+    }
+    return entree.total;
+  }
+
+  /**
+   * Vérifie les totaux connus des sous-répertoires d'un répertoire : un total est oublié
+   * si l'un des répertoires de son arborescence a changé depuis son calcul. Seules
+   * les dates des répertoires sont relues, pas leur contenu.
+
+   * @param repertoire le répertoire dont le contenu est affiché
+   */
+  public static void valider(Path repertoire) {
+    Path dir = repertoire.toAbsolutePath().normalize();
+    List<Path> sousRepertoires = new ArrayList<>();
+    Entree entreeDir = CACHE.get(dir);
+    if (entreeDir != null) {
+      for (String nom : entreeDir.sousRepertoires) {
+        sousRepertoires.add(dir.resolve(nom));
+      }
+    }
+    for (Path racine : RACINES) {
+      if (dir.equals(racine.getParent()) && !sousRepertoires.contains(racine)) {
+        sousRepertoires.add(racine);
+      }
+    }
+    for (Path sous : sousRepertoires) {
+      Entree entree = CACHE.get(sous);
+      if (entree != null && entree.total != null && !sousRepertoiresInchanges(sous, entree)) {
+        entree.total = null;
+      }
+    }
+  }
+
+  /**
+   * Vérifie que les sous-répertoires (à toute profondeur) d'un répertoire du cache
+   * ont toujours la date, jugée fiable, avec laquelle ils ont été lus.
+   */
+  private static boolean sousRepertoiresInchanges(Path repertoire, Entree entree) {
+    for (String nom : entree.sousRepertoires) {
+      Path sous = repertoire.resolve(nom);
+      Entree entreeSous = CACHE.get(sous);
+      try {
+        if (entreeSous == null || !entreeSous.fiable || entreeSous.date
+            != Files.getLastModifiedTime(sous, LinkOption.NOFOLLOW_LINKS).toMillis()) {
+          return false;
+        }
+      } catch (IOException e) {
+        return false;
+      }
+      if (!sousRepertoiresInchanges(sous, entreeSous)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Vide le cache.
+   */
+  public static void vider() {
+    CACHE.clear();
+    RACINES.clear();
+  }
+
+  /**
+   * Retourne le nombre de répertoires lus depuis le démarrage.
+
+   * @return le nombre de répertoires lus (ceux pris dans le cache ne sont pas comptés)
+   */
+  static long getLectures() {
+    return LECTURES.get();
+  }
+
+  /**
+   * Tâche de calcul de la taille d'un répertoire et de ses sous-répertoires.
+   */
+  private static final class Parcours extends RecursiveTask<Total> {
+    private static final long serialVersionUID = 1L;
+
+    private final Path repertoire;
+
+    Parcours(Path repertoire) {
+      this.repertoire = repertoire;
+    }
+
+    @Override
+    protected Total compute() {
+      Entree entree = entree(repertoire);
+      if (entree == null) {
+        // Répertoire supprimé ou illisible
+        return new Total(0, 0, 0);
+      }
+
+      List<Parcours> taches = new ArrayList<>(entree.sousRepertoires.length);
+      for (String nom : entree.sousRepertoires) {
+        Parcours tache = new Parcours(repertoire.resolve(nom));
+        tache.fork();
+        taches.add(tache);
+      }
+      long octets = entree.octets;
+      long fichiers = entree.fichiers;
+      long repertoires = 1;
+      for (Parcours tache : taches) {
+        Total sousTotal = tache.join();
+        octets += sousTotal.octets;
+        fichiers += sousTotal.fichiers;
+        repertoires += sousTotal.repertoires;
+      }
+      Total total = new Total(octets, fichiers, repertoires);
+      entree.total = total;
+      return total;
+    }
+  }
+
+  /**
+   * Retourne le contenu d'un répertoire : celui du cache si sa date n'a pas changé,
+   * sinon le répertoire est relu.
+
+   * @return le contenu, ou null si le répertoire n'a pas pu être lu
+   */
+  private static Entree entree(Path repertoire) {
+    long date;
+    try {
+      date = Files.getLastModifiedTime(repertoire, LinkOption.NOFOLLOW_LINKS).toMillis();
+    } catch (IOException e) {
+      CACHE.remove(repertoire);
+      return null;
+    }
+    Entree entree = CACHE.get(repertoire);
+    if (entree != null && entree.fiable && entree.date == date) {
+      return entree;
+    }
+
+    LECTURES.incrementAndGet();
+    long debut = System.currentTimeMillis();
+    long octets = 0;
+    long fichiers = 0;
+    List<String> sousRepertoires = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(repertoire)) {
+      for (Path chemin : stream) {
+        BasicFileAttributes attrs = ListingAttributes.read(chemin);
+        if (attrs == null) {
+          continue;
+        }
+        if (attrs.isDirectory()) {
+          sousRepertoires.add(chemin.getFileName().toString());
+        } else {
+          octets += attrs.size();
+          fichiers++;
+        }
+      }
+    } catch (IOException | DirectoryIteratorException | SecurityException e) {
+      CACHE.remove(repertoire);
+      return null;
+    }
+
+    entree = new Entree(date, date < debut - DELAI_FIABILITE, octets, fichiers,
+        sousRepertoires.toArray(new String[0]));
+    if (CACHE.size() >= MAX_ENTREES) {
+      // Le cache est reconstruit par les calculs suivants
+      vider();
+    }
+    CACHE.put(repertoire, entree);
+    return entree;
+  }
+}
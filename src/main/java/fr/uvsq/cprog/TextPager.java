@@ -0,0 +1,438 @@
+package fr.uvsq.cprog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lecture page par page d'un fichier texte (UTF-8), de taille quelconque.
+ * Le fichier n'est jamais lu en entier : une fenêtre de taille fixe du fichier est projetée
+ * en mémoire (FileChannel.map) et déplacée à la demande. Seules les lignes affichées sont
+ * décodées, et une ligne très longue n'est décodée que jusqu'à LONGUEUR_MAX_LIGNE octets.
+ * La mémoire utilisée ne dépend donc pas de la taille du fichier.
+ * La position courante est celle (en octets) du début de la première ligne affichée ;
+ * les lignes se terminent par '\n' (un '\r' avant est ignoré).
+ * Les numéros de ligne s'appuient sur un index des lignes (voir LineIndex) construit
+ * en arrière-plan : aller à une ligne ne parcourt que quelques milliers de lignes.
+ * Pour un fichier qui grandit (un journal en cours d'écriture), fin() affiche les dernières
+ * lignes en lisant le fichier à reculons depuis la fin, et suivi() ne décode que les lignes
+ * ajoutées depuis son dernier appel.
+ */
+public class TextPager implements Closeable {
+
+  /**
+   * Taille par défaut de la fenêtre projetée en mémoire.
+   */
+  static final int TAILLE_FENETRE = 8 << 20;
+
+  /**
+   * Nombre maximal d'octets décodés par ligne (la suite de la ligne n'est pas affichée).
+   */
+  static final int LONGUEUR_MAX_LIGNE = 4096;
+
+  private final FileChannel canal;
+  private final int tailleFenetre;
+
+  /**
+   * La taille du fichier (à son ouverture, puis au dernier appel d'actualiserTaille).
+   */
+  private long taille;
+
+  /**
+   * L'index des lignes du fichier, ou null s'il ne correspond pas au fichier ouvert.
+   */
+  private final LineIndex index;
+
+  /**
+   * La fenêtre projetée, et la position dans le fichier de son premier octet.
+   */
+  private MappedByteBuffer fenetre;
+  private long debutFenetre;
+
+  /**
+   * Position du début de la première ligne affichée.
+   */
+  private long position;
+
+  /**
+   * Position qui suit la dernière ligne rendue par lignes().
+   */
+  private long positionFin;
+
+  /**
+   * Tampon de décodage d'une ligne (réutilisé).
+   */
+  private final byte[] ligne = new byte[LONGUEUR_MAX_LIGNE];
+
+  /**
+   * Mode suivi : les lignes affichées, la position de la première ligne qui n'a pas été
+   * entièrement lue (-1 avant le début du suivi) et la taille du fichier à la dernière lecture.
+   */
+  private final ArrayDeque<String> lignesSuivi = new ArrayDeque<>();
+  private long positionSuivi = -1;
+  private long tailleSuivi = -1;
+
+  /**
+   * Vrai si la dernière ligne de lignesSuivi n'était pas terminée (elle sera relue).
+   */
+  private boolean suiviIncomplet;
+
+  /**
+   * Ouvre un fichier texte.
+
+   * @param fichier le fichier
+   * @throws IOException si le fichier ne peut pas être ouvert
+   */
+  public TextPager(Path fichier) throws IOException {
+    this(fichier, TAILLE_FENETRE);
+  }
+
+  /**
+   * Ouvre un fichier texte avec une taille de fenêtre donnée.
+   */
+  TextPager(Path fichier, int tailleFenetre) throws IOException {
+    this.canal = FileChannel.open(fichier, StandardOpenOption.READ);
+    this.taille = canal.size();
+    this.tailleFenetre = tailleFenetre;
+    LineIndex lineIndex = LineIndex.pour(fichier);
+    // Fichier modifié entre son ouverture et la lecture de ses attributs
+    this.index = lineIndex.getTaille() == taille ? lineIndex : null;
+  }
+
+  /**
+   * Retourne la taille du fichier (à son ouverture ou au dernier actualiserTaille).
+
+   * @return la taille en octets
+   */
+  public long getTaille() {
+    return taille;
+  }
+
+  /**
+   * Retourne la position courante.
+
+   * @return la position (en octets) du début de la première ligne affichée
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Retourne la position qui suit la dernière ligne rendue par lignes().
+
+   * @return la position en octets (la taille du fichier si la fin a été affichée)
+   */
+  public long getPositionFin() {
+    return positionFin;
+  }
+
+  /**
+   * Décode des lignes à partir de la position courante.
+
+   * @param nombre le nombre maximal de lignes
+   * @return les lignes (moins de nombre à la fin du fichier), sans caractères de contrôle
+   * @throws IOException en cas d'erreur de lecture
+   */
+  public List<String> lignes(int nombre) throws IOException {
+    List<String> lignes = new ArrayList<>(nombre);
+    long debut = position;
+    while (lignes.size() < nombre && debut < taille) {
+      long fin = finDeLigne(debut);
+      lignes.add(decode(debut, fin));
+      debut = fin < taille ? fin + 1 : taille;
+    }
+    positionFin = debut;
+    return lignes;
+  }
+
+  /**
+   * Relit la taille du fichier, qui a pu grandir (ou être tronqué) depuis son ouverture.
+
+   * @return Vrai si la taille a changé
+   * @throws IOException en cas d'erreur de lecture
+   */
+  public boolean actualiserTaille() throws IOException {
+    long nouvelle = canal.size();
+    if (nouvelle == taille) {
+      return false;
+    }
+    boolean tronque = nouvelle < taille;
+    taille = nouvelle;
+    if (tronque) {
+      // La fenêtre ne doit plus être lue au-delà de la fin
+      fenetre = null;
+      position = Math.min(position, nouvelle == 0 ? 0 : debutDeLigne(nouvelle - 1, 0));
+    }
+    return true;
+  }
+
+  /**
+   * Se place sur les dernières lignes du fichier, trouvées en le lisant à reculons
+   * depuis la fin.
+
+   * @param nombre le nombre de lignes à afficher
+   * @throws IOException en cas d'erreur de lecture
+   */
+  public void fin(int nombre) throws IOException {
+    position = taille == 0 ? 0 : debutDeLigne(taille - 1, 0);
+    recule(nombre - 1);
+  }
+
+  /**
+   * Mode suivi : retourne les dernières lignes du fichier. Au premier appel, elles sont
+   * trouvées en lisant le fichier à reculons depuis la fin ; ensuite seules les lignes
+   * ajoutées depuis l'appel précédent sont décodées (si plus de nombre lignes ont été
+   * ajoutées, seules les dernières le sont). Une dernière ligne non terminée est affichée,
+   * et relue à l'appel suivant. Si le fichier a été tronqué, le suivi reprend à sa fin.
+
+   * @param nombre le nombre de lignes à afficher
+   * @return les dernières lignes (au plus nombre)
+   * @throws IOException en cas d'erreur de lecture
+   */
+  public List<String> suivi(int nombre) throws IOException {
+    long ancienne = taille;
+    actualiserTaille();
+    if (taille < ancienne || positionSuivi > taille) {
+      positionSuivi = -1;
+    }
+    if (positionSuivi < 0) {
+      lignesSuivi.clear();
+      suiviIncomplet = false;
+      positionSuivi = 0;
+    } else if (taille == tailleSuivi) {
+      return new ArrayList<>(lignesSuivi);
+    }
+    tailleSuivi = taille;
+
+    long debut = positionSuivi;
+    if (taille > debut) {
+      if (suiviIncomplet) {
+        lignesSuivi.pollLast();
+      }
+      // Début des nombre dernières lignes, sans remonter avant ce qui a déjà été lu
+      long p = debutDeLigne(taille - 1, debut);
+      for (int i = 1; i < nombre && p > debut; i++) {
+        p = debutDeLigne(p - 1, debut);
+      }
+      if (p > debut) {
+        // Plus de nombre lignes ajoutées : les lignes affichées disparaissent toutes
+        lignesSuivi.clear();
+        debut = p;
+      }
+      suiviIncomplet = false;
+      while (debut < taille) {
+        long fin = finDeLigne(debut);
+        if (lignesSuivi.size() == nombre) {
+          lignesSuivi.pollFirst();
+        }
+        lignesSuivi.addLast(decode(debut, fin));
+        if (fin >= taille) {
+          suiviIncomplet = true;
+          break;
+        }
+        debut = fin + 1;
+      }
+      positionSuivi = debut;
+    }
+    while (lignesSuivi.size() > nombre) {
+      lignesSuivi.pollFirst();
+    }
+    return new ArrayList<>(lignesSuivi);
+  }
+
+  /**
+   * Retourne le nombre de lignes du fichier.
+
+   * @return le nombre de lignes, ou -1 s'il n'est pas encore connu (index en construction,
+   *     ou fichier modifié depuis son ouverture)
+   */
+  public long getNbLignes() {
+    return index == null || index.getTaille() != taille ? -1 : index.getNbLignes();
+  }
+
+  /**
+   * Retourne le numéro de la première ligne affichée. Il est compté à partir
+   * de la position de l'index qui précède, s'il est connu jusque là.
+
+   * @return le numéro de ligne (à partir de 1), ou -1 s'il n'est pas encore connu
+   * @throws IOException en cas d'erreur de lecture
+   */
+  public long getNumeroLigne() throws IOException {
+    if (index == null) {
+      return -1;
+    }
+    int k = index.pointAvant(position);
+    if (k == index.getNbPoints() - 1 && (!index.estComplet() || position > index.getTaille())) {
+      // Au-delà de la partie déjà indexée
+      return -1;
+    }
+    long numero = (long) k * LineIndex.PAS + 1;
+    for (long p = index.getPoint(k); p < position; p++) {
+      if (octet(p) == '\n') {
+        numero++;
+      }
+    }
+    return numero;
+  }
+
+  /**
+   * Se place au début d'une ligne : depuis la position de l'index qui la précède
+   * (ou la dernière position connue si l'index est en construction).
+
+   * @param numero le numéro de la ligne (à partir de 1) ; au-delà de la fin du fichier,
+   *     la dernière ligne
+   * @throws IOException en cas d'erreur de lecture
+   */
+  public void allerLigne(long numero) throws IOException {
+    long ligne = Math.max(0, numero - 1);
+    int k = 0;
+    if (index != null) {
+      k = (int) Math.min(ligne / LineIndex.PAS, index.getNbPoints() - 1);
+      position = index.getPoint(k);
+    } else {
+      position = 0;
+    }
+    avance(ligne - (long) k * LineIndex.PAS);
+  }
+
+  /**
+   * Se place au début de la ligne qui contient l'octet situé à un pourcentage
+   * de la taille du fichier (sans parcourir le fichier jusque là).
+
+   * @param pourcentage le pourcentage (entre 0 et 100)
+   * @throws IOException en cas d'erreur de lecture
+   */
+  public void allerPourcentage(int pourcentage) throws IOException {
+    if (taille == 0) {
+      return;
+    }
+    long cible = Math.min(taille - 1, taille * Math.max(0, Math.min(100, pourcentage)) / 100);
+    position = debutDeLigne(cible, 0);
+  }
+
+  /**
+   * Avance de plusieurs lignes (sans dépasser le début de la dernière ligne).
+
+   * @param nombre le nombre de lignes
+   * @throws IOException en cas d'erreur de lecture
+   */
+  public void avance(long nombre) throws IOException {
+    for (long i = 0; i < nombre; i++) {
+      long fin = finDeLigne(position);
+      if (fin + 1 >= taille) {
+        break;
+      }
+      position = fin + 1;
+    }
+  }
+
+  /**
+   * Recule de plusieurs lignes (sans dépasser le début du fichier).
+
+   * @param nombre le nombre de lignes
+   * @throws IOException en cas d'erreur de lecture
+   */
+  public void recule(int nombre) throws IOException {
+    for (int i = 0; i < nombre && position > 0; i++) {
+      // position - 1 est le '\n' de la ligne précédente
+      position = debutDeLigne(position - 1, 0);
+    }
+  }
+
+  /**
+   * Se place au début du fichier.
+   */
+  public void debut() {
+    position = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    fenetre = null;
+    canal.close();
+  }
+
+  /**
+   * Retourne la position du '\n' qui termine la ligne commençant à debut
+   * (la taille du fichier pour la dernière ligne si elle n'en a pas).
+   */
+  private long finDeLigne(long debut) throws IOException {
+    long p = debut;
+    while (p < taille && octet(p) != '\n') {
+      p++;
+    }
+    return p;
+  }
+
+  /**
+   * Retourne la position du début de la ligne qui contient l'octet p,
+   * sans remonter avant limite.
+   */
+  private long debutDeLigne(long p, long limite) throws IOException {
+    while (p > limite && octet(p - 1) != '\n') {
+      p--;
+    }
+    return p;
+  }
+
+  /**
+   * Décode une ligne (au plus LONGUEUR_MAX_LIGNE octets), fin étant la position de son '\n'.
+   */
+  private String decode(long debut, long fin) throws IOException {
+    int longueur = 0;
+    for (long p = debut; p < fin && longueur < ligne.length; p++) {
+      ligne[longueur++] = octet(p);
+    }
+    // Fin de ligne Windows
+    if (longueur > 0 && longueur == fin - debut && ligne[longueur - 1] == '\r') {
+      longueur--;
+    }
+    return nettoie(new String(ligne, 0, longueur, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Retourne un octet du fichier, en déplaçant la fenêtre si besoin : la nouvelle fenêtre
+   * est centrée sur l'octet, pour lire aussi bien en avant qu'en arrière.
+   */
+  private byte octet(long p) throws IOException {
+    if (fenetre == null || p < debutFenetre || p >= debutFenetre + fenetre.limit()) {
+      debutFenetre = Math.max(0, Math.min(p - tailleFenetre / 2, taille - tailleFenetre));
+      fenetre = canal.map(FileChannel.MapMode.READ_ONLY, debutFenetre,
+          Math.min(tailleFenetre, taille - debutFenetre));
+    }
+    return fenetre.get((int) (p - debutFenetre));
+  }
+
+  /**
+   * Remplace les tabulations par des espaces et les autres caractères de contrôle
+   * par '?' (ils pourraient modifier l'affichage du terminal).
+   */
+  static String nettoie(String texte) {
+    StringBuilder resultat = null;
+    for (int i = 0; i < texte.length(); i++) {
+      char c = texte.charAt(i);
+      if (c < ' ' || c == 0x7F) {
+        if (resultat == null) {
+          resultat = new StringBuilder(texte.length() + 8).append(texte, 0, i);
+        }
+        if (c == '\t') {
+          do {
+            resultat.append(' ');
+          } while (resultat.length() % 8 != 0);
+        } else {
+          resultat.append('?');
+        }
+      } else if (resultat != null) {
+        resultat.append(c);
+      }
+    }
+    return resultat == null ? texte : resultat.toString();
+  }
+}
@@ -0,0 +1,300 @@
+package fr.uvsq.cprog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Type d'un fichier, détecté d'après son contenu et non son extension.
+ * Seul le début du fichier est lu (au plus ECHANTILLON octets) : signatures des formats
+ * courants (PDF, PNG, ZIP...), marques d'ordre des octets (BOM) UTF-8 et UTF-16,
+ * puis proportion d'octets nuls et de caractères de contrôle.
+ * Le résultat est gardé en cache par fichier, tant que sa date de modification
+ * et sa taille ne changent pas.
+ */
+public final class TypeFichier {
+
+  /**
+   * Nature du contenu d'un fichier.
+   */
+  public enum Nature {
+    /**
+     * Texte ASCII ou UTF-8 (ou encodage 8 bits).
+     */
+    TEXTE,
+    /**
+     * Texte UTF-16.
+     */
+    TEXTE_UTF16,
+    /**
+     * Contenu binaire.
+     */
+    BINAIRE
+  }
+
+  /**
+   * Nombre maximal d'octets lus au début du fichier.
+   */
+  static final int ECHANTILLON = 4096;
+
+  /**
+   * Nombre de fichiers au-delà duquel le cache est vidé.
+   */
+  private static final int TAILLE_CACHE = 10_000;
+
+  /**
+   * Signatures (premiers octets) des formats reconnus, et leur description.
+   * Les signatures trop courtes pour ne pas apparaître au début d'un texte ("MZ", "BM")
+   * sont laissées de côté : ces fichiers sont reconnus comme binaires par leurs octets nuls.
+   */
+  private static final Object[][] SIGNATURES = {
+      {"%PDF-".getBytes(StandardCharsets.ISO_8859_1), "Document PDF"},
+      {new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}, "Image PNG"},
+      {new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}, "Image JPEG"},
+      {"GIF8".getBytes(StandardCharsets.ISO_8859_1), "Image GIF"},
+      {new byte[] {'P', 'K', 3, 4}, "Archive ZIP (ou jar, docx, odt...)"},
+      {new byte[] {0x1F, (byte) 0x8B}, "Archive gzip"},
+      {"BZh".getBytes(StandardCharsets.ISO_8859_1), "Archive bzip2"},
+      {new byte[] {(byte) 0xFD, '7', 'z', 'X', 'Z', 0}, "Archive xz"},
+      {new byte[] {'7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C}, "Archive 7z"},
+      {"Rar!".getBytes(StandardCharsets.ISO_8859_1), "Archive RAR"},
+      {new byte[] {0x7F, 'E', 'L', 'F'}, "Exécutable ELF"},
+      {new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE}, "Classe Java"},
+      {"SQLite format 3\0".getBytes(StandardCharsets.ISO_8859_1), "Base de données SQLite"},
+      {"OggS".getBytes(StandardCharsets.ISO_8859_1), "Audio/vidéo Ogg"},
+      {"ID3".getBytes(StandardCharsets.ISO_8859_1), "Audio MP3"},
+      {"RIFF".getBytes(StandardCharsets.ISO_8859_1), "Fichier RIFF (WAV, AVI, WebP...)"},
+  };
+
+  /**
+   * Les types détectés, par fichier (chemin absolu normalisé).
+   */
+  private static final Map<Path, Entree> CACHE = new ConcurrentHashMap<>();
+
+  /**
+   * Nombre de fichiers lus (et non pris dans le cache), pour les tests.
+   */
+  private static final AtomicLong LECTURES = new AtomicLong();
+
+  private final Nature nature;
+  private final String description;
+
+  /**
+   * Type gardé en cache, avec la date de modification et la taille du fichier.
+   */
+  private static final class Entree {
+    private final long date;
+    private final long taille;
+    private final TypeFichier type;
+
+    Entree(long date, long taille, TypeFichier type) {
+      this.date = date;
+      this.taille = taille;
+      this.type = type;
+    }
+  }
+
+  private TypeFichier(Nature nature, String description) {
+    this.nature = nature;
+    this.description = description;
+  }
+
+  /**
+   * Retourne la nature du contenu.
+
+   * @return la nature
+   */
+  public Nature getNature() {
+    return nature;
+  }
+
+  /**
+   * Retourne la description du type (par exemple "Document PDF" ou "Texte UTF-8").
+
+   * @return la description
+   */
+  public String getDescription() {
+    return description;
+  }
+
+  /**
+   * Indique si le fichier est du texte (quel que soit son encodage).
+
+   * @return Vrai pour un fichier texte
+   */
+  public boolean estTexte() {
+    return nature != Nature.BINAIRE;
+  }
+
+  /**
+   * Retourne l'encodage à utiliser pour lire le fichier s'il s'agit de texte.
+
+   * @return UTF-16 pour un texte UTF-16, UTF-8 sinon
+   */
+  public Charset getEncodage() {
+    return nature == Nature.TEXTE_UTF16 ? StandardCharsets.UTF_16 : StandardCharsets.UTF_8;
+  }
+
+  /**
+   * Détecte le type d'un fichier (ou le prend dans le cache si le fichier n'a pas changé).
+
+   * @param fichier le fichier
+   * @return le type du fichier
+   * @throws IOException si le fichier ne peut pas être lu
+   */
+  public static TypeFichier detecte(Path fichier) throws IOException {
+    Path chemin = fichier.toAbsolutePath().normalize();
+    BasicFileAttributes attrs = Files.readAttributes(chemin, BasicFileAttributes.class,
+        LinkOption.NOFOLLOW_LINKS);
+    long date = attrs.lastModifiedTime().toMillis();
+    Entree entree = CACHE.get(chemin);
+    if (entree != null && entree.date == date && entree.taille == attrs.size()) {
+      return entree.type;
+    }
+
+    LECTURES.incrementAndGet();
+    byte[] echantillon;
+    try (InputStream in = Files.newInputStream(chemin)) {
+      echantillon = in.readNBytes(ECHANTILLON);
+    }
+    TypeFichier type = analyse(echantillon, echantillon.length < ECHANTILLON);
+    if (CACHE.size() >= TAILLE_CACHE) {
+      CACHE.clear();
+    }
+    CACHE.put(chemin, new Entree(date, attrs.size(), type));
+    return type;
+  }
+
+  /**
+   * Vide le cache.
+   */
+  public static void vider() {
+    CACHE.clear();
+  }
+
+  /**
+   * Retourne le nombre de fichiers lus depuis le démarrage.
+
+   * @return le nombre de fichiers lus (ceux pris dans le cache ne sont pas comptés)
+   */
+  static long getLectures() {
+    return LECTURES.get();
+  }
+
+  /**
+   * Détermine le type d'après le début du fichier.
+
+   * @param debut les premiers octets du fichier
+   * @param complet Vrai si debut contient tout le fichier
+   * @return le type
+   */
+  static TypeFichier analyse(byte[] debut, boolean complet) {
+    if (debut.length == 0) {
+      return new TypeFichier(Nature.TEXTE, "Fichier vide");
+    }
+    for (Object[] signature : SIGNATURES) {
+      if (commencePar(debut, (byte[]) signature[0])) {
+        return new TypeFichier(Nature.BINAIRE, (String) signature[1]);
+      }
+    }
+    if (debut.length >= 12 && debut[4] == 'f' && debut[5] == 't' && debut[6] == 'y'
+        && debut[7] == 'p') {
+      return new TypeFichier(Nature.BINAIRE, "Vidéo MP4/QuickTime (ou image HEIC)");
+    }
+
+    // Marques d'ordre des octets
+    if (commencePar(debut, new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF})) {
+      return new TypeFichier(Nature.TEXTE, "Texte UTF-8");
+    }
+    if (commencePar(debut, new byte[] {(byte) 0xFF, (byte) 0xFE})
+        || commencePar(debut, new byte[] {(byte) 0xFE, (byte) 0xFF})) {
+      return new TypeFichier(Nature.TEXTE_UTF16, "Texte UTF-16");
+    }
+
+    // Octets nuls et caractères de contrôle
+    int nuls = 0;
+    int nulsPairs = 0;
+    int controles = 0;
+    boolean ascii = true;
+    for (int i = 0; i < debut.length; i++) {
+      int b = debut[i] & 0xFF;
+      if (b == 0) {
+        nuls++;
+        if (i % 2 == 0) {
+          nulsPairs++;
+        }
+      } else if (b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f' && b != 0x1B
+          && b != '\b' || b == 0x7F) {
+        controles++;
+      }
+      ascii &= b < 0x80;
+    }
+    if (nuls > 0) {
+      // Texte UTF-16 sans BOM : un octet sur deux est nul (caractères latins)
+      boolean alignes = nulsPairs == nuls || nulsPairs == 0;
+      if (alignes && nuls * 10 >= debut.length * 3 && controles == 0) {
+        return new TypeFichier(Nature.TEXTE_UTF16, "Texte UTF-16");
+      }
+      return new TypeFichier(Nature.BINAIRE, "Fichier binaire");
+    }
+    if (controles * 10 > debut.length) {
+      return new TypeFichier(Nature.BINAIRE, "Fichier binaire");
+    }
+    if (ascii) {
+      return new TypeFichier(Nature.TEXTE, "Texte ASCII");
+    }
+    return new TypeFichier(Nature.TEXTE, estUtf8(debut, complet)
+        ? "Texte UTF-8" : "Texte (encodage 8 bits)");
+  }
+
+  /**
+   * Indique si des octets sont de l'UTF-8 valide ; si l'échantillon n'est pas le fichier
+   * complet, un caractère coupé à la fin est accepté.
+   */
+  private static boolean estUtf8(byte[] octets, boolean complet) {
+    CharsetDecoder decodeur = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT);
+    int longueur = octets.length;
+    if (!complet) {
+      // On retire le dernier caractère, s'il est peut-être incomplet
+      int i = longueur - 1;
+      while (i > 0 && longueur - i < 4 && (octets[i] & 0xC0) == 0x80) {
+        i--;
+      }
+      if ((octets[i] & 0x80) != 0) {
+        longueur = i;
+      }
+    }
+    try {
+      decodeur.decode(ByteBuffer.wrap(octets, 0, longueur));
+      return true;
+    } catch (CharacterCodingException e) {
+      return false;
+    }
+  }
+
+  private static boolean commencePar(byte[] octets, byte[] prefixe) {
+    if (octets.length < prefixe.length) {
+      return false;
+    }
+    for (int i = 0; i < prefixe.length; i++) {
+      if (octets[i] != prefixe[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,143 @@
+package fr.uvsq.cprog;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Lecture en flux (StAX) d'un fichier "notes.xml" écrit par XMLEncoder.
+ * Contrairement à XMLDecoder, la liste d'objets n'est pas reconstruite :
+ * le fichier est parcouru élément par élément et la lecture s'arrête
+ * dès que la note recherchée est trouvée.
+ *
+ * <p>Format lu (celui produit par XmlNoteStore) :
+ * un objet java.util.ArrayList dont chaque élément ajouté (void method="add")
+ * est un objet fr.uvsq.cprog.Fichier dont les propriétés nom et texteAssocie
+ * sont des éléments string.
+ */
+public class XmlNoteReader {
+
+  /**
+   * Fabrique de lecteurs StAX, sans DTD ni entités externes.
+   */
+  private static final XMLInputFactory FACTORY = createFactory();
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
+  /**
+   * Cherche la note d'un fichier dans un fichier "notes.xml".
+
+   * @param xmlFile le fichier notes.xml
+   * @param nom le nom du fichier dont on veut la note
+   * @return l'objet Fichier correspondant, ou null si nom n'a pas de note
+   */
+  public static Fichier find(File xmlFile, String nom) {
+    try (InputStream in = new BufferedInputStream(new FileInputStream(xmlFile))) {
+      XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+      try {
+        Fichier fichier;
+        while ((fichier = nextFichier(reader)) != null) {
+          if (nom.equals(fichier.getNom())) {
+            return fichier;
+          }
+        }
+        return null;
+      } finally {
+        reader.close();
+      }
+    } catch (IOException | XMLStreamException ex) {
+      throw new RuntimeException("Erreur, le fichier notes.xml n'a pas pu etre lu.", ex);
+    }
+  }
+
+  /**
+   * Avance jusqu'au prochain objet Fichier du flux et le lit.
+
+   * @param reader le lecteur StAX
+   * @return l'objet Fichier lu, ou null s'il n'y en a plus
+   */
+  private static Fichier nextFichier(XMLStreamReader reader) throws XMLStreamException {
+    while (reader.hasNext()) {
+      if (reader.next() == XMLStreamConstants.START_ELEMENT
+          && "object".equals(reader.getLocalName())
+          && Fichier.class.getName().equals(reader.getAttributeValue(null, "class"))) {
+        return readFichier(reader);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Lit les propriétés d'un objet Fichier, le lecteur étant positionné sur
+   * l'élément object ouvrant. Le lecteur est laissé sur l'élément object fermant.
+   */
+  private static Fichier readFichier(XMLStreamReader reader) throws XMLStreamException {
+    Fichier fichier = new Fichier();
+    String property = null;
+    int depth = 1;
+
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        String element = reader.getLocalName();
+        if ("void".equals(element)) {
+          property = reader.getAttributeValue(null, "property");
+          depth++;
+        } else if ("string".equals(element)) {
+          String value = readString(reader);
+          if ("nom".equals(property)) {
+            fichier.setNom(value);
+          } else if ("texteAssocie".equals(property)) {
+            fichier.setTexteAssocie(value);
+          }
+        } else {
+          depth++;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+        property = null;
+      }
+    }
+    return fichier;
+  }
+
+  /**
+   * Lit le contenu d'un élément string, le lecteur étant positionné sur l'élément ouvrant.
+   * XMLEncoder écrit les caractères interdits en XML sous la forme d'éléments
+   * char code="#XX" imbriqués : ils sont décodés.
+   */
+  private static String readString(XMLStreamReader reader) throws XMLStreamException {
+    StringBuilder value = new StringBuilder();
+
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+        value.append(reader.getText());
+      } else if (event == XMLStreamConstants.START_ELEMENT) {
+        if ("char".equals(reader.getLocalName())) {
+          String code = reader.getAttributeValue(null, "code");
+          if (code != null && code.startsWith("#")) {
+            value.append((char) Integer.parseInt(code.substring(1), 16));
+          } else {
+            value.append(reader.getAttributeValue(null, "value"));
+          }
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT
+          && "string".equals(reader.getLocalName())) {
+        break;
+      }
+    }
+    return value.toString();
+  }
+}
@@ -0,0 +1,54 @@
+package fr.uvsq.cprog;
+
+import java.beans.XMLDecoder;
+import java.beans.XMLEncoder;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Ancien format de stockage des notes : la liste d'objets Fichier est
+ * sérialisée au format XML dans un fichier nommé "notes.xml"
+ * grâce à XMLEncoder et XMLDecoder.
+ * Le fichier est réécrit de façon atomique (voir AtomicFile).
+ * Ce format est conservé pour pouvoir relire (et migrer) les notes existantes.
+ */
+public class XmlNoteStore implements NoteStore {
+
+  /**
+   * Nom du fichier de notes au format XML.
+   */
+  public static final String FILE_NAME = "notes.xml";
+
+  @Override
+  public String getFileName() {
+    return FILE_NAME;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<Fichier> readNotes(File noteFile) {
+    try (XMLDecoder decoder = new XMLDecoder(
+        new BufferedInputStream(new FileInputStream(noteFile)))) {
+      // Lecture de la liste d'objets depuis le fichier
+      return (List<Fichier>) decoder.readObject();
+    } catch (IOException ex) {
+      throw new RuntimeException("Erreur, le fichier notes.xml n'a pas pu etre lu.", ex);
+    }
+  }
+
+  @Override
+  public void writeNotes(File noteFile, List<Fichier> objectsList) {
+    try {
+      AtomicFile.write(noteFile, out -> {
+        try (XMLEncoder encoder = new XMLEncoder(out)) {
+          encoder.writeObject(objectsList);
+        }
+      });
+    } catch (final IOException ex) {
+      throw new RuntimeException("Erreur, le fichier notes.xml n'a pas pu etre annoté.", ex);
+    }
+  }
+}
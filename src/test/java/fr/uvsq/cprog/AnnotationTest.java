@@ -1,14 +1,22 @@
 package fr.uvsq.cprog;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
@@ -19,14 +27,14 @@ public class AnnotationTest {
 
   /**
    * Teste la méthode annote() dans le cas où on veut ajouter une annotation
-   * alors que le fichier notes.xml n'existe pas encore.
+   * alors que le fichier notes.bin n'existe pas encore.
    */
   @Test
   public void testAnnote() {
     String actualPath = System.getProperty("user.dir");
     String pathAnnote = actualPath + File.separator + "fable.txt";
     String text = "ceci est un test";
-    String notePath = actualPath + File.separator + "notes.xml";
+    String notePath = actualPath + File.separator + "notes.bin";
 
     // On lance la méthode à tester
     Annotation.annote(pathAnnote, text);
@@ -45,11 +53,18 @@ public class AnnotationTest {
   @AfterEach
   public void deleteFile() {
     String actualPath = System.getProperty("user.dir");
-    Path path = FileSystems.getDefault().getPath(actualPath + File.separator + "notes.xml");
+    Path path = FileSystems.getDefault().getPath(actualPath + File.separator + "notes.bin");
+    Path legacyPath = FileSystems.getDefault().getPath(actualPath + File.separator + "notes.xml");
+    Path journalPath = FileSystems.getDefault().getPath(actualPath + File.separator
+        + "notes.journal");
+    Path lockPath = FileSystems.getDefault().getPath(actualPath + File.separator + "notes.lock");
 
     try {
       // On essaie de supprimer
       Files.deleteIfExists(path);
+      Files.deleteIfExists(legacyPath);
+      Files.deleteIfExists(journalPath);
+      Files.deleteIfExists(lockPath);
     } catch (IOException ex) {
       // Si impossible on renvoie une erreur.
       String errorMsg = "Le fichier n'a pas pu etre supprimé.";
@@ -58,7 +73,7 @@ public class AnnotationTest {
   }
 
   /**
-  * Teste la méthode annote() avec notes.xml déjà existante.
+  * Teste la méthode annote() avec notes.bin déjà existante.
   * Et un fichier à annoté qui a déjà une note.
   */
   @Test
@@ -74,7 +89,7 @@ public class AnnotationTest {
     // Création d'une seconde annotation
     Annotation.annote(pathAnnote, text2);
 
-    String notePath = actualPath + File.separator + "notes.xml";
+    String notePath = actualPath + File.separator + "notes.bin";
     File noteFile = new File(notePath);
 
     // Verifie si la note à bien était mise à jour.
@@ -109,7 +124,7 @@ public class AnnotationTest {
 
 
   /**
-   * Teste de la méthode afficheNote() quand le fichier notes.xml
+   * Teste de la méthode afficheNote() quand le fichier notes.bin
    * n'existe pas.
    */
   @Test
@@ -243,4 +258,318 @@ public class AnnotationTest {
     assertThrows(IllegalArgumentException.class, () -> Annotation.deleteNote(filePath));
   }
 
+  /**
+   * Teste qu'un ancien fichier notes.xml est lu sans être converti,
+   * puis converti au format binaire lors de sa première modification.
+   */
+  @Test
+  public void testMigrationNotesXml() {
+    String actualPath = System.getProperty("user.dir");
+    String filePath = actualPath + File.separator + "fable.txt";
+    File legacyFile = new File(actualPath + File.separator + "notes.xml");
+    final File noteFile = new File(actualPath + File.separator + "notes.bin");
+
+    // Création d'un fichier notes.xml à l'ancien format
+    new XmlNoteStore().writeNotes(legacyFile, new ArrayList<>(
+        List.of(new Fichier("fable.pdf", "Une autre note."),
+            new Fichier("fable.txt", "Une ancienne note."))));
+
+    // La consultation lit notes.xml sans le modifier
+    assertEquals("Une ancienne note.", Annotation.afficheNote(filePath));
+    assertTrue(legacyFile.exists());
+    assertFalse(noteFile.exists());
+
+    // La première modification déclenche la migration
+    Annotation.annote(filePath, "Et une nouvelle.");
+
+    assertEquals("Une ancienne note. Et une nouvelle.", Annotation.afficheNote(filePath));
+    assertTrue(noteFile.exists());
+    assertFalse(legacyFile.exists());
+    assertTrue(BinaryNoteStore.isBinary(noteFile));
+  }
+
+  /**
+   * Teste la lecture en une fois des notes de plusieurs éléments,
+   * avec un fichier notes.bin puis avec un ancien fichier notes.xml.
+   */
+  @Test
+  public void testAfficheNotes() {
+    String actualPath = System.getProperty("user.dir");
+    Path dir = FileSystems.getDefault().getPath(actualPath);
+    List<String> noms = List.of("fable.txt", "fable.pdf", "vide.txt");
+    assertTrue(Annotation.afficheNotes(dir, noms).isEmpty());
+
+    Annotation.annote(actualPath + File.separator + "fable.txt", "Note de la fable.");
+    Annotation.annote(actualPath + File.separator + "vide.txt", "Fichier vide.");
+    assertEquals(Map.of("fable.txt", "Note de la fable.", "vide.txt", "Fichier vide."),
+        Annotation.afficheNotes(dir, noms));
+    assertEquals(Map.of("vide.txt", "Fichier vide."),
+        Annotation.afficheNotes(dir, List.of("vide.txt")));
+
+    deleteFile();
+    new XmlNoteStore().writeNotes(new File(actualPath + File.separator + "notes.xml"),
+        new ArrayList<>(List.of(new Fichier("fable.pdf", "Une ancienne note."))));
+    assertEquals(Map.of("fable.pdf", "Une ancienne note."),
+        Annotation.afficheNotes(dir, noms));
+  }
+
+  /**
+   * Teste la lecture en flux de notes.xml : caractères échappés, texte vide,
+   * texte absent (null) et fichier sans note.
+   */
+  @Test
+  public void testXmlNoteReader() {
+    String actualPath = System.getProperty("user.dir");
+    File legacyFile = new File(actualPath + File.separator + "notes.xml");
+    new XmlNoteStore().writeNotes(legacyFile, new ArrayList<>(
+        List.of(new Fichier("a & <b>.txt", "texte \"spécial\" \u0001"),
+            new Fichier("vide.txt", ""),
+            new Fichier("nul.txt", null))));
+
+    assertEquals("texte \"spécial\" \u0001",
+        XmlNoteReader.find(legacyFile, "a & <b>.txt").getTexteAssocie());
+    assertEquals("", XmlNoteReader.find(legacyFile, "vide.txt").getTexteAssocie());
+    assertEquals(null, XmlNoteReader.find(legacyFile, "nul.txt").getTexteAssocie());
+    assertEquals(null, XmlNoteReader.find(legacyFile, "absent.txt"));
+  }
+
+  /**
+   * Teste que le format binaire relit exactement ce qu'il a écrit,
+   * y compris des textes contenant des caractères spéciaux.
+   */
+  @Test
+  public void testBinaryNoteStoreRoundTrip() {
+    String actualPath = System.getProperty("user.dir");
+    File noteFile = new File(actualPath + File.separator + "notes.bin");
+    List<Fichier> objectsList = new ArrayList<>();
+    objectsList.add(new Fichier("fable.txt", "Accentué, \"guillemets\" et <balises>."));
+    objectsList.add(new Fichier("fable.pdf", ""));
+
+    NoteStore store = new BinaryNoteStore();
+    store.writeNotes(noteFile, objectsList);
+    List<Fichier> result = store.readNotes(noteFile);
+
+    assertEquals(2, result.size());
+    assertEquals("fable.txt", result.get(0).getNom());
+    assertEquals("Accentué, \"guillemets\" et <balises>.", result.get(0).getTexteAssocie());
+    assertEquals("fable.pdf", result.get(1).getNom());
+    assertEquals("", result.get(1).getTexteAssocie());
+  }
+
+  /**
+   * Teste que les annotations suivant la création de la note passent par le journal
+   * et que la compaction les intègre au fichier de notes.
+   */
+  @Test
+  public void testJournalEtCompaction() {
+    String actualPath = System.getProperty("user.dir");
+    String filePath1 = actualPath + File.separator + "fable.txt";
+    String filePath2 = actualPath + File.separator + "fable.pdf";
+    File noteFile = new File(actualPath + File.separator + "notes.bin");
+    final File journal = new File(actualPath + File.separator + "notes.journal");
+
+    Annotation.annote(filePath1, "premiere");
+    final long tailleNote = noteFile.length();
+    Annotation.annote(filePath1, "seconde");
+    Annotation.annote(filePath2, "autre");
+    Annotation.deleteNote(filePath2);
+
+    // Le fichier de notes n'a pas été réécrit, les modifications sont dans le journal
+    assertEquals(tailleNote, noteFile.length());
+    assertTrue(journal.exists());
+    assertEquals("premiere seconde", Annotation.afficheNote(filePath1));
+    assertEquals("Cet élément n'a pas d'annotation.", Annotation.afficheNote(filePath2));
+
+    Annotation.compact(actualPath);
+
+    assertFalse(journal.exists());
+    List<Fichier> objectsList = new BinaryNoteStore().readNotes(noteFile);
+    assertEquals(1, objectsList.size());
+    assertEquals("premiere seconde", objectsList.get(0).getTexteAssocie());
+  }
+
+  /**
+   * Teste qu'un enregistrement ajouté après un dernier enregistrement tronqué
+   * (écriture interrompue) remplace celui-ci, et que le journal reste lisible.
+   */
+  @Test
+  public void testJournalApresEnregistrementTronque() throws IOException {
+    String actualPath = System.getProperty("user.dir");
+    String filePath1 = actualPath + File.separator + "fable.txt";
+    final String filePath2 = actualPath + File.separator + "fable.pdf";
+    final File noteFile = new File(actualPath + File.separator + "notes.bin");
+    File journal = new File(actualPath + File.separator + "notes.journal");
+
+    Annotation.annote(filePath1, "premiere");
+    Annotation.annote(filePath1, "seconde");
+    long longueur = journal.length();
+    // Début d'un enregistrement ANNOTE dont l'écriture a été interrompue
+    Files.write(journal.toPath(), new byte[] {NoteJournal.ANNOTE, 0, 0, 0, 9, 'f'},
+        StandardOpenOption.APPEND);
+    assertEquals(longueur, NoteJournal.longueurValide(journal, 1));
+
+    Annotation.annote(filePath2, "autre");
+    Annotation.annote(filePath1, "troisieme");
+
+    NoteTable table = NoteTable.of(new BinaryNoteStore().readNotes(noteFile));
+    NoteJournal.replay(journal, table, 1);
+    assertEquals("premiere seconde troisieme", table.get("fable.txt").getTexteAssocie());
+    assertEquals("autre", table.get("fable.pdf").getTexteAssocie());
+  }
+
+  /**
+   * Teste qu'une note mise en cache est relue lorsque le fichier de notes
+   * est modifié par un autre moyen que la classe Annotation.
+   */
+  @Test
+  public void testCacheInvalideParModificationExterne() {
+    String actualPath = System.getProperty("user.dir");
+    String filePath = actualPath + File.separator + "fable.txt";
+    File noteFile = new File(actualPath + File.separator + "notes.bin");
+
+    Annotation.annote(filePath, "avant");
+    assertEquals("avant", Annotation.afficheNote(filePath));
+
+    // Réécriture du fichier de notes sans passer par Annotation
+    new BinaryNoteStore().writeNotes(noteFile, new ArrayList<>(
+        List.of(new Fichier("fable.txt", "modifiee ailleurs"))));
+
+    assertEquals("modifiee ailleurs", Annotation.afficheNote(filePath));
+  }
+
+  /**
+   * Teste que des annotations faites en même temps par plusieurs threads,
+   * pendant des compactions, sont toutes conservées.
+   */
+  @Test
+  public void testAnnotationsConcurrentes() throws Exception {
+    String actualPath = System.getProperty("user.dir");
+    String filePath = actualPath + File.separator + "fable.txt";
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    Annotation.setCompactionThreshold(64);
+
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < 25; j++) {
+            Annotation.annote(filePath, "x");
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      Annotation.compact(actualPath);
+    } finally {
+      executor.shutdown();
+      Annotation.setCompactionThreshold(64 * 1024);
+    }
+
+    assertEquals(100, Annotation.afficheNote(filePath).split(" ").length);
+  }
+
+  /**
+   * Teste que updateNotes() recalcule la fusion lorsque les notes sont modifiées
+   * entre leur lecture et l'écriture de la fusion, au lieu d'écraser la modification.
+   */
+  @Test
+  public void testUpdateNotesConflit() {
+    String actualPath = System.getProperty("user.dir");
+    String filePath1 = actualPath + File.separator + "fable.txt";
+    String filePath2 = actualPath + File.separator + "fable.pdf";
+    List<Integer> appels = new ArrayList<>();
+
+    Annotation.annote(filePath1, "initiale");
+    Annotation.updateNotes(actualPath, objectsList -> {
+      appels.add(objectsList.size());
+      if (appels.size() == 1) {
+        // Écriture concurrente pendant le calcul de la fusion
+        Annotation.annote(filePath2, "concurrente");
+      }
+      List<Fichier> result = new ArrayList<>(objectsList);
+      result.add(new Fichier("vide.txt", "fusion"));
+      return result;
+    });
+
+    assertEquals(List.of(1, 2), appels);
+    assertEquals("initiale", Annotation.afficheNote(filePath1));
+    assertEquals("concurrente", Annotation.afficheNote(filePath2));
+    assertEquals(3, Annotation.readNoteObjects(
+        new File(actualPath + File.separator + "notes.bin")).size());
+  }
+
+  /**
+   * Teste qu'un journal resté après la réécriture du fichier de notes
+   * (version différente) n'est pas rejoué.
+   */
+  @Test
+  public void testJournalVersionPerimee() {
+    String actualPath = System.getProperty("user.dir");
+    String filePath = actualPath + File.separator + "fable.txt";
+    File noteFile = new File(actualPath + File.separator + "notes.bin");
+    NoteStore store = new BinaryNoteStore();
+
+    Annotation.annote(filePath, "premiere");
+    Annotation.annote(filePath, "seconde");
+    assertEquals(1, store.readVersion(noteFile));
+
+    // Réécriture du fichier de notes sans supprimer le journal
+    store.writeNotes(noteFile, new ArrayList<>(List.of(new Fichier("fable.txt", "integree"))));
+    assertEquals(2, store.readVersion(noteFile));
+
+    assertEquals("integree", Annotation.afficheNote(filePath));
+    Annotation.annote(filePath, "apres");
+    assertEquals("integree apres", Annotation.afficheNote(filePath));
+  }
+
+  /**
+   * Teste que les segments d'une note (et leur date) sont conservés par le journal
+   * et la compaction, et que afficheNote() peut ne retourner que les derniers.
+   */
+  @Test
+  public void testSegmentsNote() {
+    String actualPath = System.getProperty("user.dir");
+    String filePath = actualPath + File.separator + "fable.txt";
+    final File noteFile = new File(actualPath + File.separator + "notes.bin");
+    final long debut = System.currentTimeMillis();
+
+    Annotation.annote(filePath, "build 1");
+    Annotation.annote(filePath, "build 2");
+    Annotation.annote(filePath, "build 3");
+    assertEquals("build 2 build 3", Annotation.afficheNote(filePath, 2));
+
+    Annotation.compact(actualPath);
+    List<Fichier> objectsList = new BinaryNoteStore().readNotes(noteFile);
+    List<Fichier.Segment> segments = objectsList.get(0).getSegments();
+    assertEquals(3, segments.size());
+    assertEquals("build 3", segments.get(2).getTexte());
+    assertTrue(segments.get(0).getDate() >= debut);
+    assertEquals("build 3", Annotation.afficheNote(filePath, 1));
+    assertEquals("build 1 build 2 build 3", Annotation.afficheNote(filePath));
+  }
+
+  /**
+   * Teste que la suppression de la dernière note d'un répertoire supprime ses fichiers
+   * de notes et son fichier de verrou, et qu'une nouvelle note les recrée.
+   */
+  @Test
+  public void testSuppressionDerniereNote() {
+    String actualPath = System.getProperty("user.dir");
+    String filePath = actualPath + File.separator + "fable.txt";
+    File dir = new File(actualPath);
+
+    Annotation.annote(filePath, "premiere");
+    Annotation.annote(filePath, "seconde");
+    assertTrue(new File(dir, NoteLock.FILE_NAME).exists());
+
+    Annotation.deleteNote(filePath);
+    assertFalse(new File(dir, "notes.bin").exists());
+    assertFalse(new File(dir, "notes.journal").exists());
+    assertFalse(new File(dir, NoteLock.FILE_NAME).exists());
+    assertEquals("Cet élément n'a pas d'annotation.", Annotation.afficheNote(filePath));
+
+    Annotation.annote(filePath, "nouvelle");
+    assertEquals("nouvelle", Annotation.afficheNote(filePath));
+  }
 }
@@ -0,0 +1,79 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe AtomicFile.
+ */
+public class AtomicFileTest {
+
+  private static final File DOSSIER = new File("dossierTestAtomique");
+
+  /**
+   * Crée le répertoire de test.
+   */
+  @BeforeEach
+  public void creeDossier() {
+    DOSSIER.mkdirs();
+  }
+
+  /**
+   * Supprime le répertoire de test.
+   */
+  @AfterEach
+  public void supprimeDossier() throws IOException {
+    FileUtils.deleteDirectory(DOSSIER);
+  }
+
+  /**
+   * Teste que le fichier est remplacé et qu'aucun fichier temporaire ne reste,
+   * avec et sans synchronisation sur le disque.
+   */
+  @Test
+  public void testEcritureRemplaceLeFichier() throws IOException {
+    File fichier = new File(DOSSIER, "notes.bin");
+    boolean sync = AtomicFile.isSync();
+
+    try {
+      AtomicFile.setSync(true);
+      AtomicFile.write(fichier, out -> out.write("premier".getBytes(StandardCharsets.UTF_8)));
+      AtomicFile.setSync(false);
+      AtomicFile.write(fichier, out -> out.write("second".getBytes(StandardCharsets.UTF_8)));
+    } finally {
+      AtomicFile.setSync(sync);
+    }
+
+    assertArrayEquals("second".getBytes(StandardCharsets.UTF_8),
+        Files.readAllBytes(fichier.toPath()));
+    assertEquals(1, DOSSIER.list().length);
+  }
+
+  /**
+   * Teste qu'une écriture interrompue laisse le fichier d'origine intact.
+   */
+  @Test
+  public void testEcritureInterrompue() throws IOException {
+    File fichier = new File(DOSSIER, "notes.bin");
+    AtomicFile.write(fichier, out -> out.write("intact".getBytes(StandardCharsets.UTF_8)));
+
+    assertThrows(IOException.class, () -> AtomicFile.write(fichier, out -> {
+      out.write("tronqu".getBytes(StandardCharsets.UTF_8));
+      throw new IOException("Disque plein");
+    }));
+
+    assertArrayEquals("intact".getBytes(StandardCharsets.UTF_8),
+        Files.readAllBytes(fichier.toPath()));
+    assertEquals(1, DOSSIER.list().length);
+  }
+}
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.fusesource.jansi.AnsiConsole;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -21,6 +22,15 @@ public class CliTest {
     AnsiConsole.systemInstall();
   }
 
+  /**
+   * Rend la sortie standard d'origine : la console Jansi écrit directement sur le descripteur
+   * de sortie, ce qui mêlerait les affichages des tests suivants aux échanges avec surefire.
+   */
+  @AfterAll
+  public static void finJansi() {
+    AnsiConsole.systemUninstall();
+  }
+
   /**
    * Teste les commandes qui ne demandent ni nom fichier, note ou nom répertoire.
    */
@@ -37,7 +47,12 @@ public class CliTest {
               "mkdir nomrep, -1, MKDIR",
               "visu, -1, VISU",
               "3 visu, 3, VISU",
+              "3 du, 3, DU",
               "find requete, -1, FIND",
+              "tri taille, -1, TRI",
+              "/fab, -1, FILTRE",
+              ">, -1, PAGE_SUIVANTE",
+              "<, -1, PAGE_PRECEDENTE",
               "004 + unenote argumentEnTrop, 4, ANNOTE",
               "6000 -, 6000, SUPPRNOTE",
               "4 del, 4, DEL",
@@ -62,6 +77,7 @@ public class CliTest {
   @ParameterizedTest
   @CsvSource({"mkdir nom_fichier, -1, MKDIR, nom_fichier",
               "find 3, -1, FIND, 3",
+              "/fa b, -1, FILTRE, fa b",
               "3 + une_note, 3, ANNOTE, une_note",
               "+ une_note, -1, ANNOTE, une_note"
 
@@ -62,6 +62,17 @@ public class CommandesTest {
     assertEquals(expectedOutput, Commandes.visu("fable.pdf"));
   }
 
+  /**
+   * Teste la méthode visu() avec un répertoire : la taille de son arborescence est affichée.
+   */
+  @Test
+  public void testVisuRepertoire() {
+    long taille = FileUtils.sizeOfDirectory(new File("fichierTest3"));
+    assertTrue(Commandes.visu("fichierTest3")
+        .startsWith("La taille du répertoire est de " + taille + " octet(s) ("));
+    assertThrows(IllegalArgumentException.class, () -> Commandes.du("fable.pdf"));
+  }
+
   /**
    * Teste la méthode visu() avec un chemin inexistant.
    * Vérifie si une erreur est bien retournée.
@@ -800,4 +811,77 @@ public class CommandesTest {
     String expectedOutput = "Le chemin spécifié n'existe pas : " + wrongPath;
     assertEquals(expectedOutput, exception.getMessage());
   }
-}
\ No newline at end of file
+
+  //////////////////         TESTS POUR LES NOTES COPIEES        //////////////////
+
+  private static final String DOSSIER_NOTES = "dossierTestCopieNotes";
+
+  /**
+   * Supprime l'arborescence créée par les tests de copie des notes.
+   */
+  @AfterEach
+  public void supprimeDossierNotes() throws IOException {
+    FileUtils.deleteDirectory(new File(DOSSIER_NOTES));
+  }
+
+  /**
+   * Crée l'arborescence dossierTestCopieNotes/source/{note.txt, sous/interne.txt}
+   * et dossierTestCopieNotes/destination, avec des notes.
+   */
+  private static String creeDossierNotes() throws IOException {
+    String racine = Paths.get(DOSSIER_NOTES).toAbsolutePath().toString();
+    String source = racine + File.separator + "source";
+    new File(source + File.separator + "sous").mkdirs();
+    new File(racine + File.separator + "destination").mkdirs();
+    new File(source + File.separator + "note.txt").createNewFile();
+    new File(source + File.separator + "sous" + File.separator + "interne.txt").createNewFile();
+
+    Annotation.annote(source + File.separator + "note.txt", "note du fichier");
+    Annotation.annote(source + File.separator + "sous" + File.separator + "interne.txt",
+        "note interne");
+    Annotation.annote(source, "note du dossier");
+    return racine;
+  }
+
+  /**
+   * Teste que past() copie la note d'un fichier, y compris sous un nom en -copy.
+   */
+  @Test
+  public void testPastFileCopieLaNote() throws IOException {
+    String racine = creeDossierNotes();
+    String source = racine + File.separator + "source";
+    String fichier = source + File.separator + "note.txt";
+    String destination = racine + File.separator + "destination";
+
+    Commandes.past(fichier, destination);
+    Commandes.past(fichier, source);
+
+    assertEquals("note du fichier",
+        Annotation.afficheNote(destination + File.separator + "note.txt"));
+    assertEquals("note du fichier",
+        Annotation.afficheNote(source + File.separator + "note-copy.txt"));
+    assertEquals("note du fichier", Annotation.afficheNote(fichier));
+  }
+
+  /**
+   * Teste que cut() déplace un répertoire avec sa note et celles de son contenu.
+   */
+  @Test
+  public void testCutDirDeplaceLesNotes() throws IOException {
+    String racine = creeDossierNotes();
+    String source = racine + File.separator + "source";
+    String destination = racine + File.separator + "destination";
+    String deplace = destination + File.separator + "source";
+
+    Commandes.cut(source, destination);
+
+    assertTrue(!Files.exists(Paths.get(source)));
+    assertEquals("note du dossier", Annotation.afficheNote(deplace));
+    assertEquals("note du fichier", Annotation.afficheNote(deplace + File.separator + "note.txt"));
+    assertEquals("note interne", Annotation.afficheNote(deplace + File.separator + "sous"
+        + File.separator + "interne.txt"));
+    assertTrue(!Files.exists(Paths.get(deplace, NoteLock.FILE_NAME)));
+    assertEquals(List.of(List.of("interne.txt", deplace + File.separator + "sous")),
+        NoteSearchIndex.getInstance().search(racine, "interne"));
+  }
+}
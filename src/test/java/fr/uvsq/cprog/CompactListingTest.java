@@ -0,0 +1,61 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe CompactListing.
+ */
+public class CompactListingTest {
+
+  private static final Path PARENT = Paths.get("dossier").toAbsolutePath();
+
+  /**
+   * Teste que la liste compacte se comporte comme une liste de Path :
+   * ajout, insertion, recherche et suppression.
+   */
+  @Test
+  public void testCommeUneListe() {
+    CompactListing listing = new CompactListing(PARENT);
+    List<Path> expected = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Path chemin = PARENT.resolve("fichier-" + i + (i % 2 == 0 ? ".txt" : "-bis"));
+      listing.add(chemin);
+      expected.add(chemin);
+    }
+    assertEquals(expected, listing);
+
+    listing.add(3, PARENT.resolve("insere"));
+    expected.add(3, PARENT.resolve("insere"));
+    assertTrue(listing.remove(PARENT.resolve("fichier-50.txt")));
+    expected.remove(PARENT.resolve("fichier-50.txt"));
+    listing.subList(90, listing.size()).clear();
+    expected.subList(90, expected.size()).clear();
+    listing.trimToSize();
+
+    assertEquals(expected, listing);
+    assertEquals(4, listing.indexOf(PARENT.resolve("fichier-3-bis")));
+    assertEquals("insere", listing.getName(3));
+    assertFalse(listing.contains(PARENT.resolve("fichier-50.txt")));
+    assertFalse(listing.contains(Paths.get("ailleurs", "fichier-1-bis")));
+  }
+
+  /**
+   * Teste qu'un chemin hors du répertoire est refusé.
+   */
+  @Test
+  public void testCheminHorsRepertoire() {
+    CompactListing listing = new CompactListing(PARENT);
+    assertThrows(IllegalArgumentException.class,
+        () -> listing.add(Paths.get("ailleurs", "fichier").toAbsolutePath()));
+    assertThrows(IndexOutOfBoundsException.class, () -> listing.get(0));
+  }
+}
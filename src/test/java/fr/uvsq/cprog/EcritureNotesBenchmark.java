@@ -0,0 +1,62 @@
+package fr.uvsq.cprog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Mesure le coût d'une réécriture du fichier de notes selon le mode d'écriture :
+ * écriture atomique sans synchronisation, puis avec synchronisation (fsync) sur le disque.
+ * Ce n'est pas un test (il n'est pas lancé par mvn test) ; pour l'exécuter :
+ * mvn test-compile exec:java -Dexec.mainClass=fr.uvsq.cprog.EcritureNotesBenchmark
+ * -Dexec.classpathScope=test
+ */
+public class EcritureNotesBenchmark {
+
+  private static final int NOTES = 200;
+  private static final int ECRITURES = 300;
+
+  /**
+   * Lance la mesure.
+
+   * @param args un répertoire de travail (optionnel, sur le disque à mesurer)
+   */
+  public static void main(String[] args) throws IOException {
+    File dossier = args.length > 0
+        ? new File(args[0]) : Files.createTempDirectory("bench-notes").toFile();
+    dossier.mkdirs();
+    File noteFile = new File(dossier, BinaryNoteStore.FILE_NAME);
+
+    List<Fichier> objectsList = new ArrayList<>();
+    for (int i = 0; i < NOTES; i++) {
+      objectsList.add(new Fichier("fichier" + i + ".txt", "Une note de test numéro " + i));
+    }
+
+    NoteStore store = new BinaryNoteStore();
+    boolean sync = AtomicFile.isSync();
+    try {
+      for (boolean mode : new boolean[] {false, true}) {
+        AtomicFile.setSync(mode);
+        // Préchauffage
+        for (int i = 0; i < ECRITURES / 10; i++) {
+          store.writeNotes(noteFile, objectsList);
+        }
+        long debut = System.nanoTime();
+        for (int i = 0; i < ECRITURES; i++) {
+          store.writeNotes(noteFile, objectsList);
+        }
+        long duree = System.nanoTime() - debut;
+        System.out.printf("fsync=%-5s : %8.1f µs par écriture (%d notes, %d octets)%n",
+            mode, duree / 1000.0 / ECRITURES, NOTES, noteFile.length());
+      }
+    } finally {
+      AtomicFile.setSync(sync);
+      if (args.length == 0) {
+        FileUtils.deleteDirectory(dossier);
+      }
+    }
+  }
+}
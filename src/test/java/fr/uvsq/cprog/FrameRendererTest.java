@@ -0,0 +1,86 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe FrameRenderer.
+ */
+public class FrameRendererTest {
+
+  private final ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+  private final PrintStream out = new PrintStream(sortie, true, StandardCharsets.UTF_8);
+
+  private String affiche(FrameRenderer ecran, List<String> lignes, int hauteur) {
+    sortie.reset();
+    ecran.affiche(lignes, hauteur, 80, out);
+    return sortie.toString(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Teste que seules les lignes modifiées (et l'invite) sont réécrites.
+   */
+  @Test
+  public void testLignesModifiees() {
+    FrameRenderer ecran = new FrameRenderer();
+    String premiere = affiche(ecran, List.of("titre", "001 a", "002 b", "> "), 24);
+    assertTrue(premiere.startsWith("\u001B[2J"));
+    assertTrue(premiere.contains("titre") && premiere.contains("002 b"));
+
+    // Même image : seule l'invite est réécrite
+    assertEquals("\u001B[4;1H\u001B[K> ",
+        affiche(ecran, List.of("titre", "001 a", "002 b", "> "), 24));
+
+    // Une ligne change
+    String modifiee = affiche(ecran, List.of("titre", "001 a", "002 c", "> "), 24);
+    assertEquals("\u001B[3;1H\u001B[K002 c\u001B[4;1H\u001B[K> ", modifiee);
+
+    // Image plus courte : l'ancienne ligne d'invite est effacée
+    String courte = affiche(ecran, List.of("titre", "> "), 24);
+    assertEquals("\u001B[3;1H\u001B[K\u001B[4;1H\u001B[K\u001B[2;1H\u001B[K> ", courte);
+  }
+
+  /**
+   * Teste la mise à jour pendant la saisie : l'invite n'est pas réécrite
+   * et le curseur est remis à sa place.
+   */
+  @Test
+  public void testActualise() {
+    FrameRenderer ecran = new FrameRenderer();
+    affiche(ecran, List.of("titre", "001   a", "Chargement...", "> "), 24);
+
+    sortie.reset();
+    assertTrue(ecran.actualise(List.of("titre", "001 * a", "la note", "> "), 24, 80, out));
+    assertEquals("\u001B7\u001B[2;1H\u001B[K001 * a\u001B[3;1H\u001B[Kla note\u001B8",
+        sortie.toString(StandardCharsets.UTF_8));
+
+    // Image de taille différente : rien n'est écrit, elle sera affichée au prochain affichage
+    sortie.reset();
+    assertFalse(ecran.actualise(List.of("titre", "> "), 24, 80, out));
+    assertEquals("", sortie.toString(StandardCharsets.UTF_8));
+
+    // L'image mise à jour est la référence de l'affichage suivant
+    assertEquals("\u001B[4;1H\u001B[K> ",
+        affiche(ecran, List.of("titre", "001 * a", "la note", "> "), 24));
+  }
+
+  /**
+   * Teste qu'après invalider() ou un changement de taille l'écran est redessiné.
+   */
+  @Test
+  public void testRedessine() {
+    FrameRenderer ecran = new FrameRenderer();
+    affiche(ecran, List.of("titre", "> "), 24);
+    ecran.invalider();
+    assertTrue(affiche(ecran, List.of("titre", "> "), 24).contains("titre"));
+    assertFalse(affiche(ecran, List.of("titre", "> "), 24).contains("titre"));
+    assertTrue(affiche(ecran, List.of("titre", "> "), 30).contains("titre"));
+  }
+}
@@ -0,0 +1,111 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe HexPager.
+ */
+public class HexPagerTest {
+
+  private static final File FICHIER = new File("fichierTestHexa.bin");
+
+  /**
+   * Supprime le fichier de test.
+   */
+  @AfterEach
+  public void supprimeFichier() {
+    FICHIER.delete();
+  }
+
+  /**
+   * Écrit le fichier de test : les octets 0 à 255, répétés jusqu'à la taille donnée.
+   */
+  private static void ecritOctets(int taille) throws IOException {
+    byte[] octets = new byte[taille];
+    for (int i = 0; i < taille; i++) {
+      octets[i] = (byte) i;
+    }
+    Files.write(FICHIER.toPath(), octets);
+  }
+
+  /**
+   * Teste la mise en forme des lignes, dont la dernière ligne incomplète.
+   */
+  @Test
+  public void testLignes() throws IOException {
+    Files.write(FICHIER.toPath(), "Bonjour\0\1le monde !\n\177".getBytes(
+        StandardCharsets.ISO_8859_1));
+    try (HexPager pager = new HexPager(FICHIER.toPath())) {
+      assertEquals(List.of(
+          "00000000  42 6f 6e 6a 6f 75 72 00  01 6c 65 20 6d 6f 6e 64  |Bonjour..le mond|",
+          "00000010  65 20 21 0a 7f                                    |e !..|"),
+          pager.lignes(10));
+    }
+  }
+
+  /**
+   * Teste le passage d'une page à l'autre et l'accès à une position, avec une petite
+   * fenêtre projetée (déplacée plusieurs fois, en avant et en arrière).
+   */
+  @Test
+  public void testPositions() throws IOException {
+    ecritOctets(100_000);
+    try (HexPager pager = new HexPager(FICHIER.toPath(), 256)) {
+      pager.avance(2);
+      assertEquals(0x20, pager.getPosition());
+      assertTrue(pager.lignes(1).get(0).startsWith("00000020  20 21 22"));
+      pager.recule(5);
+      assertEquals(0, pager.getPosition());
+
+      // Une position est ramenée au début de sa ligne
+      pager.allerA(0x1234F);
+      assertEquals(0x12340, pager.getPosition());
+      List<String> lignes = pager.lignes(2);
+      assertTrue(lignes.get(0).startsWith("00012340  40 41 42"));
+      assertTrue(lignes.get(1).startsWith("00012350  50 51 52"));
+      pager.recule(1);
+      assertTrue(pager.lignes(1).get(0).startsWith("00012330  30 31 32"));
+
+      // On ne dépasse pas la dernière ligne (100 000 = 0x186a0)
+      pager.allerA(Long.MAX_VALUE);
+      assertEquals(0x18690, pager.getPosition());
+      pager.avance(10);
+      assertEquals(0x18690, pager.getPosition());
+      pager.fin(3);
+      assertEquals(0x18670, pager.getPosition());
+      assertEquals(3, pager.lignes(10).size());
+
+      pager.allerPourcentage(50);
+      assertEquals(50_000, pager.getPosition());
+      pager.allerPourcentage(0);
+      assertEquals(0, pager.getPosition());
+    }
+  }
+
+  /**
+   * Teste un fichier vide et un fichier qui change de taille.
+   */
+  @Test
+  public void testTaille() throws IOException {
+    Files.write(FICHIER.toPath(), new byte[0]);
+    try (HexPager pager = new HexPager(FICHIER.toPath())) {
+      assertTrue(pager.lignes(10).isEmpty());
+      pager.avance(1);
+      pager.fin(10);
+      assertEquals(0, pager.getPosition());
+
+      ecritOctets(40);
+      assertEquals(3, pager.lignes(10).size());
+      assertEquals(40, pager.getTaille());
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe LineIndex.
+ */
+public class LineIndexTest {
+
+  private static final File FICHIER = new File("fichierTestIndex.txt");
+
+  /**
+   * Supprime le fichier de test.
+   */
+  @AfterEach
+  public void supprimeFichier() {
+    FICHIER.delete();
+    LineIndex.vider();
+  }
+
+  /**
+   * Teste les positions de l'index et le nombre de lignes.
+   */
+  @Test
+  public void testIndex() throws Exception {
+    StringBuilder texte = new StringBuilder();
+    for (int i = 1; i <= 10_000; i++) {
+      texte.append(i).append('\n');
+    }
+    // Dernière ligne sans fin de ligne
+    texte.append("fin");
+    Files.write(FICHIER.toPath(), texte.toString().getBytes(StandardCharsets.UTF_8));
+
+    LineIndex index = LineIndex.pour(FICHIER.toPath());
+    index.attendre();
+    assertTrue(index.estComplet());
+    assertEquals(10_001, index.getNbLignes());
+    assertEquals(3, index.getNbPoints());
+    assertEquals(0, index.getPoint(0));
+    long point = index.getPoint(1);
+    assertEquals(texte.indexOf("4097\n"), point);
+    assertEquals(1, index.pointAvant(point));
+    assertEquals(0, index.pointAvant(point - 1));
+    assertEquals(2, index.pointAvant(Long.MAX_VALUE));
+  }
+
+  /**
+   * Teste le cache : l'index est gardé tant que le fichier ne change pas.
+   */
+  @Test
+  public void testCache() throws Exception {
+    Files.write(FICHIER.toPath(), "a\nb\n".getBytes(StandardCharsets.UTF_8));
+    LineIndex index = LineIndex.pour(FICHIER.toPath());
+    index.attendre();
+    assertSame(index, LineIndex.pour(FICHIER.toPath()));
+
+    Files.write(FICHIER.toPath(), "c\n".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    LineIndex nouveau = LineIndex.pour(FICHIER.toPath());
+    assertNotSame(index, nouveau);
+    nouveau.attendre();
+    assertEquals(3, nouveau.getNbLignes());
+  }
+}
@@ -0,0 +1,74 @@
+package fr.uvsq.cprog;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compare la mémoire occupée par le contenu d'un répertoire stocké en List de Path
+ * (ancienne représentation) et en CompactListing, pour 100 000, 1 000 000 et 5 000 000
+ * éléments. Les noms sont générés (aucun fichier n'est créé).
+ * Ce n'est pas un test (il n'est pas lancé par mvn test) ; pour l'exécuter :
+ * mvn test-compile exec:exec -Dexec.executable=java
+ * -Dexec.args="-Xmx4g -cp %classpath fr.uvsq.cprog.ListingMemoireBenchmark"
+ * -Dexec.classpathScope=test
+ */
+public class ListingMemoireBenchmark {
+
+  private static final Path PARENT = Paths.get("/var/spool/application/entrees");
+
+  /**
+   * Lance la mesure.
+
+   * @param args inutilisé
+   */
+  public static void main(String[] args) {
+    for (int taille : new int[] {100_000, 1_000_000, 5_000_000}) {
+      long liste = mesure(taille, n -> {
+        List<Path> contenu = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+          contenu.add(PARENT.resolve(nom(i)));
+        }
+        return contenu;
+      });
+      long compact = mesure(taille, n -> {
+        CompactListing contenu = new CompactListing(PARENT);
+        for (int i = 0; i < n; i++) {
+          contenu.add(PARENT.resolve(nom(i)));
+        }
+        contenu.trimToSize();
+        return contenu;
+      });
+      System.out.printf("%,10d éléments : List<Path> %,8d Ko (%3d o/élément), "
+          + "CompactListing %,8d Ko (%3d o/élément)%n",
+          taille, liste / 1024, liste / taille, compact / 1024, compact / taille);
+    }
+  }
+
+  private static String nom(int i) {
+    return "job-" + i + ".spool";
+  }
+
+  /**
+   * Mesure l'augmentation de la mémoire utilisée après la construction d'un contenu.
+   */
+  private static long mesure(int taille, Function<Integer, List<Path>> construction) {
+    long avant = memoireUtilisee();
+    List<Path> contenu = construction.apply(taille);
+    long apres = memoireUtilisee();
+    if (contenu.size() != taille) {
+      throw new IllegalStateException("Contenu incomplet");
+    }
+    return apres - avant;
+  }
+
+  private static long memoireUtilisee() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,83 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe ModeTri.
+ */
+public class ModeTriTest {
+
+  /**
+   * Teste l'ordre naturel des noms.
+   */
+  @Test
+  public void testCompareNaturel() {
+    assertTrue(ModeTri.compareNaturel("f2", "f10") < 0);
+    assertTrue(ModeTri.compareNaturel("f010", "f9") > 0);
+    assertEquals(0, ModeTri.compareNaturel("f007", "f7"));
+    assertTrue(ModeTri.compareNaturel("Fable", "fichier") < 0);
+    assertTrue(ModeTri.compareNaturel("abc", "abcd") < 0);
+    assertTrue(ModeTri.compareNaturel("v1.10.txt", "v1.9.txt") > 0);
+    // Une suite de chiffres se compare aux autres caractères comme son premier chiffre
+    assertTrue(ModeTri.compareNaturel("a-1", "a01") < 0);
+    assertTrue(ModeTri.compareNaturel("a_1", "a01") > 0);
+    assertEquals(ModeTri.cleNaturelle("F007.txt"), ModeTri.cleNaturelle("f7.TXT"));
+  }
+
+  /**
+   * Teste que le tri d'un contenu suit l'ordre naturel et que l'ordre est total :
+   * deux noms égaux dans l'ordre naturel sont départagés par leurs caractères.
+   */
+  @Test
+  public void testTrie() {
+    CompactListing contenu = contenu("f7", "a", "f10", "f007", "A", "f2");
+    ModeTri.NOM.trie(contenu);
+    assertEquals(List.of("A", "a", "f2", "f007", "f7", "f10"), noms(contenu));
+
+    // Le tri ne dépend pas de l'ordre de départ
+    CompactListing inverse = contenu("f2", "A", "f007", "f10", "a", "f7");
+    ModeTri.NOM.trie(inverse);
+    assertEquals(noms(contenu), noms(inverse));
+
+    // Un nouvel élément est inséré à sa place
+    assertEquals(3, ModeTri.NOM.position(contenu, "f3", -1, -1));
+    assertEquals(2, ModeTri.NOM.position(contenu, "f02", -1, -1));
+  }
+
+  private static CompactListing contenu(String... noms) {
+    Path parent = Paths.get("dossier").toAbsolutePath();
+    CompactListing contenu = new CompactListing(parent);
+    for (String nom : noms) {
+      contenu.add(parent.resolve(nom));
+    }
+    return contenu;
+  }
+
+  private static List<String> noms(CompactListing contenu) {
+    List<String> noms = new ArrayList<>();
+    for (int i = 0; i < contenu.size(); i++) {
+      noms.add(contenu.getName(i));
+    }
+    return noms;
+  }
+
+  /**
+   * Teste l'extension et le choix du mode.
+   */
+  @Test
+  public void testExtensionEtMode() {
+    assertEquals("txt", ModeTri.extension("rafale.TXT"));
+    assertEquals("", ModeTri.extension(".bashrc"));
+    assertEquals("", ModeTri.extension("Makefile"));
+    assertEquals(ModeTri.TAILLE, ModeTri.depuis(" Taille "));
+    assertThrows(IllegalArgumentException.class, () -> ModeTri.depuis("couleur"));
+  }
+}
@@ -0,0 +1,65 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe NoteCache.
+ */
+public class NoteCacheTest {
+
+  /**
+   * Construit une table contenant une note d'environ size caractères.
+   */
+  private static NoteTable tableDeTaille(int size) {
+    NoteTable table = new NoteTable();
+    table.annote("fichier", "x".repeat(size));
+    return table;
+  }
+
+  /**
+   * Teste que le répertoire le moins récemment utilisé est retiré
+   * lorsque la taille maximale est dépassée.
+   */
+  @Test
+  public void testEvictionLru() {
+    NoteCache cache = new NoteCache(5000);
+    NoteCache.Stamp stamp = NoteCache.Stamp.of(new File("absent.bin"), new File("absent.journal"));
+    Path dir1 = Paths.get("dir1");
+    Path dir2 = Paths.get("dir2");
+    final Path dir3 = Paths.get("dir3");
+
+    cache.put(dir1, stamp, tableDeTaille(1000));
+    cache.put(dir2, stamp, tableDeTaille(1000));
+    // dir1 devient le plus récemment utilisé
+    assertNotNull(cache.get(dir1, stamp));
+    cache.put(dir3, stamp, tableDeTaille(1000));
+
+    assertNull(cache.get(dir2, stamp));
+    assertNotNull(cache.get(dir1, stamp));
+    assertNotNull(cache.get(dir3, stamp));
+    assertTrue(cache.getTotalBytes() <= 5000);
+  }
+
+  /**
+   * Teste qu'une entrée n'est plus retournée si l'état des fichiers a changé.
+   */
+  @Test
+  public void testEntreePerimee() {
+    NoteCache cache = new NoteCache(5000);
+    NoteCache.Stamp absent = NoteCache.Stamp.of(new File("absent.bin"), new File("absent.journal"));
+    NoteCache.Stamp present = NoteCache.Stamp.of(new File("fable.txt"), new File("absent.journal"));
+    Path dir = Paths.get("dir");
+
+    cache.put(dir, absent, tableDeTaille(10));
+
+    assertNull(cache.get(dir, present));
+    assertNull(cache.get(dir, absent));
+  }
+}
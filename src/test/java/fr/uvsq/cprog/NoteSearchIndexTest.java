@@ -0,0 +1,154 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe NoteSearchIndex.
+ */
+public class NoteSearchIndexTest {
+
+  private static final String RACINE = "dossierTestRecherche";
+
+  /**
+   * Crée une petite arborescence de fichiers à annoter.
+   */
+  @BeforeEach
+  public void creeArborescence() throws IOException {
+    new File(RACINE + File.separator + "sous").mkdirs();
+    new File(RACINE + File.separator + "facture.txt").createNewFile();
+    new File(RACINE + File.separator + "sous" + File.separator + "devis.txt").createNewFile();
+  }
+
+  /**
+   * Supprime l'arborescence créée.
+   */
+  @AfterEach
+  public void supprimeArborescence() throws IOException {
+    FileUtils.deleteDirectory(new File(RACINE));
+  }
+
+  private static String chemin(String relatif) {
+    return Paths.get(RACINE, relatif).toAbsolutePath().toString();
+  }
+
+  /**
+   * Teste le découpage d'un texte en mots.
+   */
+  @Test
+  public void testTokenize() {
+    assertEquals(List.of("facture", "invoice-2025", "payée"),
+        new ArrayList<>(NoteSearchIndex.tokenize("Facture : invoice-2025, payée !")));
+  }
+
+  /**
+   * Teste une recherche sur une arborescence jamais indexée (parcours complet).
+   */
+  @Test
+  public void testRechercheParParcours() {
+    Annotation.annote(chemin("facture.txt"), "invoice-2025 payée");
+    Annotation.annote(chemin("sous" + File.separator + "devis.txt"), "invoice-2025 en attente");
+
+    NoteSearchIndex index = new NoteSearchIndex(Paths.get("target", "recherche-test.idx"));
+    List<List<String>> resultat = index.search(RACINE, "INVOICE-2025");
+
+    assertEquals(2, resultat.size());
+    assertEquals(List.of("facture.txt", chemin("")), resultat.get(0));
+    assertEquals(List.of("devis.txt", chemin("sous")), resultat.get(1));
+    assertEquals(1, index.search(RACINE, "invoice-2025 attente").size());
+    assertTrue(index.search(RACINE, "inconnu").isEmpty());
+  }
+
+  /**
+   * Teste que l'index est mis à jour par annote() et deleteNote(),
+   * et qu'une modification faite sans passer par Annotation est détectée.
+   */
+  @Test
+  public void testMiseAjourIncrementale() {
+    NoteSearchIndex index = NoteSearchIndex.getInstance();
+    Annotation.annote(chemin("facture.txt"), "premiere");
+    assertEquals(1, index.search(RACINE, "premiere").size());
+
+    Annotation.annote(chemin("facture.txt"), "seconde");
+    assertEquals(1, index.search(RACINE, "premiere seconde").size());
+
+    Annotation.deleteNote(chemin("facture.txt"));
+    assertTrue(index.search(RACINE, "premiere").isEmpty());
+
+    // Modification par un autre programme (après intégration du journal)
+    Annotation.compact(chemin(""));
+    new BinaryNoteStore().writeNotes(new File(chemin("notes.bin")), new ArrayList<>(
+        List.of(new Fichier("facture.txt", "externe"))));
+    assertEquals(1, index.search(RACINE, "externe").size());
+  }
+
+  /**
+   * Teste qu'une note écrite par un autre programme dans un répertoire jamais annoté
+   * d'une arborescence déjà indexée est trouvée, et qu'une note retirée ne l'est plus.
+   */
+  @Test
+  public void testNoteEcriteHorsIndex() throws IOException {
+    Files.deleteIfExists(Paths.get("target", "hors-index-test.idx"));
+    Annotation.annote(chemin("facture.txt"), "indexee");
+    NoteSearchIndex index = new NoteSearchIndex(Paths.get("target", "hors-index-test.idx"));
+    assertEquals(1, index.search(RACINE, "indexee").size());
+
+    new BinaryNoteStore().writeNotes(new File(chemin("sous" + File.separator + "notes.bin")),
+        new ArrayList<>(List.of(new Fichier("devis.txt", "externe"))));
+    assertEquals(List.of(List.of("devis.txt", chemin("sous"))),
+        index.search(RACINE, "externe"));
+
+    FileUtils.deleteDirectory(new File(chemin("sous")));
+    assertTrue(index.search(RACINE, "externe").isEmpty());
+  }
+
+  /**
+   * Teste que les mises à jour mises en attente sont appliquées avant une recherche.
+   */
+  @Test
+  public void testMisesAjourEnAttente() throws IOException {
+    Files.deleteIfExists(Paths.get("target", "attente-test.idx"));
+    Annotation.annote(chemin("facture.txt"), "ancienne");
+    NoteSearchIndex index = new NoteSearchIndex(Paths.get("target", "attente-test.idx"));
+    assertTrue(index.search(RACINE, "nouvelle").isEmpty());
+
+    Annotation.annote(chemin("facture.txt"), "nouvelle");
+    index.noteAdded(Paths.get(chemin("")), "facture.txt", "nouvelle",
+        Annotation.stampOf(Paths.get(chemin(""))));
+    assertEquals(1, index.search(RACINE, "ancienne nouvelle").size());
+  }
+
+  /**
+   * Teste que chaque répertoire racine a son propre fichier d'index.
+   */
+  @Test
+  public void testFichierIndexParRacine() {
+    Path fichier = NoteSearchIndex.defaultIndexFile(Paths.get(RACINE));
+    assertEquals(fichier, NoteSearchIndex.defaultIndexFile(Paths.get(chemin("sous"), "..")));
+    assertNotEquals(fichier, NoteSearchIndex.defaultIndexFile(Paths.get(chemin("sous"))));
+    assertEquals(Paths.get(System.getProperty("user.home"), ".explorer"), fichier.getParent());
+  }
+
+  /**
+   * Teste la recherche dans un répertoire inexistant.
+   */
+  @Test
+  public void testRechercheRepertoireInexistant() {
+    NoteSearchIndex index = NoteSearchIndex.getInstance();
+    assertThrows(IllegalArgumentException.class, () -> index.search("existePas", "mot"));
+  }
+}
@@ -0,0 +1,89 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe NoteTable.
+ */
+public class NoteTableTest {
+
+  /**
+   * Teste l'ajout, la concaténation et la recherche d'une note.
+   */
+  @Test
+  public void testAnnoteEtGet() {
+    NoteTable table = new NoteTable();
+    table.annote("fable.txt", "premiere");
+    table.annote("fable.txt", "seconde");
+
+    assertEquals(1, table.size());
+    assertEquals("premiere seconde", table.get("fable.txt").getTexteAssocie());
+    assertNull(table.get("fable.pdf"));
+  }
+
+  /**
+   * Teste que chaque annotation d'un fichier ajoute un segment daté,
+   * et la lecture des derniers segments.
+   */
+  @Test
+  public void testSegments() {
+    NoteTable table = new NoteTable();
+    table.annote("build.log", 1000, "run 1");
+    table.annote("build.log", 2000, "run 2");
+    table.annote("build.log", 3000, "run 3");
+
+    Fichier fichier = table.get("build.log");
+    assertEquals(3, fichier.getSegments().size());
+    assertEquals(2000, fichier.getSegments().get(1).getDate());
+    assertEquals("run 2 run 3", fichier.texteRecent(2));
+    assertEquals("run 1 run 2 run 3", fichier.texteRecent(10));
+    assertEquals("run 1 run 2 run 3", fichier.getTexteAssocie());
+  }
+
+  /**
+   * Teste que l'ordre d'insertion est conservé après des suppressions
+   * et qu'une note supprimée puis rajoutée passe en fin de liste.
+   */
+  @Test
+  public void testOrdreStable() {
+    NoteTable table = new NoteTable();
+    table.annote("a", "1");
+    table.annote("b", "2");
+    table.annote("c", "3");
+
+    assertTrue(table.remove("b"));
+    assertFalse(table.remove("b"));
+    table.annote("b", "4");
+
+    List<Fichier> objectsList = table.toList();
+    assertEquals(3, objectsList.size());
+    assertEquals("a", objectsList.get(0).getNom());
+    assertEquals("c", objectsList.get(1).getNom());
+    assertEquals("b", objectsList.get(2).getNom());
+  }
+
+  /**
+   * Teste la table avec beaucoup d'ajouts et de suppressions (agrandissements successifs).
+   */
+  @Test
+  public void testNombreuxFichiers() {
+    NoteTable table = new NoteTable();
+    for (int i = 0; i < 10000; i++) {
+      table.annote("fichier" + i, "note" + i);
+    }
+    for (int i = 0; i < 10000; i += 2) {
+      table.remove("fichier" + i);
+    }
+
+    assertEquals(5000, table.size());
+    assertNull(table.get("fichier0"));
+    assertEquals("note9999", table.get("fichier9999").getTexteAssocie());
+    assertEquals("fichier1", table.toList().get(0).getNom());
+  }
+}
@@ -1,23 +1,64 @@
 package fr.uvsq.cprog;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 /**
  * Teste la classe Répertoire.
  */
 public class RepertoireTest {
+
+  @TempDir
+  static Path racine;
+
+  private final ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+  private PrintStream sortieStandard;
+
+  /**
+   * Capture la sortie standard : les images affichées ne se mêlent pas au rapport des tests.
+   */
+  @BeforeEach
+  public void captureSortie() {
+    sortieStandard = System.out;
+    System.setOut(new PrintStream(sortie, true, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Rend la sortie standard d'origine.
+   */
+  @AfterEach
+  public void rendSortie() {
+    System.setOut(sortieStandard);
+  }
+
   /**
    * Teste le constructeur de la classe Repertoire.
    */
@@ -38,7 +79,7 @@ public class RepertoireTest {
    */
   @BeforeAll
   public static void repertoireVide() {
-    File file = new File("dossierTestRepertoire");
+    File file = racine.resolve("dossierTestRepertoire").toFile();
     file.mkdir();
   }
 
@@ -47,7 +88,7 @@ public class RepertoireTest {
    */
   @Test
   public void testConstructeurRepertoireVide() {
-    Repertoire repertoireTest = new Repertoire("dossierTestRepertoire");
+    Repertoire repertoireTest = new Repertoire(racine.resolve("dossierTestRepertoire").toString());
     ArrayList<Path> expectedContenuRepertoire = new ArrayList<Path>(); //Liste vide
     assertEquals(repertoireTest.contenuRepertoire, expectedContenuRepertoire);
   }
@@ -57,7 +98,7 @@ public class RepertoireTest {
    */
   @AfterAll
   public static void supprRepertoireVide() {
-    File file = new File("dossierTestRepertoire");
+    File file = racine.resolve("dossierTestRepertoire").toFile();
     try {
       FileUtils.deleteDirectory(file);
     } catch (IOException ex) {
@@ -146,4 +187,330 @@ public class RepertoireTest {
     Repertoire repertoire = new Repertoire("fichierTestAffNote");
     assertEquals("Cet élément n'a pas d'annotation.", repertoire.recupereNote(1));
   }
+
+  /**
+   * Teste le contenu paginé d'un répertoire ayant plus d'éléments que le seuil :
+   * chaque NER correspond au même chemin que dans la liste complète.
+   */
+  @Test
+  public void testRepertoirePagine(@TempDir File dossier) throws IOException {
+    try {
+      for (int i = 0; i < 2500; i++) {
+        new File(dossier, "f" + i).createNewFile();
+      }
+      List<Path> expected;
+      try (Stream<Path> stream = Files.list(dossier.toPath().toAbsolutePath())) {
+        expected = stream.collect(Collectors.toList());
+      }
+
+      Repertoire.setSeuilPagination(100);
+      Repertoire repertoire = new Repertoire(dossier.getPath());
+      assertTrue(repertoire.contenuRepertoire instanceof PagedListing);
+      assertEquals(2500, repertoire.contenuRepertoire.size());
+      assertEquals(expected.get(2499).toString(), repertoire.nerToPath(2500));
+      assertEquals(expected.get(1500).toString(), repertoire.nerToPath(1501));
+      assertEquals(expected.get(3).toString(), repertoire.nerToPath(4));
+      assertEquals(expected, repertoire.contenuRepertoire);
+      assertThrows(IllegalArgumentException.class, () -> repertoire.nerToPath(2501));
+      ListingAttributes attributs = (ListingAttributes) repertoire.contenuRepertoire;
+      assertEquals(ListingAttributes.TYPE_FILE, attributs.getType(2000));
+      assertEquals(0, attributs.getSize(2000));
+
+      // Le filtre ne lit que les noms, et un retour en arrière ne relit pas le répertoire
+      int[] ners = IntStream.range(0, 2500)
+          .filter(i -> expected.get(i).getFileName().toString().contains("f249"))
+          .map(i -> i + 1).toArray();
+      repertoire.filtrer("f249");
+      assertArrayEquals(ners, repertoire.getNersFiltres());
+      assertEquals(expected.get(ners[0] - 1).toString(), repertoire.nerToPath(ners[0]));
+      assertEquals(expected.get(0).toString(), repertoire.nerToPath(1));
+      assertEquals(1, repertoire.getLectures());
+      repertoire.filtrer("");
+
+      // Créations et suppressions appliquées sans relire le répertoire
+      repertoire.rafraichir();
+      final long lectures = repertoire.getLectures();
+      new File(dossier, "nouveau").createNewFile();
+      expected.get(10).toFile().delete();
+      repertoire.signaler(new File(dossier, "nouveau").getPath());
+      repertoire.signaler(expected.get(10).toString());
+      repertoire.rafraichir();
+      assertEquals(lectures, repertoire.getLectures());
+      assertEquals(2500, repertoire.contenuRepertoire.size());
+      assertEquals(expected.get(9).toString(), repertoire.nerToPath(10));
+      assertEquals(expected.get(11).toString(), repertoire.nerToPath(11));
+      assertEquals(expected.get(2499).toString(), repertoire.nerToPath(2499));
+      assertTrue(repertoire.nerToPath(2500).endsWith("nouveau"));
+      assertEquals(ListingAttributes.TYPE_FILE,
+          ((ListingAttributes) repertoire.contenuRepertoire).getType(2499));
+      ((PagedListing) repertoire.contenuRepertoire).close();
+    } finally {
+      Repertoire.setSeuilPagination(50_000);
+    }
+  }
+
+  /**
+   * Teste que rafraichir() ne relit pas un répertoire qui n'a pas changé
+   * et applique les créations et suppressions d'éléments.
+   */
+  @Test
+  public void testRafraichir(@TempDir File dossier) throws Exception {
+    new File(dossier, "premier.txt").createNewFile();
+    Repertoire repertoire = new Repertoire(dossier.getPath());
+    repertoire.rafraichir();
+    List<Path> contenu = repertoire.contenuRepertoire;
+
+    // Aucun changement : le contenu n'est pas relu
+    repertoire.rafraichir();
+    assertSame(contenu, repertoire.contenuRepertoire);
+
+    Path second = new File(dossier, "second.txt").toPath().toAbsolutePath();
+    Files.createFile(second);
+    attendre(repertoire, () -> repertoire.contenuRepertoire.contains(second));
+    assertSame(contenu, repertoire.contenuRepertoire);
+    assertEquals(2, repertoire.contenuRepertoire.size());
+
+    Files.delete(second);
+    attendre(repertoire, () -> !repertoire.contenuRepertoire.contains(second));
+    assertEquals(1, repertoire.contenuRepertoire.size());
+
+    // Après invalider(), le répertoire est relu
+    repertoire.invalider();
+    repertoire.rafraichir();
+    assertFalse(contenu == repertoire.contenuRepertoire);
+  }
+
+  /**
+   * Teste que les commandes qui modifient le répertoire courant (mkdir, annotation)
+   * ne le font pas relire : l'élément créé est ajouté dès le rafraichissement suivant,
+   * sans attendre l'événement du WatchService.
+   */
+  @Test
+  public void testCommandesSansRelecture(@TempDir Path dossier) throws Exception {
+    Files.createFile(dossier.resolve("premier.txt"));
+    Repertoire repertoire = new Repertoire(dossier.toString());
+    repertoire.rafraichir();
+    final List<Path> contenu = repertoire.contenuRepertoire;
+    final long lectures = repertoire.getLectures();
+
+    Cli cli = new Cli();
+    cli.commande = Commandes.TypeCommande.MKDIR;
+    cli.nom = "nouveau";
+    Commandes.execCommande(repertoire, cli);
+    repertoire.rafraichir();
+    assertTrue(repertoire.contenuRepertoire.contains(dossier.resolve("nouveau")));
+    assertSame(contenu, repertoire.contenuRepertoire);
+    assertEquals(lectures, repertoire.getLectures());
+
+    // Une note ne change que les fichiers de notes
+    cli.commande = Commandes.TypeCommande.ANNOTE;
+    cli.ner = repertoire.contenuRepertoire.indexOf(dossier.resolve("premier.txt")) + 1;
+    cli.nom = "une note";
+    Commandes.execCommande(repertoire, cli);
+    attendre(repertoire, () -> repertoire.contenuRepertoire.contains(
+        dossier.resolve(BinaryNoteStore.FILE_NAME)));
+    assertEquals(lectures, repertoire.getLectures());
+
+    cli.commande = Commandes.TypeCommande.DEL;
+    cli.ner = repertoire.contenuRepertoire.indexOf(dossier.resolve("nouveau")) + 1;
+    Commandes.execCommande(repertoire, cli);
+    repertoire.rafraichir();
+    assertFalse(repertoire.contenuRepertoire.contains(dossier.resolve("nouveau")));
+    assertEquals(lectures, repertoire.getLectures());
+  }
+
+  /**
+   * Teste que les attributs des éléments sont lus avec le répertoire
+   * et mis à jour lorsqu'un élément est modifié.
+   */
+  @Test
+  public void testAttributs(@TempDir File dossier) throws Exception {
+    Path fichier = new File(dossier, "fichier.txt").toPath();
+    Files.write(fichier, new byte[2000]);
+    new File(dossier, "sousDossier").mkdir();
+    Repertoire repertoire = new Repertoire(dossier.getPath());
+    repertoire.rafraichir();
+    ListingAttributes attributs = (ListingAttributes) repertoire.contenuRepertoire;
+    int indexFichier = repertoire.contenuRepertoire.indexOf(fichier.toAbsolutePath());
+    final int indexDossier = 1 - indexFichier;
+
+    assertEquals(ListingAttributes.TYPE_FILE, attributs.getType(indexFichier));
+    assertEquals(2000, attributs.getSize(indexFichier));
+    assertEquals(Files.getLastModifiedTime(fichier).toMillis(),
+        attributs.getLastModified(indexFichier));
+    assertEquals(ListingAttributes.TYPE_DIRECTORY, attributs.getType(indexDossier));
+    assertTrue(Repertoire.colonnes(attributs, indexFichier).startsWith("-   2.0K "));
+
+    // Modification : les attributs sont mis à jour sans relire le répertoire
+    Files.write(fichier, new byte[10]);
+    attendre(repertoire, () -> attributs.getSize(indexFichier) == 10);
+    assertSame(attributs, repertoire.contenuRepertoire);
+  }
+
+  /**
+   * Teste les modes de tri et l'insertion à sa place d'un élément créé.
+   */
+  @Test
+  public void testTri(@TempDir File dossier) throws Exception {
+    String[] noms = {"f10.txt", "F2.pdf", "f1.txt", "b.md"};
+    for (int i = 0; i < noms.length; i++) {
+      Path chemin = new File(dossier, noms[i]).toPath();
+      Files.write(chemin, new byte[(i + 1) * 100]);
+      Files.setLastModifiedTime(chemin, FileTime.fromMillis(1_000_000_000_000L + i * 60_000));
+    }
+    Repertoire repertoire = new Repertoire(dossier.getPath());
+    repertoire.rafraichir();
+    assertEquals(List.of("b.md", "f1.txt", "F2.pdf", "f10.txt"), noms(repertoire));
+
+    repertoire.setModeTri(ModeTri.TAILLE);
+    repertoire.rafraichir();
+    assertEquals(List.of("b.md", "f1.txt", "F2.pdf", "f10.txt"), noms(repertoire));
+
+    repertoire.setModeTri(ModeTri.DATE);
+    repertoire.rafraichir();
+    assertEquals(List.of("b.md", "f1.txt", "F2.pdf", "f10.txt"), noms(repertoire));
+
+    repertoire.setModeTri(ModeTri.EXTENSION);
+    repertoire.rafraichir();
+    assertEquals(List.of("b.md", "F2.pdf", "f1.txt", "f10.txt"), noms(repertoire));
+
+    // Les NER ne changent pas si le contenu n'a pas changé
+    repertoire.invalider();
+    repertoire.rafraichir();
+    assertEquals(List.of("b.md", "F2.pdf", "f1.txt", "f10.txt"), noms(repertoire));
+
+    // Un élément créé est inséré à sa place
+    Path nouveau = new File(dossier, "a.pdf").toPath().toAbsolutePath();
+    Files.createFile(nouveau);
+    attendre(repertoire, () -> repertoire.contenuRepertoire.contains(nouveau));
+    assertEquals(List.of("b.md", "a.pdf", "F2.pdf", "f1.txt", "f10.txt"), noms(repertoire));
+  }
+
+  private static List<String> noms(Repertoire repertoire) {
+    return repertoire.contenuRepertoire.stream()
+        .map(chemin -> chemin.getFileName().toString()).collect(Collectors.toList());
+  }
+
+  /**
+   * Teste le déplacement de l'affichage page par page et vers un NER,
+   * et la lecture des notes des éléments affichés.
+   */
+  @Test
+  public void testPages(@TempDir File dossier) throws Exception {
+    for (int i = 1; i <= 30; i++) {
+      new File(dossier, String.format("f%02d", i)).createNewFile();
+    }
+    Repertoire repertoire = new Repertoire(dossier.getPath());
+    // 14 lignes, dont 6 réservées (entête, pages, invite...) : 8 éléments par page
+    repertoire.afficheCourant(14, 80, -1);
+    assertEquals(0, repertoire.getDebutAffichage());
+
+    repertoire.pageSuivante();
+    assertEquals(8, repertoire.getDebutAffichage());
+    repertoire.afficheNer(29);
+    assertEquals(22, repertoire.getDebutAffichage());
+    repertoire.pageSuivante();
+    assertEquals(22, repertoire.getDebutAffichage());
+    repertoire.pagePrecedente();
+    assertEquals(14, repertoire.getDebutAffichage());
+    repertoire.afficheNer(15);
+    assertEquals(14, repertoire.getDebutAffichage());
+
+    // Note d'un élément affiché (lue avec les autres) puis d'un élément non affiché
+    Annotation.annote(repertoire.nerToPath(16), "note seize");
+    Annotation.annote(repertoire.nerToPath(2), "note deux");
+    repertoire.afficheCourant(16, 80, 16);
+    repertoire.attendreNotes();
+    assertEquals("note seize", repertoire.recupereNote(16));
+    assertEquals("Cet élément n'a pas d'annotation.", repertoire.recupereNote(17));
+    assertEquals("note deux", repertoire.recupereNote(2));
+
+    // Retour en haut en changeant de répertoire
+    repertoire.repertoireCourant = new File("fichierTestBis").getAbsolutePath();
+    repertoire.rafraichir();
+    assertEquals(0, repertoire.getDebutAffichage());
+  }
+
+  /**
+   * Teste le filtre des éléments affichés.
+   */
+  @Test
+  public void testFiltre(@TempDir File dossier) throws Exception {
+    for (String nom : new String[] {"alpha", "alphabet", "Alpine", "beta", "gamma.txt"}) {
+      new File(dossier, nom).createNewFile();
+    }
+    Repertoire repertoire = new Repertoire(dossier.getPath());
+    repertoire.filtrer("AL");
+    assertEquals("al", repertoire.getMotifFiltre());
+    assertArrayEquals(new int[] {1, 2, 3}, repertoire.getNersFiltres());
+
+    // Un caractère de plus : seuls les éléments déjà retenus sont comparés
+    long comparaisons = repertoire.getComparaisonsFiltre();
+    repertoire.filtrer("alph");
+    assertArrayEquals(new int[] {1, 2}, repertoire.getNersFiltres());
+    assertEquals(comparaisons + 3, repertoire.getComparaisonsFiltre());
+    // Les NER désignent toujours les mêmes éléments
+    assertTrue(repertoire.nerToPath(2).endsWith("alphabet"));
+
+    // Motif qui ne prolonge pas le précédent : tout est comparé
+    repertoire.filtrer("alpi");
+    assertArrayEquals(new int[] {3}, repertoire.getNersFiltres());
+    assertEquals(comparaisons + 3 + 5, repertoire.getComparaisonsFiltre());
+
+    // Le filtre est appliqué au contenu relu
+    new File(dossier, "alpino").createNewFile();
+    repertoire.invalider();
+    repertoire.rafraichir();
+    assertArrayEquals(new int[] {3, 4}, repertoire.getNersFiltres());
+
+    // Un NER écarté par le filtre ne déplace pas l'affichage
+    repertoire.afficheCourant(14, 80, -1);
+    repertoire.afficheNer(1);
+    assertEquals(0, repertoire.getDebutAffichage());
+
+    repertoire.filtrer("");
+    assertEquals(null, repertoire.getMotifFiltre());
+    assertEquals(6, repertoire.getNersFiltres().length);
+
+    // Le filtre est oublié en changeant de répertoire
+    repertoire.filtrer("beta");
+    repertoire.repertoireCourant = new File("fichierTestBis").getAbsolutePath();
+    repertoire.rafraichir();
+    assertEquals(null, repertoire.getMotifFiltre());
+  }
+
+  /**
+   * Teste la coupure des lignes trop longues pour le terminal.
+   */
+  @Test
+  public void testCoupe() {
+    assertEquals("fable.txt", Repertoire.coupe("fable.txt", 9));
+    assertEquals("fabl…", Repertoire.coupe("fable.txt", 5));
+    assertEquals("", Repertoire.coupe("fable.txt", -3));
+  }
+
+  /**
+   * Teste le format des tailles affichées.
+   */
+  @Test
+  public void testFormatTaille() {
+    assertEquals("", Repertoire.formatTaille(-1));
+    assertEquals("1023", Repertoire.formatTaille(1023));
+    assertEquals("1.0K", Repertoire.formatTaille(1024));
+    assertEquals("15M", Repertoire.formatTaille(15L * 1024 * 1024));
+    assertEquals("2.5G", Repertoire.formatTaille(5L * 512 * 1024 * 1024));
+  }
+
+  /**
+   * Rafraichit le répertoire jusqu'à ce que la condition soit vraie (5 secondes au plus) :
+   * les événements du WatchService arrivent de façon asynchrone.
+   */
+  private static void attendre(Repertoire repertoire, BooleanSupplier condition)
+      throws InterruptedException {
+    for (int essai = 0; essai < 100 && !condition.getAsBoolean(); essai++) {
+      Thread.sleep(50);
+      repertoire.rafraichir();
+    }
+    assertTrue(condition.getAsBoolean());
+  }
 }
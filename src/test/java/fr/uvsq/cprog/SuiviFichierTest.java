@@ -0,0 +1,53 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe SuiviFichier.
+ */
+public class SuiviFichierTest {
+
+  private static final File FICHIER = new File("fichierTestSuivi.txt");
+
+  /**
+   * Supprime le fichier de test.
+   */
+  @AfterEach
+  public void supprimeFichier() {
+    FICHIER.delete();
+  }
+
+  /**
+   * Teste que l'action est appelée après un ajout au fichier, et plus après l'arrêt.
+   */
+  @Test
+  public void testSuivi() throws Exception {
+    Files.write(FICHIER.toPath(), "a\n".getBytes(StandardCharsets.UTF_8));
+    CountDownLatch ajout = new CountDownLatch(1);
+    AtomicInteger appels = new AtomicInteger();
+    try (SuiviFichier suivi = new SuiviFichier(FICHIER.toPath(), () -> {
+      appels.incrementAndGet();
+      if (FICHIER.length() > 2) {
+        ajout.countDown();
+      }
+    })) {
+      Files.write(FICHIER.toPath(), "b\n".getBytes(StandardCharsets.UTF_8),
+          StandardOpenOption.APPEND);
+      assertTrue(ajout.await(5, TimeUnit.SECONDS));
+    }
+    int apresArret = appels.get();
+    Thread.sleep(2 * SuiviFichier.DELAI);
+    assertEquals(apresArret, appels.get());
+  }
+}
@@ -0,0 +1,147 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe TailleRepertoire.
+ */
+public class TailleRepertoireTest {
+
+  private static final File DOSSIER = new File("dossierTestTaille");
+
+  /**
+   * Crée une arborescence : 3 répertoires, 4 fichiers, 1000 octets.
+   */
+  @BeforeEach
+  public void creeArborescence() throws IOException {
+    TailleRepertoire.vider();
+    File sous = new File(DOSSIER, "a/b");
+    sous.mkdirs();
+    Files.write(new File(DOSSIER, "f1").toPath(), new byte[100]);
+    Files.write(new File(DOSSIER, "a/f2").toPath(), new byte[200]);
+    Files.write(new File(DOSSIER, "a/b/f3").toPath(), new byte[300]);
+    Files.write(new File(DOSSIER, "a/b/f4").toPath(), new byte[400]);
+    for (String nom : new String[] {"", "a", "a/b"}) {
+      vieillir(nom, 60_000);
+    }
+  }
+
+  /**
+   * Date un répertoire dans le passé : sa date est alors jugée fiable pour le cache.
+   */
+  private static void vieillir(String nom, long age) throws IOException {
+    Files.setLastModifiedTime(new File(DOSSIER, nom).toPath(),
+        FileTime.fromMillis(System.currentTimeMillis() - age));
+  }
+
+  /**
+   * Supprime l'arborescence.
+   */
+  @AfterEach
+  public void supprimeArborescence() throws IOException {
+    FileUtils.deleteDirectory(DOSSIER);
+    TailleRepertoire.vider();
+  }
+
+  /**
+   * Teste le total d'une arborescence.
+   */
+  @Test
+  public void testCalcule() {
+    TailleRepertoire.Total total = TailleRepertoire.calcule(DOSSIER.toPath());
+    assertEquals(1000, total.getOctets());
+    assertEquals(4, total.getFichiers());
+    assertEquals(3, total.getRepertoires());
+    assertEquals(700, TailleRepertoire.calcule(new File(DOSSIER, "a/b").toPath()).getOctets());
+    assertThrows(IllegalArgumentException.class,
+        () -> TailleRepertoire.calcule(new File(DOSSIER, "f1").toPath()));
+  }
+
+  /**
+   * Teste que seuls les répertoires modifiés sont relus.
+   */
+  @Test
+  public void testCache() throws IOException {
+    TailleRepertoire.calcule(DOSSIER.toPath());
+
+    // Rien n'a changé : aucun répertoire n'est relu
+    long lectures = TailleRepertoire.getLectures();
+    assertEquals(1000, TailleRepertoire.calcule(DOSSIER.toPath()).getOctets());
+    assertEquals(lectures, TailleRepertoire.getLectures());
+
+    // Un fichier ajouté dans a/b : seul a/b est relu
+    Files.write(new File(DOSSIER, "a/b/f5").toPath(), new byte[24]);
+    vieillir("a/b", 30_000);
+    assertEquals(1024, TailleRepertoire.calcule(DOSSIER.toPath()).getOctets());
+    assertEquals(lectures + 1, TailleRepertoire.getLectures());
+
+    // Le total est connu tant que la date du répertoire n'a pas changé
+    Path racine = DOSSIER.toPath();
+    long date = Files.getLastModifiedTime(racine).toMillis();
+    assertEquals(1024, TailleRepertoire.connu(racine, date).getOctets());
+    assertNull(TailleRepertoire.connu(racine, date + 1));
+  }
+
+  /**
+   * Teste que le total connu n'est plus donné, une fois vérifié, après la modification
+   * d'un fichier d'un sous-répertoire (enregistré par remplacement, comme le font
+   * les éditeurs).
+   */
+  @Test
+  public void testConnuSousRepertoireModifie() throws IOException {
+    Path racine = DOSSIER.toPath();
+    long date = Files.getLastModifiedTime(racine).toMillis();
+    assertNull(TailleRepertoire.connu(racine, date));
+    TailleRepertoire.calcule(racine);
+    assertEquals(1000, TailleRepertoire.connu(racine, date).getOctets());
+
+    Path temporaire = new File(DOSSIER, "a/b/f3.tmp").toPath();
+    Files.write(temporaire, new byte[350]);
+    Files.move(temporaire, new File(DOSSIER, "a/b/f3").toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+    vieillir("a/b", 30_000);
+
+    // La racine n'a pas changé, mais a/b oui : le total est gardé jusqu'à la vérification
+    assertEquals(date, Files.getLastModifiedTime(racine).toMillis());
+    assertEquals(1000, TailleRepertoire.connu(racine, date).getOctets());
+    TailleRepertoire.valider(racine.toAbsolutePath().getParent());
+    assertNull(TailleRepertoire.connu(racine, date));
+    assertEquals(1050, TailleRepertoire.calcule(racine).getOctets());
+    assertEquals(1050, TailleRepertoire.connu(racine, date).getOctets());
+  }
+
+  /**
+   * Teste que le total d'un répertoire modifié juste avant son calcul n'est pas donné :
+   * sa date n'est pas fiable.
+   */
+  @Test
+  public void testConnuDateRecente() throws IOException {
+    Path racine = DOSSIER.toPath();
+    vieillir("", 0);
+    long date = Files.getLastModifiedTime(racine).toMillis();
+    assertEquals(1000, TailleRepertoire.calcule(racine).getOctets());
+    assertNull(TailleRepertoire.connu(racine, date));
+
+    // Un sous-répertoire dont la date n'est pas fiable fait oublier le total de la racine
+    vieillir("", 60_000);
+    vieillir("a/b", 0);
+    date = Files.getLastModifiedTime(racine).toMillis();
+    TailleRepertoire.calcule(racine);
+    assertEquals(1000, TailleRepertoire.connu(racine, date).getOctets());
+    TailleRepertoire.valider(racine.toAbsolutePath().getParent());
+    assertNull(TailleRepertoire.connu(racine, date));
+  }
+}
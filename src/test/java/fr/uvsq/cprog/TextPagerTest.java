@@ -0,0 +1,174 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe TextPager.
+ */
+public class TextPagerTest {
+
+  private static final File FICHIER = new File("fichierTestPager.txt");
+
+  /**
+   * Supprime le fichier de test.
+   */
+  @AfterEach
+  public void supprimeFichier() {
+    FICHIER.delete();
+  }
+
+  /**
+   * Écrit le fichier de test : les lignes "ligne 1" à "ligne nombre".
+   */
+  private static void ecritLignes(int nombre) throws IOException {
+    StringBuilder texte = new StringBuilder();
+    for (int i = 1; i <= nombre; i++) {
+      texte.append("ligne ").append(i).append('\n');
+    }
+    Files.write(FICHIER.toPath(), texte.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Teste le passage d'une page à l'autre, avec une petite fenêtre projetée
+   * (déplacée plusieurs fois, en avant et en arrière).
+   */
+  @Test
+  public void testPages() throws IOException {
+    ecritLignes(100);
+    try (TextPager pager = new TextPager(FICHIER.toPath(), 64)) {
+      assertEquals(List.of("ligne 1", "ligne 2", "ligne 3"), pager.lignes(3));
+
+      pager.avance(10);
+      assertEquals(List.of("ligne 11"), pager.lignes(1));
+      pager.recule(5);
+      assertEquals(List.of("ligne 6"), pager.lignes(1));
+      pager.recule(100);
+      assertEquals(0, pager.getPosition());
+
+      // On ne dépasse pas le début de la dernière ligne
+      pager.avance(1000);
+      assertEquals(List.of("ligne 100"), pager.lignes(5));
+      assertEquals(pager.getTaille(), pager.getPositionFin());
+      pager.recule(2);
+      assertEquals(List.of("ligne 98", "ligne 99", "ligne 100"), pager.lignes(5));
+    }
+  }
+
+  /**
+   * Teste l'accès à une ligne ou à un pourcentage du fichier.
+   */
+  @Test
+  public void testAllerLigne() throws Exception {
+    ecritLignes(10_000);
+    LineIndex.pour(FICHIER.toPath()).attendre();
+    try (TextPager pager = new TextPager(FICHIER.toPath(), 4096)) {
+      assertEquals(10_000, pager.getNbLignes());
+      pager.allerLigne(5000);
+      assertEquals(List.of("ligne 5000"), pager.lignes(1));
+      assertEquals(5000, pager.getNumeroLigne());
+      pager.allerLigne(99_999);
+      assertEquals(List.of("ligne 10000"), pager.lignes(1));
+      pager.allerLigne(1);
+      assertEquals(0, pager.getPosition());
+
+      pager.allerPourcentage(100);
+      assertEquals(List.of("ligne 10000"), pager.lignes(1));
+      pager.allerPourcentage(50);
+      long numero = pager.getNumeroLigne();
+      assertTrue(numero > 4000 && numero < 6000);
+      assertEquals(List.of("ligne " + numero), pager.lignes(1));
+    } finally {
+      LineIndex.vider();
+    }
+  }
+
+  /**
+   * Teste les dernières lignes et le mode suivi d'un fichier qui grandit.
+   */
+  @Test
+  public void testFinEtSuivi() throws IOException {
+    ecritLignes(100);
+    try (TextPager pager = new TextPager(FICHIER.toPath(), 64)) {
+      pager.fin(3);
+      assertEquals(List.of("ligne 98", "ligne 99", "ligne 100"), pager.lignes(5));
+      assertEquals(List.of("ligne 99", "ligne 100"), pager.suivi(2));
+
+      // Ligne ajoutée en deux fois : affichée non terminée, puis relue
+      ajoute("ligne 1");
+      assertEquals(List.of("ligne 100", "ligne 1"), pager.suivi(2));
+      ajoute("01\nligne 102\n");
+      assertEquals(List.of("ligne 101", "ligne 102"), pager.suivi(2));
+      // Rien de nouveau : rien n'est relu
+      assertEquals(List.of("ligne 101", "ligne 102"), pager.suivi(2));
+
+      // Beaucoup de lignes ajoutées : seules les dernières sont lues
+      StringBuilder texte = new StringBuilder();
+      for (int i = 103; i <= 200; i++) {
+        texte.append("ligne ").append(i).append('\n');
+      }
+      ajoute(texte.toString());
+      assertEquals(List.of("ligne 199", "ligne 200"), pager.suivi(2));
+
+      // Fichier tronqué : le suivi reprend à sa fin
+      Files.write(FICHIER.toPath(), "a\nb\n".getBytes(StandardCharsets.UTF_8));
+      assertEquals(List.of("a", "b"), pager.suivi(2));
+    }
+  }
+
+  /**
+   * Ajoute du texte à la fin du fichier de test.
+   */
+  private static void ajoute(String texte) throws IOException {
+    Files.write(FICHIER.toPath(), texte.getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Teste les fins de ligne Windows, les lignes vides, la dernière ligne sans fin de ligne,
+   * les caractères de contrôle et les lignes trop longues.
+   */
+  @Test
+  public void testLignes() throws IOException {
+    String longue = "x".repeat(TextPager.LONGUEUR_MAX_LIGNE + 10);
+    Files.write(FICHIER.toPath(), ("a\r\n\nb\u001B[2Jc\td\n" + longue + "\nfin")
+        .getBytes(StandardCharsets.UTF_8));
+    try (TextPager pager = new TextPager(FICHIER.toPath())) {
+      List<String> lignes = pager.lignes(10);
+      assertEquals(5, lignes.size());
+      assertEquals("a", lignes.get(0));
+      assertEquals("", lignes.get(1));
+      assertEquals("b?[2Jc  d", lignes.get(2));
+      assertEquals(TextPager.LONGUEUR_MAX_LIGNE, lignes.get(3).length());
+      assertEquals("fin", lignes.get(4));
+
+      pager.avance(3);
+      assertTrue(pager.lignes(1).get(0).startsWith("xxx"));
+      pager.recule(2);
+      assertEquals(List.of(""), pager.lignes(1));
+    }
+  }
+
+  /**
+   * Teste un fichier vide.
+   */
+  @Test
+  public void testFichierVide() throws IOException {
+    Files.write(FICHIER.toPath(), new byte[0]);
+    try (TextPager pager = new TextPager(FICHIER.toPath())) {
+      assertTrue(pager.lignes(10).isEmpty());
+      pager.avance(1);
+      pager.recule(1);
+      assertEquals(0, pager.getPosition());
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package fr.uvsq.cprog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe TypeFichier.
+ */
+public class TypeFichierTest {
+
+  private static final File FICHIER = new File("fichierTestType.log");
+
+  /**
+   * Supprime le fichier de test.
+   */
+  @AfterEach
+  public void supprimeFichier() {
+    FICHIER.delete();
+    TypeFichier.vider();
+  }
+
+  /**
+   * Teste la détection des fichiers texte, quelle que soit leur extension.
+   */
+  @Test
+  public void testTexte() throws IOException {
+    Files.write(FICHIER.toPath(), "2024-01-01 INFO démarrage\n\tsuite\n"
+        .getBytes(StandardCharsets.UTF_8));
+    TypeFichier type = TypeFichier.detecte(FICHIER.toPath());
+    assertEquals(TypeFichier.Nature.TEXTE, type.getNature());
+    assertEquals("Texte UTF-8", type.getDescription());
+    assertTrue(Commandes.isTxtFile(FICHIER));
+
+    assertEquals("Texte ASCII", TypeFichier.analyse("a;b\n1;2\n".getBytes(
+        StandardCharsets.US_ASCII), true).getDescription());
+    assertEquals("Texte (encodage 8 bits)", TypeFichier.analyse("début\n".getBytes(
+        StandardCharsets.ISO_8859_1), true).getDescription());
+    // Caractère UTF-8 coupé à la fin de l'échantillon
+    byte[] coupe = "été".getBytes(StandardCharsets.UTF_8);
+    assertEquals("Texte UTF-8", TypeFichier.analyse(
+        Arrays.copyOf(coupe, coupe.length - 1), false).getDescription());
+    assertEquals(TypeFichier.Nature.TEXTE, TypeFichier.analyse(new byte[0], true).getNature());
+  }
+
+  /**
+   * Teste les marques d'ordre des octets et le texte UTF-16 sans marque.
+   */
+  @Test
+  public void testUtf16() {
+    byte[] avecMarque = "texte".getBytes(StandardCharsets.UTF_16);
+    assertEquals(TypeFichier.Nature.TEXTE_UTF16,
+        TypeFichier.analyse(avecMarque, true).getNature());
+    byte[] sansMarque = "texte\r\n".getBytes(StandardCharsets.UTF_16LE);
+    assertEquals(TypeFichier.Nature.TEXTE_UTF16,
+        TypeFichier.analyse(sansMarque, true).getNature());
+    byte[] utf8 = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'a'};
+    assertEquals(TypeFichier.Nature.TEXTE, TypeFichier.analyse(utf8, true).getNature());
+  }
+
+  /**
+   * Teste la détection des fichiers binaires : signatures, octets nuls et caractères
+   * de contrôle.
+   */
+  @Test
+  public void testBinaire() throws IOException {
+    assertFalse(Commandes.isTxtFile(new File("fable.pdf")));
+    assertEquals("Document PDF",
+        TypeFichier.detecte(Paths.get("fable.pdf")).getDescription());
+
+    // Image PNG avec une extension de texte
+    Files.write(FICHIER.toPath(), new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A,
+        '\n', 0, 0, 0, 13});
+    assertEquals("Image PNG", TypeFichier.detecte(FICHIER.toPath()).getDescription());
+    assertFalse(Commandes.isTxtFile(FICHIER));
+
+    byte[] nuls = {'a', 0, 0, 'b', 'c', 0, 1, 2};
+    assertEquals(TypeFichier.Nature.BINAIRE, TypeFichier.analyse(nuls, true).getNature());
+    byte[] controles = {'a', 1, 2, 3, 4, 5, 'b', 'c'};
+    assertEquals(TypeFichier.Nature.BINAIRE,
+        TypeFichier.analyse(controles, true).getNature());
+  }
+
+  /**
+   * Teste le cache : le fichier n'est relu que s'il a changé.
+   */
+  @Test
+  public void testCache() throws IOException {
+    Files.write(FICHIER.toPath(), "texte\n".getBytes(StandardCharsets.UTF_8));
+    TypeFichier.detecte(FICHIER.toPath());
+    long lectures = TypeFichier.getLectures();
+    assertTrue(TypeFichier.detecte(FICHIER.toPath()).estTexte());
+    assertEquals(lectures, TypeFichier.getLectures());
+
+    Files.write(FICHIER.toPath(), new byte[] {0x7F, 'E', 'L', 'F', 2, 1, 1, 0});
+    Files.setLastModifiedTime(FICHIER.toPath(), FileTime.fromMillis(
+        FICHIER.lastModified() + 2000));
+    assertEquals("Exécutable ELF", TypeFichier.detecte(FICHIER.toPath()).getDescription());
+    assertEquals(lectures + 1, TypeFichier.getLectures());
+  }
+}